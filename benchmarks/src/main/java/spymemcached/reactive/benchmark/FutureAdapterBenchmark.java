@@ -0,0 +1,218 @@
+package spymemcached.reactive.benchmark;
+
+import net.spy.memcached.internal.BulkGetCompletionListener;
+import net.spy.memcached.internal.GetCompletionListener;
+import net.spy.memcached.internal.OperationCompletionListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import spymemcached.reactive.ReactiveMemcachedTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost {@link ReactiveMemcachedTemplate} adds on top of the spymemcached futures it adapts. Each
+ * {@code client*} benchmark issues the operation directly against the {@link net.spy.memcached.MemcachedClient} and
+ * waits for its listener, while the matching {@code template*} benchmark issues the same operation through the
+ * template and waits for the {@code Mono} to complete. Futures are completed in-process, so the difference between
+ * the two is the adapter overhead.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar FutureAdapterBenchmark -prof gc} to also report allocations per
+ * operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FutureAdapterBenchmark {
+
+    private static final String KEY = "benchmark-key";
+    private static final String VALUE = "benchmark-value";
+
+    /**
+     * {@code direct} runs listeners on the thread which adds them, isolating the CPU and allocation cost of the
+     * adapter. {@code pooled} uses a thread pool, as spymemcached does by default, and so includes the thread hop.
+     */
+    @Param({"direct", "pooled"})
+    public String listenerExecutor;
+
+    @Param({"10"})
+    public int bulkSize;
+
+    private ExecutorService executor;
+    private InProcessMemcachedClient client;
+    private ReactiveMemcachedTemplate template;
+    private List<String> bulkKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        executor = "direct".equals(listenerExecutor) ? new DirectExecutorService() : Executors.newFixedThreadPool(4);
+        bulkKeys = new ArrayList<>(bulkSize);
+        for (int i = 0; i < bulkSize; i++) {
+            bulkKeys.add(KEY + "-" + i);
+        }
+        client = new InProcessMemcachedClient(executor, VALUE, bulkKeys);
+        template = new ReactiveMemcachedTemplate(client);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void clientGet(Completion completion) {
+        completion.reset();
+        client.asyncGet(KEY).addListener(completion.getListener);
+        completion.await();
+    }
+
+    @Benchmark
+    public void templateGet(Completion completion) {
+        completion.reset();
+        template.get(KEY).subscribe(completion);
+        completion.await();
+    }
+
+    @Benchmark
+    public void clientSet(Completion completion) {
+        completion.reset();
+        client.set(KEY, 0, VALUE).addListener(completion.operationListener);
+        completion.await();
+    }
+
+    @Benchmark
+    public void templateSet(Completion completion) {
+        completion.reset();
+        template.set(KEY, 0, VALUE).subscribe(completion);
+        completion.await();
+    }
+
+    @Benchmark
+    public void clientGetBulk(Completion completion) {
+        completion.reset();
+        client.asyncGetBulk(bulkKeys).addListener(completion.bulkGetListener);
+        completion.await();
+    }
+
+    @Benchmark
+    public void templateGetBulk(Completion completion) {
+        completion.reset();
+        template.getBulk(bulkKeys).subscribe(completion);
+        completion.await();
+    }
+
+    /**
+     * A per-thread listener and subscriber which is reused between invocations so that neither side of the comparison
+     * pays for allocating the consumer of the result.
+     */
+    @State(Scope.Thread)
+    public static class Completion implements CoreSubscriber<Object> {
+
+        final GetCompletionListener getListener = this::onComplete;
+        final OperationCompletionListener operationListener = this::onComplete;
+        final BulkGetCompletionListener bulkGetListener = this::onComplete;
+
+        private Blackhole blackhole;
+        private volatile boolean done;
+
+        @Setup(Level.Trial)
+        public void setUp(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        void reset() {
+            done = false;
+        }
+
+        void await() {
+            while (!done) {
+                // spin, completion is expected within microseconds
+            }
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Object value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            blackhole.consume(t);
+            done = true;
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+        }
+
+        private void onComplete(Future<?> future) throws Exception {
+            blackhole.consume(future.get());
+            done = true;
+        }
+    }
+
+    private static class DirectExecutorService extends AbstractExecutorService {
+        private volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package spymemcached.reactive.benchmark;
+
+import net.spy.memcached.AddrUtil;
+import net.spy.memcached.DefaultConnectionFactory;
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.MemcachedConnection;
+import net.spy.memcached.internal.BulkFuture;
+import net.spy.memcached.internal.BulkGetFuture;
+import net.spy.memcached.internal.GetFuture;
+import net.spy.memcached.internal.OperationFuture;
+import net.spy.memcached.ops.Operation;
+import net.spy.memcached.ops.OperationCallback;
+import net.spy.memcached.ops.OperationStatus;
+import net.spy.memcached.protocol.ascii.AsciiOperationFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link MemcachedClient} which is not connected to any server and instead completes every future it hands out
+ * in-process. The futures are real spymemcached futures, so listeners are dispatched through the configured listener
+ * executor exactly as they would be for a networked client.
+ */
+class InProcessMemcachedClient extends MemcachedClient {
+
+    private static final CountDownLatch COMPLETED = new CountDownLatch(0);
+    private static final OperationStatus SUCCESS = new OperationStatus(true, "OK");
+    /**
+     * Futures consult their operation for cancellation and errors, so each is given the same inert one.
+     */
+    private static final Operation OPERATION = new AsciiOperationFactory().noop(new OperationCallback() {
+        @Override
+        public void receivedStatus(OperationStatus status) {
+        }
+
+        @Override
+        public void complete() {
+        }
+    });
+
+    private final ExecutorService listenerExecutor;
+    private final long operationTimeout;
+    private final Future<Object> value;
+    private final Map<String, Future<Object>> bulkValues;
+
+    InProcessMemcachedClient(ExecutorService listenerExecutor, Object value, Collection<String> bulkKeys) throws IOException {
+        super(new DisconnectedConnectionFactory(listenerExecutor), AddrUtil.getAddresses("localhost:11211"));
+        this.listenerExecutor = listenerExecutor;
+        this.operationTimeout = getOperationTimeout();
+        this.value = CompletableFuture.completedFuture(value);
+        Map<String, Future<Object>> bulkValues = new HashMap<>();
+        for (String key : bulkKeys) {
+            bulkValues.put(key, this.value);
+        }
+        this.bulkValues = Collections.unmodifiableMap(bulkValues);
+    }
+
+    @Override
+    public GetFuture<Object> asyncGet(String key) {
+        GetFuture<Object> future = new GetFuture<>(COMPLETED, operationTimeout, key, listenerExecutor);
+        future.set(value, SUCCESS);
+        future.setOperation(OPERATION);
+        return future;
+    }
+
+    @Override
+    public OperationFuture<Boolean> set(String key, int exp, Object o) {
+        OperationFuture<Boolean> future = new OperationFuture<>(key, COMPLETED, operationTimeout, listenerExecutor);
+        future.set(Boolean.TRUE, SUCCESS);
+        future.setOperation(OPERATION);
+        return future;
+    }
+
+    @Override
+    public BulkFuture<Map<String, Object>> asyncGetBulk(Collection<String> keys) {
+        BulkGetFuture<Object> future = new BulkGetFuture<>(bulkValues, Collections.emptyList(), COMPLETED, listenerExecutor);
+        future.setStatus(SUCCESS);
+        return future;
+    }
+
+    /**
+     * Creates a connection without any nodes so that no sockets are opened and nothing is logged about unreachable
+     * servers.
+     */
+    private static class DisconnectedConnectionFactory extends DefaultConnectionFactory {
+        private final ExecutorService listenerExecutor;
+
+        DisconnectedConnectionFactory(ExecutorService listenerExecutor) {
+            this.listenerExecutor = listenerExecutor;
+        }
+
+        @Override
+        public MemcachedConnection createConnection(List<InetSocketAddress> addrs) throws IOException {
+            return super.createConnection(Collections.emptyList());
+        }
+
+        @Override
+        public ExecutorService getListenerExecutorService() {
+            return listenerExecutor;
+        }
+
+        @Override
+        public boolean isDefaultExecutorService() {
+            return false;
+        }
+    }
+}
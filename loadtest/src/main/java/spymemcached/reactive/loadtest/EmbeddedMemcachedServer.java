@@ -0,0 +1,449 @@
+package spymemcached.reactive.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for a memcached server which speaks enough of both the text and the binary protocol for
+ * spymemcached's default and binary connection factories. The protocol is chosen per connection from its first byte.
+ * Each connection is served by its own thread, replies are flushed once the pipelined requests read so far have been
+ * answered, and items never expire.
+ */
+class EmbeddedMemcachedServer implements Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte REQUEST_MAGIC = (byte) 0x80;
+    private static final byte RESPONSE_MAGIC = (byte) 0x81;
+    private static final String VERSION = "1.6.0-embedded";
+
+    private static final int GET = 0x00;
+    private static final int SET = 0x01;
+    private static final int ADD = 0x02;
+    private static final int REPLACE = 0x03;
+    private static final int DELETE = 0x04;
+    private static final int INCREMENT = 0x05;
+    private static final int DECREMENT = 0x06;
+    private static final int QUIT = 0x07;
+    private static final int FLUSH = 0x08;
+    private static final int GETQ = 0x09;
+    private static final int NOOP = 0x0a;
+    private static final int VERSION_OPCODE = 0x0b;
+    private static final int GETK = 0x0c;
+    private static final int GETKQ = 0x0d;
+    private static final int TOUCH = 0x1c;
+
+    private static final short NO_ERROR = 0x00;
+    private static final short KEY_NOT_FOUND = 0x01;
+    private static final short KEY_EXISTS = 0x02;
+    private static final short NON_NUMERIC = 0x06;
+    private static final short UNKNOWN_COMMAND = 0x81;
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Item> items = new ConcurrentHashMap<>();
+    private final AtomicLong casIds = new AtomicLong();
+
+    EmbeddedMemcachedServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(this::accept, "embedded-memcached");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    InetSocketAddress address() {
+        return new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread connection = new Thread(() -> serve(socket), "embedded-memcached-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket closing = socket;
+             InputStream in = new BufferedInputStream(closing.getInputStream(), 64 * 1024);
+             OutputStream out = new BufferedOutputStream(closing.getOutputStream(), 64 * 1024)) {
+            in.mark(1);
+            int first = in.read();
+            if (first < 0) {
+                return;
+            }
+            in.reset();
+            if ((byte) first == REQUEST_MAGIC) {
+                serveBinary(new DataInputStream(in), new DataOutputStream(out));
+            } else {
+                serveText(in, out);
+            }
+        } catch (IOException ignored) {
+            // the client went away
+        }
+    }
+
+    private void serveText(InputStream in, OutputStream out) throws IOException {
+        String line;
+        while ((line = readLine(in)) != null) {
+            handleText(line.split(" "), in, out);
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    private void handleText(String[] command, InputStream in, OutputStream out) throws IOException {
+        switch (command[0]) {
+            case "get":
+            case "gets":
+                for (int i = 1; i < command.length; i++) {
+                    Item item = items.get(command[i]);
+                    if (item != null) {
+                        String cas = command[0].equals("gets") ? " " + item.cas : "";
+                        reply(out, "VALUE " + command[i] + " " + Integer.toUnsignedString(item.flags) + " "
+                                + item.data.length + cas);
+                        out.write(item.data);
+                        out.write(CRLF);
+                    }
+                }
+                reply(out, "END");
+                return;
+            case "set":
+            case "add":
+            case "replace":
+            case "cas":
+                byte[] data = new byte[Integer.parseInt(command[4])];
+                readFully(in, data);
+                readLine(in);
+                Item item = new Item(Integer.parseUnsignedInt(command[2]), data, casIds.incrementAndGet());
+                long cas = command[0].equals("cas") ? Long.parseLong(command[5]) : 0;
+                reply(out, store(command[0], command[1], item, cas));
+                return;
+            case "delete":
+                reply(out, items.remove(command[1]) != null ? "DELETED" : "NOT_FOUND");
+                return;
+            case "incr":
+            case "decr":
+                long delta = Long.parseLong(command[2]);
+                Item counter = items.computeIfPresent(command[1], (key, current) -> current.isNumeric()
+                        ? current.add(command[0].equals("incr") ? delta : -delta, casIds)
+                        : current);
+                if (counter == null) {
+                    reply(out, "NOT_FOUND");
+                } else if (!counter.isNumeric()) {
+                    reply(out, "CLIENT_ERROR cannot increment or decrement non-numeric value");
+                } else {
+                    reply(out, new String(counter.data, StandardCharsets.US_ASCII));
+                }
+                return;
+            case "touch":
+                reply(out, items.containsKey(command[1]) ? "TOUCHED" : "NOT_FOUND");
+                return;
+            case "version":
+                reply(out, "VERSION " + VERSION);
+                return;
+            case "flush_all":
+                items.clear();
+                reply(out, "OK");
+                return;
+            default:
+                reply(out, "ERROR");
+        }
+    }
+
+    private String store(String command, String key, Item item, long cas) {
+        switch (command) {
+            case "add":
+                return items.putIfAbsent(key, item) == null ? "STORED" : "NOT_STORED";
+            case "replace":
+                return items.replace(key, item) != null ? "STORED" : "NOT_STORED";
+            case "cas":
+                Item current = items.get(key);
+                if (current == null) {
+                    return "NOT_FOUND";
+                }
+                return current.cas == cas && items.replace(key, current, item) ? "STORED" : "EXISTS";
+            default:
+                items.put(key, item);
+                return "STORED";
+        }
+    }
+
+    private void serveBinary(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            BinaryRequest request = BinaryRequest.read(in);
+            if (request == null || request.opcode == QUIT) {
+                out.flush();
+                return;
+            }
+            handleBinary(request, out);
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    private void handleBinary(BinaryRequest request, DataOutputStream out) throws IOException {
+        switch (request.opcode) {
+            case GET:
+            case GETQ:
+            case GETK:
+            case GETKQ: {
+                Item item = items.get(request.key);
+                boolean quiet = request.opcode == GETQ || request.opcode == GETKQ;
+                boolean withKey = request.opcode == GETK || request.opcode == GETKQ;
+                if (item == null) {
+                    if (!quiet) {
+                        respond(out, request, KEY_NOT_FOUND, 0, new byte[0], withKey, "Not found".getBytes(
+                                StandardCharsets.US_ASCII));
+                    }
+                    return;
+                }
+                byte[] extras = new byte[4];
+                writeInt(extras, 0, item.flags);
+                respond(out, request, NO_ERROR, item.cas, extras, withKey, item.data);
+                return;
+            }
+            case SET:
+            case ADD:
+            case REPLACE: {
+                int flags = readInt(request.extras, 0);
+                Item item = new Item(flags, request.value, casIds.incrementAndGet());
+                String command = request.cas != 0 ? "cas"
+                        : request.opcode == ADD ? "add"
+                        : request.opcode == REPLACE ? "replace"
+                        : "set";
+                short status = toStatus(command, store(command, request.key, item, request.cas));
+                respond(out, request, status, status == NO_ERROR ? item.cas : 0, new byte[0], false, new byte[0]);
+                return;
+            }
+            case DELETE:
+                respond(out, request, items.remove(request.key) != null ? NO_ERROR : KEY_NOT_FOUND);
+                return;
+            case INCREMENT:
+            case DECREMENT: {
+                long delta = readLong(request.extras, 0);
+                long initial = readLong(request.extras, 8);
+                int exp = readInt(request.extras, 16);
+                long signedDelta = request.opcode == INCREMENT ? delta : -delta;
+                Item counter = items.compute(request.key, (key, current) -> {
+                    if (current != null) {
+                        return current.isNumeric() ? current.add(signedDelta, casIds) : current;
+                    }
+                    return exp == -1 ? null : new Item(0, Long.toUnsignedString(initial)
+                            .getBytes(StandardCharsets.US_ASCII), casIds.incrementAndGet());
+                });
+                if (counter == null) {
+                    respond(out, request, KEY_NOT_FOUND);
+                } else if (!counter.isNumeric()) {
+                    respond(out, request, NON_NUMERIC);
+                } else {
+                    byte[] value = new byte[8];
+                    writeLong(value, 0, Long.parseUnsignedLong(new String(counter.data, StandardCharsets.US_ASCII)));
+                    respond(out, request, NO_ERROR, counter.cas, new byte[0], false, value);
+                }
+                return;
+            }
+            case TOUCH:
+                respond(out, request, items.containsKey(request.key) ? NO_ERROR : KEY_NOT_FOUND);
+                return;
+            case FLUSH:
+                items.clear();
+                respond(out, request, NO_ERROR);
+                return;
+            case NOOP:
+                respond(out, request, NO_ERROR);
+                return;
+            case VERSION_OPCODE:
+                respond(out, request, NO_ERROR, 0, new byte[0], false, VERSION.getBytes(StandardCharsets.US_ASCII));
+                return;
+            default:
+                respond(out, request, UNKNOWN_COMMAND);
+        }
+    }
+
+    private static short toStatus(String command, String reply) {
+        if (reply.equals("STORED")) {
+            return NO_ERROR;
+        }
+        return reply.equals("NOT_FOUND") || command.equals("replace") ? KEY_NOT_FOUND : KEY_EXISTS;
+    }
+
+    private static void respond(DataOutputStream out, BinaryRequest request, short status) throws IOException {
+        respond(out, request, status, 0, new byte[0], false, new byte[0]);
+    }
+
+    private static void respond(DataOutputStream out,
+                                BinaryRequest request,
+                                short status,
+                                long cas,
+                                byte[] extras,
+                                boolean withKey,
+                                byte[] value) throws IOException {
+        byte[] key = withKey ? request.key.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        out.writeByte(RESPONSE_MAGIC);
+        out.writeByte(request.opcode);
+        out.writeShort(key.length);
+        out.writeByte(extras.length);
+        out.writeByte(0);
+        out.writeShort(status);
+        out.writeInt(extras.length + key.length + value.length);
+        out.writeInt(request.opaque);
+        out.writeLong(cas);
+        out.write(extras);
+        out.write(key);
+        out.write(value);
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(InputStream in, byte[] data) throws IOException {
+        int read = 0;
+        while (read < data.length) {
+            int count = in.read(data, read, data.length - read);
+            if (count < 0) {
+                throw new IOException("Connection closed");
+            }
+            read += count;
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (long) readInt(bytes, offset) << 32 | readInt(bytes, offset + 4) & 0xffffffffL;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        writeInt(bytes, offset, (int) (value >>> 32));
+        writeInt(bytes, offset + 4, (int) value);
+    }
+
+    private static class BinaryRequest {
+        private final int opcode;
+        private final int opaque;
+        private final long cas;
+        private final byte[] extras;
+        private final String key;
+        private final byte[] value;
+
+        private BinaryRequest(int opcode, int opaque, long cas, byte[] extras, String key, byte[] value) {
+            this.opcode = opcode;
+            this.opaque = opaque;
+            this.cas = cas;
+            this.extras = extras;
+            this.key = key;
+            this.value = value;
+        }
+
+        static BinaryRequest read(DataInputStream in) throws IOException {
+            int magic = in.read();
+            if (magic < 0) {
+                return null;
+            }
+            if ((byte) magic != REQUEST_MAGIC) {
+                throw new IOException("Unexpected magic " + magic);
+            }
+            int opcode = in.readUnsignedByte();
+            int keyLength = in.readUnsignedShort();
+            int extrasLength = in.readUnsignedByte();
+            in.readUnsignedByte(); // data type
+            in.readUnsignedShort(); // vbucket
+            int bodyLength = in.readInt();
+            int opaque = in.readInt();
+            long cas = in.readLong();
+            byte[] extras = new byte[extrasLength];
+            in.readFully(extras);
+            byte[] key = new byte[keyLength];
+            in.readFully(key);
+            byte[] value = new byte[bodyLength - extrasLength - keyLength];
+            in.readFully(value);
+            return new BinaryRequest(opcode, opaque, cas, extras, new String(key, StandardCharsets.UTF_8), value);
+        }
+    }
+
+    private static class Item {
+        private final int flags;
+        private final byte[] data;
+        private final long cas;
+
+        Item(int flags, byte[] data, long cas) {
+            this.flags = flags;
+            this.data = data;
+            this.cas = cas;
+        }
+
+        boolean isNumeric() {
+            if (data.length == 0 || data.length > 20) {
+                return false;
+            }
+            for (byte b : data) {
+                if (b < '0' || b > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Memcached counters are unsigned 64 bit values which wrap on increment and stop at zero on decrement.
+         */
+        Item add(long delta, AtomicLong casIds) {
+            long current = Long.parseUnsignedLong(new String(data, StandardCharsets.US_ASCII));
+            long next = delta < 0 && Long.compareUnsigned(current, -delta) < 0 ? 0 : current + delta;
+            return new Item(flags, Long.toUnsignedString(next).getBytes(StandardCharsets.US_ASCII),
+                    casIds.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package spymemcached.reactive.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks which of a fixed number of keys the next operation uses, as an index from 0 inclusive to the key count
+ * exclusive.
+ */
+interface KeyDistribution {
+
+    int next(ThreadLocalRandom random);
+
+    static KeyDistribution uniform(int keyCount) {
+        return random -> random.nextInt(keyCount);
+    }
+
+    /**
+     * Picks lower indexes more often, the index of rank {@code k} with a probability proportional to
+     * {@code 1 / k^theta}. A theta of 0.99 matches the skew commonly seen in caches.
+     * <p>
+     * Uses the method from Gray et al., "Quickly Generating Billion-Record Synthetic Databases", which draws each
+     * index in constant time once the normalisation constant has been computed.
+     */
+    static KeyDistribution zipfian(int keyCount, double theta) {
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("Theta must be between 0 and 1 exclusive");
+        }
+        double zetaN = zeta(keyCount, theta);
+        double zeta2 = zeta(2, theta);
+        double alpha = 1 / (1 - theta);
+        double eta = (1 - Math.pow(2.0 / keyCount, 1 - theta)) / (1 - zeta2 / zetaN);
+        double secondThreshold = 1 + Math.pow(0.5, theta);
+        return random -> {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < secondThreshold) {
+                return 1;
+            }
+            return Math.min((int) (keyCount * Math.pow(eta * u - eta + 1, alpha)), keyCount - 1);
+        };
+    }
+
+    static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,240 @@
+package spymemcached.reactive.loadtest;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import spymemcached.reactive.LatencyHistogramRecorder;
+import spymemcached.reactive.LatencySnapshot;
+import spymemcached.reactive.OperationOutcome;
+import spymemcached.reactive.OperationType;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues operations at a fixed arrival rate regardless of how quickly earlier ones complete, as independent users
+ * would, rather than waiting for each response before sending the next request.
+ * <p>
+ * Each operation has an intended start time on the schedule, and its response time is measured from then rather than
+ * from when it was actually issued. An operation issued late because the generator stalled, for example behind a
+ * blocked enqueue or a GC pause, is charged for the wait, so stalls are not hidden from the results the way a
+ * closed-loop benchmark hides them (coordinated omission).
+ */
+class LoadGenerator {
+
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Workload workload;
+    private final int threads;
+
+    LoadGenerator(Workload workload, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        this.workload = workload;
+        this.threads = threads;
+    }
+
+    /**
+     * Issues operations at the rate for the duration, then waits up to the drain timeout for the outstanding ones to
+     * complete. Operations still outstanding after that are cancelled and recorded as errors, with a response time up
+     * to the end of the drain, so a server which stops responding shows up in the response times rather than only in
+     * the incomplete count.
+     */
+    Result run(double ratePerSecond, Duration duration, Duration drainTimeout) throws InterruptedException {
+        LatencyHistogramRecorder responseTimes = new LatencyHistogramRecorder();
+        AtomicLong issued = new AtomicLong();
+        Set<Completion> outstanding = ConcurrentHashMap.newKeySet();
+        // every generator thread takes an equal share of the rate, offset so their arrivals interleave
+        double intervalNanos = threads * TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long end = start + duration.toNanos();
+        List<Thread> generators = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            long offset = (long) (t * intervalNanos / threads);
+            Thread generator = new Thread(
+                    () -> generate(start + offset, end, intervalNanos, responseTimes, issued, outstanding),
+                    "load-generator-" + t);
+            generator.start();
+            generators.add(generator);
+        }
+        for (Thread generator : generators) {
+            generator.join();
+        }
+        long issuedUntil = System.nanoTime();
+        long drainDeadline = issuedUntil + drainTimeout.toNanos();
+        while (!outstanding.isEmpty() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(1);
+        }
+        long incomplete = 0;
+        for (Completion completion : outstanding) {
+            if (completion.abandon()) {
+                incomplete++;
+            }
+        }
+        return new Result(ratePerSecond, issued.get(), incomplete, issuedUntil - start, responseTimes);
+    }
+
+    private void generate(long first,
+                          long end,
+                          double intervalNanos,
+                          LatencyHistogramRecorder responseTimes,
+                          AtomicLong issued,
+                          Set<Completion> outstanding) {
+        for (long i = 0; ; i++) {
+            long intended = first + (long) (i * intervalNanos);
+            if (intended - end >= 0) {
+                return;
+            }
+            awaitUntil(intended);
+            Workload.Operation operation = workload.next();
+            Completion completion = new Completion(operation.type, intended, responseTimes, outstanding);
+            outstanding.add(completion);
+            issued.incrementAndGet();
+            try {
+                operation.mono.subscribe(completion);
+            } catch (RuntimeException e) {
+                completion.onError(e);
+            }
+        }
+    }
+
+    private static void awaitUntil(long intended) {
+        long remaining;
+        while ((remaining = intended - System.nanoTime()) > 0) {
+            // parking overshoots by tens of microseconds, so spin through the last stretch
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Records the response time of one operation from its intended start.
+     */
+    private static class Completion implements CoreSubscriber<Object> {
+        private final OperationType type;
+        private final long intended;
+        private final LatencyHistogramRecorder responseTimes;
+        private final Set<Completion> outstanding;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile Subscription subscription;
+
+        Completion(OperationType type,
+                   long intended,
+                   LatencyHistogramRecorder responseTimes,
+                   Set<Completion> outstanding) {
+            this.type = type;
+            this.intended = intended;
+            this.responseTimes = responseTimes;
+            this.outstanding = outstanding;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Object value) {
+            record(Boolean.FALSE.equals(value) ? OperationOutcome.MISS : OperationOutcome.SUCCESS);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            record(OperationOutcome.ERROR);
+        }
+
+        @Override
+        public void onComplete() {
+            record(OperationOutcome.MISS);
+        }
+
+        /**
+         * Gives up on the operation if it has not completed yet, recording it as an error which took until now.
+         */
+        boolean abandon() {
+            if (!record(OperationOutcome.ERROR)) {
+                return false;
+            }
+            Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+            return true;
+        }
+
+        private boolean record(OperationOutcome outcome) {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            responseTimes.record(type, 1, intended, System.nanoTime() - intended, outcome);
+            outstanding.remove(this);
+            return true;
+        }
+    }
+
+    static class Result {
+        private static final OperationType[] TYPES = {OperationType.GET, OperationType.SET};
+
+        private final double targetRate;
+        private final long issued;
+        private final long incomplete;
+        private final long elapsedNanos;
+        private final LatencyHistogramRecorder responseTimes;
+
+        Result(double targetRate,
+               long issued,
+               long incomplete,
+               long elapsedNanos,
+               LatencyHistogramRecorder responseTimes) {
+            this.targetRate = targetRate;
+            this.issued = issued;
+            this.incomplete = incomplete;
+            this.elapsedNanos = elapsedNanos;
+            this.responseTimes = responseTimes;
+        }
+
+        /**
+         * Prints the response times measured by the generator next to the service times the template recorded for
+         * the same operations, which only cover the time from issuing each operation until it completed.
+         */
+        void print(PrintStream out, LatencyHistogramRecorder serviceTimes) {
+            double achievedRate = issued * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            long errors = 0;
+            for (OperationType type : TYPES) {
+                errors += responseTimes.snapshot(type).count(OperationOutcome.ERROR);
+            }
+            out.printf("target %.0f ops/s: issued %d at %.0f ops/s, %d errors of which %d incomplete%n",
+                    targetRate, issued, achievedRate, errors, incomplete);
+            out.printf("  %-4s %-8s %10s %10s %10s %10s %10s %10s %10s%n",
+                    "op", "latency", "count", "misses", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+            for (OperationType type : TYPES) {
+                print(out, type, "response", responseTimes.snapshot(type));
+                print(out, type, "service", serviceTimes.snapshot(type));
+            }
+        }
+
+        private static void print(PrintStream out, OperationType type, String latency, LatencySnapshot snapshot) {
+            if (snapshot.count() == 0) {
+                return;
+            }
+            out.printf("  %-4s %-8s %10d %10d %10d %10d %10d %10d %10d%n",
+                    type, latency, snapshot.count(), snapshot.count(OperationOutcome.MISS),
+                    micros(snapshot.p50()), micros(snapshot.percentile(0.9)), micros(snapshot.p99()),
+                    micros(snapshot.p999()), micros(snapshot.percentile(1)));
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package spymemcached.reactive.loadtest;
+
+import net.spy.memcached.AddrUtil;
+import net.spy.memcached.ConnectionFactoryBuilder;
+import net.spy.memcached.MemcachedClient;
+import spymemcached.reactive.LatencyHistogramRecorder;
+import spymemcached.reactive.OperationOutcome;
+import spymemcached.reactive.OperationRecorder;
+import spymemcached.reactive.OperationType;
+import spymemcached.reactive.ReactiveMemcachedTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Drives a {@link ReactiveMemcachedTemplate} with an open-loop {@link LoadGenerator} at each of a series of arrival
+ * rates and prints the response and service time percentiles reached at each. Without {@code --servers}, the template
+ * talks to an {@link EmbeddedMemcachedServer} started in the same JVM, so runs need nothing but the JDK.
+ * <p>
+ * Options are given as {@code --name=value}:
+ * <ul>
+ * <li>{@code rates}: comma separated operations per second, {@code 10000,20000,40000} by default</li>
+ * <li>{@code duration}, {@code warmup}: seconds measured and discarded at each rate, 30 and 10 by default</li>
+ * <li>{@code keys}: the number of distinct keys, 100000 by default</li>
+ * <li>{@code distribution}: {@code zipfian} (the default) or {@code uniform}</li>
+ * <li>{@code theta}: the skew of the zipfian distribution, 0.99 by default</li>
+ * <li>{@code read-ratio}: the fraction of operations which are gets rather than sets, 0.9 by default</li>
+ * <li>{@code value-size}: the size of the values set in bytes, 100 by default</li>
+ * <li>{@code protocol}: {@code text} (the default) or {@code binary}</li>
+ * <li>{@code threads}: the number of generator threads sharing the rate, 1 by default</li>
+ * <li>{@code servers}: space or comma separated {@code host:port} addresses of real servers to use instead</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final Duration POPULATE_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        List<Double> rates = new ArrayList<>();
+        for (String rate : option(options, "rates", "10000,20000,40000").split(",")) {
+            rates.add(Double.parseDouble(rate.trim()));
+        }
+        Duration duration = Duration.ofSeconds(Long.parseLong(option(options, "duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(option(options, "warmup", "10")));
+        int keyCount = Integer.parseInt(option(options, "keys", "100000"));
+        KeyDistribution keys = distribution(options, keyCount);
+        double readRatio = Double.parseDouble(option(options, "read-ratio", "0.9"));
+        int valueSize = Integer.parseInt(option(options, "value-size", "100"));
+        ConnectionFactoryBuilder.Protocol protocol =
+                ConnectionFactoryBuilder.Protocol.valueOf(option(options, "protocol", "text").toUpperCase(Locale.ROOT));
+        int threads = Integer.parseInt(option(options, "threads", "1"));
+        String servers = options.get("servers");
+
+        EmbeddedMemcachedServer embedded = servers == null ? new EmbeddedMemcachedServer(0) : null;
+        List<InetSocketAddress> addresses = embedded != null
+                ? Collections.singletonList(embedded.address())
+                : AddrUtil.getAddresses(servers);
+        ResettableRecorder serviceTimes = new ResettableRecorder();
+        MemcachedClient client = new MemcachedClient(new ConnectionFactoryBuilder()
+                .setProtocol(protocol)
+                // fail rather than stall the generator once the client's queue is full, so overload shows up as
+                // errors instead of silently lowering the arrival rate
+                .setOpQueueMaxBlockTime(0)
+                .build(), addresses);
+        try {
+            ReactiveMemcachedTemplate template = ReactiveMemcachedTemplate.builder(client)
+                    .operationRecorder(serviceTimes)
+                    .build();
+            Workload workload = new Workload(template, keyCount, keys, readRatio, valueSize);
+            System.out.printf("%s, %s keys, %s protocol, %d generator threads, against %s%n", workload,
+                    option(options, "distribution", "zipfian"), protocol.name().toLowerCase(Locale.ROOT), threads,
+                    embedded != null ? "an embedded server" : addresses);
+            workload.populate(256, POPULATE_TIMEOUT);
+
+            LoadGenerator generator = new LoadGenerator(workload, threads);
+            for (double rate : rates) {
+                if (!warmup.isZero()) {
+                    generator.run(rate, warmup, DRAIN_TIMEOUT);
+                }
+                LatencyHistogramRecorder measured = serviceTimes.reset();
+                generator.run(rate, duration, DRAIN_TIMEOUT).print(System.out, measured);
+            }
+        } finally {
+            client.shutdown();
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    private static KeyDistribution distribution(Map<String, String> options, int keyCount) {
+        String distribution = option(options, "distribution", "zipfian");
+        switch (distribution) {
+            case "uniform":
+                return KeyDistribution.uniform(keyCount);
+            case "zipfian":
+                return KeyDistribution.zipfian(keyCount, Double.parseDouble(option(options, "theta", "0.99")));
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Lets the template's recorder be swapped for a fresh one at the start of each measurement, so warmup and
+     * earlier rates are left out.
+     */
+    private static class ResettableRecorder implements OperationRecorder {
+        private volatile LatencyHistogramRecorder current = new LatencyHistogramRecorder();
+
+        LatencyHistogramRecorder reset() {
+            current = new LatencyHistogramRecorder();
+            return current;
+        }
+
+        @Override
+        public void record(OperationType type, int keyCount, long startNanos, long latencyNanos,
+                           OperationOutcome outcome) {
+            current.record(type, keyCount, startNanos, latencyNanos, outcome);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package spymemcached.reactive.loadtest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spymemcached.reactive.OperationType;
+import spymemcached.reactive.ReactiveMemcachedOperations;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The mix of operations the load generator issues: a get or a set of one of a fixed set of keys, with the key picked
+ * from a {@link KeyDistribution} and sets writing values of a fixed size.
+ */
+class Workload {
+
+    private static final String KEY_PREFIX = "loadtest:";
+
+    private final ReactiveMemcachedOperations operations;
+    private final int keyCount;
+    private final KeyDistribution keys;
+    private final double readRatio;
+    private final byte[] value;
+
+    Workload(ReactiveMemcachedOperations operations,
+             int keyCount,
+             KeyDistribution keys,
+             double readRatio,
+             int valueSize) {
+        if (readRatio < 0 || readRatio > 1) {
+            throw new IllegalArgumentException("Read ratio must be between 0 and 1");
+        }
+        this.operations = operations;
+        this.keyCount = keyCount;
+        this.keys = keys;
+        this.readRatio = readRatio;
+        this.value = new byte[valueSize];
+        ThreadLocalRandom.current().nextBytes(value);
+    }
+
+    /**
+     * Stores a value under every key, so reads hit from the start.
+     */
+    void populate(int concurrency, Duration timeout) {
+        Flux.range(0, keyCount)
+                .flatMap(i -> operations.set(key(i), 0, value), concurrency)
+                .then()
+                .block(timeout);
+    }
+
+    /**
+     * Picks the next operation, which is only issued on subscription.
+     */
+    Operation next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = key(keys.next(random));
+        if (random.nextDouble() < readRatio) {
+            return new Operation(OperationType.GET, operations.get(key));
+        }
+        return new Operation(OperationType.SET, operations.set(key, 0, value));
+    }
+
+    @Override
+    public String toString() {
+        return keyCount + " keys, " + Math.round(readRatio * 100) + "% reads, " + value.length + " byte values";
+    }
+
+    private static String key(int index) {
+        return KEY_PREFIX + index;
+    }
+
+    static class Operation {
+        final OperationType type;
+        final Mono<?> mono;
+
+        Operation(OperationType type, Mono<?> mono) {
+            this.type = type;
+            this.mono = mono;
+        }
+    }
+}
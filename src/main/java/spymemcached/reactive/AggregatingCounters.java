@@ -0,0 +1,299 @@
+package spymemcached.reactive;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates increments and decrements of counters in-process and applies the net change to each counter with a
+ * single {@code incr} or {@code decr} per flush interval, rather than one round-trip per change. Changes are only
+ * visible to other clients once flushed, and since memcached does not decrement below zero, only the net change
+ * within an interval is floored.
+ * <p>
+ * Changes which fail to flush are kept and retried at the next interval. Closing flushes whatever is pending.
+ */
+public class AggregatingCounters implements Closeable {
+
+    /**
+     * The number of flushes a counter may go unchanged before it stops being tracked.
+     */
+    private static final int IDLE_FLUSHES = 2;
+
+    private final ReactiveMemcachedOperations operations;
+    private final int exp;
+    private final int concurrency;
+    private final Duration closeTimeout;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    // retired counters which may have been changed after the flush which retired them drained them
+    private final Set<Counter> stranded = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Mono<Void>> running = new AtomicReference<>();
+    private final Disposable schedule;
+    private volatile boolean closed;
+
+    private AggregatingCounters(Builder builder) {
+        this.operations = builder.operations;
+        this.exp = builder.exp;
+        this.concurrency = builder.concurrency;
+        this.closeTimeout = builder.closeTimeout;
+        long intervalNanos = builder.flushInterval.toNanos();
+        // a flush which overruns the interval is not overlapped, the next one just starts later
+        this.schedule = builder.scheduler.schedulePeriodically(this::startFlush, intervalNanos, intervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    public static Builder builder(ReactiveMemcachedOperations operations) {
+        return new Builder(operations);
+    }
+
+    /**
+     * @throws IllegalStateException if these counters have been closed
+     */
+    public void incr(String key, long by) {
+        checkOpen();
+        add(key, by);
+    }
+
+    /**
+     * @throws IllegalStateException if these counters have been closed
+     */
+    public void decr(String key, long by) {
+        checkOpen();
+        add(key, -by);
+    }
+
+    /**
+     * Reads the counter from memcached and adds the changes made through this instance which have not been applied
+     * yet, so callers see their own changes straight away. Completes with 0 if there is no counter and no pending
+     * change.
+     */
+    public Mono<Long> get(String key) {
+        return operations.incr(key, 0L).map(value -> Math.max(Math.max(value, 0) + pending(key), 0));
+    }
+
+    /**
+     * The net change made to the counter through this instance which has not been applied yet.
+     */
+    public long pending(String key) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.pending();
+    }
+
+    /**
+     * The net changes made through this instance which have not been applied yet, by counter. After {@link #close()}
+     * these are the changes which could not be applied within the close timeout.
+     */
+    public Map<String, Long> pending() {
+        Map<String, Long> pending = new HashMap<>();
+        for (Counter counter : counters.values()) {
+            pending.merge(counter.key, counter.pending(), Long::sum);
+        }
+        for (Counter counter : stranded) {
+            pending.merge(counter.key, counter.pending(), Long::sum);
+        }
+        pending.values().removeIf(delta -> delta == 0);
+        return pending;
+    }
+
+    /**
+     * Applies the pending changes now, completing once they have been applied or have failed and been kept for the
+     * next flush. If a flush is already running, this one starts once it completes.
+     */
+    public Mono<Void> flush() {
+        return Mono.defer(() -> {
+            Mono<Void> current = running.get();
+            return current == null ? startFlush() : current.then(Mono.defer(this::startFlush));
+        });
+    }
+
+    /**
+     * Stops the periodic flush and applies whatever is pending, waiting up to the close timeout for it to be applied.
+     * Changes made after closing are rejected; those which could not be applied in time are left in
+     * {@link #pending()}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        schedule.dispose();
+        flush().timeout(closeTimeout, Mono.empty()).block();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Counters have been closed");
+        }
+    }
+
+    /**
+     * Starts a flush unless one is already running, returning the running flush.
+     */
+    private Mono<Void> startFlush() {
+        for (;;) {
+            Mono<Void> current = running.get();
+            if (current != null) {
+                return current;
+            }
+            Mono<Void> flush = Mono.defer(this::flushPending)
+                    .doOnTerminate(() -> running.set(null))
+                    .cache();
+            if (running.compareAndSet(null, flush)) {
+                flush.subscribe();
+                return flush;
+            }
+        }
+    }
+
+    private Mono<Void> flushPending() {
+        return Flux.fromIterable(counters.values())
+                .flatMap(this::flushCounter, concurrency)
+                .thenMany(Flux.defer(() -> Flux.fromIterable(stranded))
+                        .filter(stranded::remove)
+                        .flatMap(counter -> apply(counter, counter.drain()), concurrency))
+                .then();
+    }
+
+    private void add(String key, long delta) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, Counter::new);
+        }
+        counter.delta.add(delta);
+        if (counter.retired) {
+            // retired since it was looked up, so the flush which retired it may have missed this change
+            stranded.add(counter);
+        }
+    }
+
+    private Mono<Void> flushCounter(Counter counter) {
+        long delta = counter.drain();
+        if (delta == 0) {
+            if (++counter.idleFlushes >= IDLE_FLUSHES) {
+                counters.computeIfPresent(counter.key, (k, live) -> {
+                    if (live != counter) {
+                        return live;
+                    }
+                    counter.retired = true;
+                    return null;
+                });
+                if (counter.delta.sum() != 0) {
+                    stranded.add(counter);
+                }
+            }
+            return Mono.empty();
+        }
+        counter.idleFlushes = 0;
+        return apply(counter, delta);
+    }
+
+    private Mono<Void> apply(Counter counter, long delta) {
+        if (delta == 0) {
+            return Mono.empty();
+        }
+        counter.flushing.addAndGet(delta);
+        Mono<Long> apply = delta > 0
+                ? operations.incr(counter.key, delta, delta, exp)
+                : operations.decr(counter.key, -delta, 0, exp);
+        return apply
+                .doOnError(e -> add(counter.key, delta))
+                .doFinally(ignored -> counter.flushing.addAndGet(-delta))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static class Counter {
+        private final String key;
+        // changed without locking, only ever drained by the flush in progress
+        private final LongAdder delta = new LongAdder();
+        private final AtomicLong flushing = new AtomicLong();
+        private volatile boolean retired;
+        // only accessed by the flush in progress
+        private int idleFlushes;
+
+        Counter(String key) {
+            this.key = key;
+        }
+
+        long drain() {
+            // subtracting what was read rather than resetting keeps changes which land in between
+            long drained = delta.sum();
+            delta.add(-drained);
+            return drained;
+        }
+
+        long pending() {
+            return delta.sum() + flushing.get();
+        }
+    }
+
+    public static class Builder {
+        private final ReactiveMemcachedOperations operations;
+        private Duration flushInterval = Duration.ofSeconds(1);
+        private Scheduler scheduler = Schedulers.parallel();
+        private int exp;
+        private int concurrency = 64;
+        private Duration closeTimeout = Duration.ofSeconds(5);
+
+        private Builder(ReactiveMemcachedOperations operations) {
+            this.operations = operations;
+        }
+
+        /**
+         * How often pending changes are applied, every second by default.
+         */
+        public Builder flushInterval(Duration flushInterval) {
+            if (flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("Flush interval must be positive");
+            }
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * The scheduler on which flushes are triggered, {@link Schedulers#parallel()} by default.
+         */
+        public Builder scheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * The expiry of counters created by a flush, never by default.
+         */
+        public Builder exp(int exp) {
+            this.exp = exp;
+            return this;
+        }
+
+        /**
+         * The number of counters updated at once by a flush, 64 by default.
+         */
+        public Builder concurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("Concurrency must be positive");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public Builder closeTimeout(Duration closeTimeout) {
+            this.closeTimeout = closeTimeout;
+            return this;
+        }
+
+        public AggregatingCounters build() {
+            return new AggregatingCounters(this);
+        }
+    }
+}
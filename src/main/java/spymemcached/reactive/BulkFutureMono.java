@@ -0,0 +1,50 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.internal.BulkFuture;
+import net.spy.memcached.internal.BulkGetCompletionListener;
+import net.spy.memcached.internal.BulkGetFuture;
+import reactor.core.CoreSubscriber;
+
+import java.util.function.Supplier;
+
+/**
+ * Adapts a {@link BulkFuture} to a {@link reactor.core.publisher.Mono}.
+ */
+class BulkFutureMono<T> extends FutureMono<T, BulkFuture<T>> {
+
+    BulkFutureMono(OperationType type,
+                   int keyCount,
+                   Supplier<BulkFuture<T>> futureCreator,
+                   FutureMonoSettings settings) {
+        super(type, keyCount, futureCreator, settings);
+    }
+
+    @Override
+    FutureSubscription<T, BulkFuture<T>> subscription(CoreSubscriber<? super T> actual,
+                                                      OperationType type,
+                                                      int keyCount,
+                                                      FutureMonoSettings settings) {
+        return new BulkFutureSubscription<>(actual, type, keyCount, settings);
+    }
+
+    private static class BulkFutureSubscription<T> extends FutureSubscription<T, BulkFuture<T>>
+            implements BulkGetCompletionListener {
+
+        BulkFutureSubscription(CoreSubscriber<? super T> actual,
+                               OperationType type,
+                               int keyCount,
+                               FutureMonoSettings settings) {
+            super(actual, type, keyCount, settings);
+        }
+
+        @Override
+        void addListener(BulkFuture<T> future) {
+            future.addListener(this);
+        }
+
+        @Override
+        public void onComplete(BulkGetFuture<?> future) {
+            onFutureComplete();
+        }
+    }
+}
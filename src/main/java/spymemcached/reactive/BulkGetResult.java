@@ -0,0 +1,51 @@
+package spymemcached.reactive;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a bulk get which may only partly succeed: the values found, the keys which are not stored, and the
+ * keys which could not be looked up because their node failed or did not respond in time, with the cause.
+ */
+public final class BulkGetResult<T> {
+
+    private final Map<String, T> values;
+    private final Set<String> missed;
+    private final Map<String, Throwable> failures;
+
+    BulkGetResult(Map<String, T> values, Set<String> missed, Map<String, Throwable> failures) {
+        this.values = Collections.unmodifiableMap(values);
+        this.missed = Collections.unmodifiableSet(missed);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public Map<String, T> values() {
+        return values;
+    }
+
+    public Set<String> missed() {
+        return missed;
+    }
+
+    /**
+     * The cause for each key which could not be looked up, a {@link java.util.concurrent.TimeoutException} if its
+     * node did not respond before the deadline.
+     */
+    public Map<String, Throwable> failures() {
+        return failures;
+    }
+
+    /**
+     * Whether every key was looked up, so that {@link #missed()} holds every key not found.
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkGetResult{values=" + values.size() + ", missed=" + missed.size()
+                + ", failures=" + failures.size() + "}";
+    }
+}
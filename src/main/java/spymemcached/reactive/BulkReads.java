@@ -0,0 +1,35 @@
+package spymemcached.reactive;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Backs the streaming bulk read operations of {@link ReactiveMemcachedOperations}.
+ */
+final class BulkReads {
+
+    private BulkReads() {
+    }
+
+    static <V> Flux<Map.Entry<String, V>> getMany(Publisher<String> keys,
+                                                  int batchSize,
+                                                  int maxInFlight,
+                                                  Function<Collection<String>, Mono<Map<String, V>>> getBulk) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum in-flight batches must be positive");
+        }
+        return Flux.from(keys)
+                .buffer(batchSize)
+                .flatMap((List<String> batch) -> getBulk.apply(batch).flatMapIterable(Map::entrySet),
+                        maxInFlight, batchSize);
+    }
+}
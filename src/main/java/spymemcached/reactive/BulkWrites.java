@@ -0,0 +1,52 @@
+package spymemcached.reactive;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Backs the bulk write operations of {@link ReactiveMemcachedOperations}.
+ */
+final class BulkWrites {
+
+    /**
+     * spymemcached rejects operations with an {@link IllegalStateException} when its operation queue is full, which
+     * is usually transient, so such sets are retried a few times before being reported as failed.
+     */
+    private static final int QUEUE_FULL_RETRIES = 3;
+    private static final Duration QUEUE_FULL_BACKOFF = Duration.ofMillis(10);
+
+    private BulkWrites() {
+    }
+
+    static <V> Flux<SetResult> setAll(Publisher<? extends Map.Entry<String, ? extends V>> entries,
+                                      int maxInFlight,
+                                      BiFunction<String, V, Mono<Boolean>> set) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum in-flight sets must be positive");
+        }
+        return Flux.from(entries)
+                .flatMap(entry -> store(entry.getKey(), set.apply(entry.getKey(), entry.getValue())), maxInFlight);
+    }
+
+    private static Mono<SetResult> store(String key, Mono<Boolean> set) {
+        return set
+                .retryWhen(BulkWrites::retryWhenQueueFull)
+                .map(stored -> SetResult.completed(key, stored))
+                .onErrorResume(error -> Mono.just(SetResult.failed(key, error)));
+    }
+
+    private static Publisher<?> retryWhenQueueFull(Flux<Throwable> errors) {
+        return errors.index().flatMap(attempt -> {
+            Throwable error = attempt.getT2();
+            if (attempt.getT1() >= QUEUE_FULL_RETRIES || !(error instanceof IllegalStateException)) {
+                return Mono.error(error);
+            }
+            return Mono.delay(QUEUE_FULL_BACKOFF.multipliedBy(1L << attempt.getT1()));
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.BaseSerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the remaining bytes of a {@link ByteBuffer} as they are, flagged as {@link
+ * net.spy.memcached.transcoders.SerializingTranscoder} flags byte arrays so that either can read what the other wrote.
+ * <p>
+ * A heap buffer which spans exactly its whole backing array is stored without copying; any other buffer, including
+ * read-only and direct buffers, is copied once. The position of the buffer being stored is left unchanged. A decoded
+ * buffer wraps the bytes read without copying them.
+ */
+public class ByteBufferTranscoder extends BaseSerializingTranscoder implements Transcoder<ByteBuffer> {
+
+    static final ByteBufferTranscoder INSTANCE = new ByteBufferTranscoder();
+
+    // as SerializingTranscoder's SPECIAL_BYTEARRAY and COMPRESSED
+    static final int FLAGS = 8 << 8;
+    private static final int COMPRESSED = 2;
+
+    public ByteBufferTranscoder() {
+        super(CachedData.MAX_SIZE);
+    }
+
+    @Override
+    public CachedData encode(ByteBuffer o) {
+        return new CachedData(FLAGS, bytes(o), getMaxSize());
+    }
+
+    @Override
+    public ByteBuffer decode(CachedData d) {
+        byte[] data = (d.getFlags() & COMPRESSED) != 0 ? decompress(d.getData()) : d.getData();
+        return data == null ? null : ByteBuffer.wrap(data);
+    }
+
+    static byte[] bytes(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,194 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backs {@link ReactiveMemcachedOperations#getOrCompute(String, int, Mono, Transcoder)}.
+ * <p>
+ * Values are stored along with when they go stale and how long they took to compute. Each read decides at random
+ * whether to recompute the value before it goes stale, more likely the closer it is and the longer it took to compute
+ * last time, which spreads recomputation of a popular key out rather than having every reader miss at once (the
+ * XFetch algorithm). Only the reader holding a short lease, taken with {@code add}, recomputes; everyone else is
+ * served the stale value, which is kept for as long again as it was fresh.
+ */
+final class CacheAside {
+
+    static final int STAMPED = 1 << 5;
+    static final Transcoder<Object> SERIALIZING = new SerializingTranscoder();
+
+    /**
+     * How long a reader may recompute a value for before another may take over.
+     */
+    static final int LEASE_SECONDS = 10;
+
+    private static final int MAX_RELATIVE_EXP = (int) TimeUnit.DAYS.toSeconds(30);
+    private static final int STAMP_BYTES = Long.BYTES + Integer.BYTES;
+    private static final double BETA = 1.0;
+    private static final Duration LEASE_POLL_INTERVAL = Duration.ofMillis(50);
+    private static final int LEASE_POLLS = 20;
+
+    private CacheAside() {
+    }
+
+    static <T> Mono<T> getOrCompute(ReactiveMemcachedOperations operations,
+                                    String key,
+                                    int exp,
+                                    Mono<T> loader,
+                                    Transcoder<T> tc) {
+        if (exp < 0 || exp > MAX_RELATIVE_EXP) {
+            throw new IllegalArgumentException("Expiry must be between 0 and 30 days in seconds");
+        }
+        Transcoder<Stamped<T>> stampedTranscoder = new StampedTranscoder<>(tc);
+        return operations.get(key, stampedTranscoder)
+                .flatMap(stamped -> stamped.isDue(System.currentTimeMillis())
+                        ? refresh(operations, key, exp, loader, stampedTranscoder, stamped)
+                        : Mono.justOrEmpty(stamped.value))
+                .switchIfEmpty(Mono.defer(() -> load(operations, key, exp, loader, stampedTranscoder, 0)));
+    }
+
+    private static <T> Mono<T> refresh(ReactiveMemcachedOperations operations,
+                                       String key,
+                                       int exp,
+                                       Mono<T> loader,
+                                       Transcoder<Stamped<T>> tc,
+                                       Stamped<T> stale) {
+        return operations.add(leaseKey(key), LEASE_SECONDS, "")
+                .flatMap(leased -> leased
+                        ? compute(operations, key, exp, loader, tc, true)
+                        : Mono.just(stale.value))
+                .defaultIfEmpty(stale.value)
+                .onErrorReturn(stale.value);
+    }
+
+    private static <T> Mono<T> load(ReactiveMemcachedOperations operations,
+                                    String key,
+                                    int exp,
+                                    Mono<T> loader,
+                                    Transcoder<Stamped<T>> tc,
+                                    int polls) {
+        return operations.add(leaseKey(key), LEASE_SECONDS, "").flatMap(leased -> {
+            if (leased || polls == LEASE_POLLS) {
+                return compute(operations, key, exp, loader, tc, leased);
+            }
+            // another reader is computing the value, so wait for it rather than computing it again
+            return Mono.delay(LEASE_POLL_INTERVAL)
+                    .then(operations.get(key, tc))
+                    .flatMap(stamped -> Mono.justOrEmpty(stamped.value))
+                    .switchIfEmpty(Mono.defer(() -> load(operations, key, exp, loader, tc, polls + 1)));
+        });
+    }
+
+    private static <T> Mono<T> compute(ReactiveMemcachedOperations operations,
+                                       String key,
+                                       int exp,
+                                       Mono<T> loader,
+                                       Transcoder<Stamped<T>> tc,
+                                       boolean leased) {
+        Mono<Void> release = !leased ? Mono.empty() :
+                operations.delete(leaseKey(key)).onErrorResume(e -> Mono.empty()).then();
+        return Mono.defer(() -> {
+            long start = System.currentTimeMillis();
+            return loader.flatMap(value -> {
+                long now = System.currentTimeMillis();
+                Stamped<T> stamped = new Stamped<>(value,
+                        exp == 0 ? Long.MAX_VALUE : now + TimeUnit.SECONDS.toMillis(exp),
+                        (int) Math.min(now - start, Integer.MAX_VALUE));
+                return operations.set(key, staleExp(exp), stamped, tc)
+                        .onErrorResume(e -> Mono.empty())
+                        .thenReturn(value);
+            });
+        })
+                .onErrorResume(e -> release.then(Mono.error(e)))
+                .switchIfEmpty(release.then(Mono.empty()))
+                .flatMap(value -> release.thenReturn(value));
+    }
+
+    private static int staleExp(int exp) {
+        return (int) Math.min(2L * exp, MAX_RELATIVE_EXP);
+    }
+
+    static String leaseKey(String key) {
+        return key + ":lease";
+    }
+
+    static final class Stamped<T> {
+        final T value;
+        final long staleAtMillis;
+        final int computeMillis;
+
+        Stamped(T value, long staleAtMillis, int computeMillis) {
+            this.value = value;
+            this.staleAtMillis = staleAtMillis;
+            this.computeMillis = computeMillis;
+        }
+
+        boolean isDue(long now) {
+            double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+            return now - computeMillis * BETA * Math.log(random) >= staleAtMillis;
+        }
+    }
+
+    /**
+     * Prefixes the wrapped transcoder's data with the stamp, marking it with a flag bit spymemcached's transcoders do
+     * not use. Values stored without the stamp decode as never going stale. Wrappers of the same transcoder are equal,
+     * so gets through a new wrapper per call still share the batcher or in-flight lookup of their transcoder.
+     */
+    static final class StampedTranscoder<T> implements Transcoder<Stamped<T>> {
+        private final Transcoder<T> transcoder;
+
+        StampedTranscoder(Transcoder<T> transcoder) {
+            this.transcoder = transcoder;
+        }
+
+        @Override
+        public boolean asyncDecode(CachedData d) {
+            return transcoder.asyncDecode(d);
+        }
+
+        @Override
+        public CachedData encode(Stamped<T> o) {
+            CachedData encoded = transcoder.encode(o.value);
+            byte[] data = encoded.getData();
+            ByteBuffer stamped = ByteBuffer.allocate(STAMP_BYTES + data.length);
+            stamped.putLong(o.staleAtMillis).putInt(o.computeMillis).put(data);
+            return new CachedData(encoded.getFlags() | STAMPED, stamped.array(), getMaxSize());
+        }
+
+        @Override
+        public Stamped<T> decode(CachedData d) {
+            if ((d.getFlags() & STAMPED) == 0) {
+                return new Stamped<>(transcoder.decode(d), Long.MAX_VALUE, 0);
+            }
+            ByteBuffer data = ByteBuffer.wrap(d.getData());
+            long staleAtMillis = data.getLong();
+            int computeMillis = data.getInt();
+            byte[] value = Arrays.copyOfRange(d.getData(), STAMP_BYTES, d.getData().length);
+            return new Stamped<>(transcoder.decode(new CachedData(d.getFlags() & ~STAMPED, value, getMaxSize())),
+                    staleAtMillis, computeMillis);
+        }
+
+        @Override
+        public int getMaxSize() {
+            return transcoder.getMaxSize();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StampedTranscoder && transcoder.equals(((StampedTranscoder<?>) o).transcoder);
+        }
+
+        @Override
+        public int hashCode() {
+            return transcoder.hashCode() ^ STAMPED;
+        }
+    }
+}
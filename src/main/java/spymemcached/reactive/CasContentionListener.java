@@ -0,0 +1,23 @@
+package spymemcached.reactive;
+
+/**
+ * Receives the number of retries each {@code casUpdate} needed, to find the keys whose updates contend. It is called
+ * on the thread which completes the update, so implementations must be thread-safe and cheap.
+ *
+ * @see CasRetry
+ */
+@FunctionalInterface
+public interface CasContentionListener {
+
+    CasContentionListener NOOP = (key, retries, updated) -> {
+    };
+
+    /**
+     * @param key     the key updated
+     * @param retries the number of times the update was retried because another client changed or deleted the value
+     *                first
+     * @param updated whether the update was applied, false if the retry budget ran out, the update failed or the
+     *                value was deleted while retrying
+     */
+    void onUpdate(String key, int retries, boolean updated);
+}
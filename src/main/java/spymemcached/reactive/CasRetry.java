@@ -0,0 +1,116 @@
+package spymemcached.reactive;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How {@code casUpdate} retries when another client changes the value between its {@code gets} and {@code cas}.
+ * Each retry waits a random time of up to the initial backoff doubled for every earlier retry, capped at the maximum
+ * backoff, so contending clients spread out rather than retrying in lockstep.
+ * <p>
+ * Each instance also counts the retries and exhausted retry budgets of every update made with it, so contention is
+ * observable without a {@link CasContentionListener}.
+ */
+public final class CasRetry {
+
+    /**
+     * Up to 10 retries, backing off from 2 milliseconds to at most 200.
+     */
+    public static final CasRetry DEFAULT = builder().build();
+
+    private final int maxRetries;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final CasContentionListener contentionListener;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    private CasRetry(Builder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.initialBackoffNanos = builder.initialBackoff.toNanos();
+        this.maxBackoffNanos = builder.maxBackoff.toNanos();
+        this.contentionListener = builder.contentionListener;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The number of times updates made with this instance have been retried.
+     */
+    public long retries() {
+        return retries.sum();
+    }
+
+    /**
+     * The number of updates made with this instance which gave up because they ran out of retries.
+     */
+    public long exhaustedUpdates() {
+        return exhausted.sum();
+    }
+
+    int maxRetries() {
+        return maxRetries;
+    }
+
+    CasContentionListener contentionListener() {
+        return contentionListener;
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordExhausted() {
+        exhausted.increment();
+    }
+
+    Duration backoff(int retry) {
+        long ceiling = initialBackoffNanos << Math.min(retry, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffNanos) {
+            ceiling = maxBackoffNanos;
+        }
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    public static class Builder {
+        private int maxRetries = 10;
+        private Duration initialBackoff = Duration.ofMillis(2);
+        private Duration maxBackoff = Duration.ofMillis(200);
+        private CasContentionListener contentionListener = CasContentionListener.NOOP;
+
+        private Builder() {
+        }
+
+        /**
+         * The number of retries after which the update fails with an {@link IllegalStateException}.
+         */
+        public Builder maxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Maximum retries must not be negative");
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder backoff(Duration initialBackoff, Duration maxBackoff) {
+            if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+                throw new IllegalArgumentException("Backoff must not be negative or exceed its maximum");
+            }
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public Builder contentionListener(CasContentionListener contentionListener) {
+            this.contentionListener = contentionListener;
+            return this;
+        }
+
+        public CasRetry build() {
+            return new CasRetry(this);
+        }
+    }
+}
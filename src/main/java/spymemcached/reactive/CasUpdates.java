@@ -0,0 +1,88 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import reactor.core.publisher.Mono;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Backs the {@code casUpdate} operations of {@link ReactiveMemcachedOperations}.
+ */
+final class CasUpdates {
+
+    private CasUpdates() {
+    }
+
+    /**
+     * @param gets reads the value and its CAS id
+     * @param cas  stores the value given the CAS id it was based on
+     */
+    static <T> Mono<T> update(String key,
+                              Function<T, T> mutator,
+                              CasRetry retry,
+                              Supplier<Mono<CASValue<T>>> gets,
+                              BiFunction<Long, T, Mono<CASResponse>> cas) {
+        return Mono.defer(() -> new Update<>(key, mutator, retry, gets, cas).run());
+    }
+
+    private static class Update<T> {
+        private final String key;
+        private final Function<T, T> mutator;
+        private final CasRetry retry;
+        private final Supplier<Mono<CASValue<T>>> gets;
+        private final BiFunction<Long, T, Mono<CASResponse>> cas;
+        private int retries;
+
+        Update(String key,
+               Function<T, T> mutator,
+               CasRetry retry,
+               Supplier<Mono<CASValue<T>>> gets,
+               BiFunction<Long, T, Mono<CASResponse>> cas) {
+            this.key = key;
+            this.mutator = mutator;
+            this.retry = retry;
+            this.gets = gets;
+            this.cas = cas;
+        }
+
+        Mono<T> run() {
+            return attempt().doOnError(e -> retry.contentionListener().onUpdate(key, retries, false));
+        }
+
+        private Mono<T> attempt() {
+            return gets.get().switchIfEmpty(Mono.defer(this::deleted)).flatMap(current -> {
+                T updated = mutator.apply(current.getValue());
+                return cas.apply(current.getCas(), updated).flatMap(response -> {
+                    if (response == CASResponse.OK) {
+                        retry.contentionListener().onUpdate(key, retries, true);
+                        return Mono.just(updated);
+                    }
+                    // NOT_FOUND means the value was deleted since it was read, so the next attempt completes empty
+                    if (response != CASResponse.EXISTS && response != CASResponse.NOT_FOUND) {
+                        return Mono.error(new IllegalStateException("Updating " + key + " failed: " + response));
+                    }
+                    if (retries == retry.maxRetries()) {
+                        retry.recordExhausted();
+                        return Mono.error(new IllegalStateException(
+                                "Gave up updating " + key + " after " + retries + " retries"));
+                    }
+                    retry.recordRetry();
+                    return Mono.delay(retry.backoff(retries++)).then(Mono.defer(this::attempt));
+                });
+            });
+        }
+
+        /**
+         * Completes empty, reporting the retries made if the value was deleted while they were.
+         */
+        private Mono<CASValue<T>> deleted() {
+            if (retries > 0) {
+                retry.contentionListener().onUpdate(key, retries, false);
+            }
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.MemcachedClientIF;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stores values larger than the memcached item size limit as a number of chunks plus a manifest. The manifest is
+ * stored under the value's key and the chunks under keys derived from it, so a value can be read without knowing
+ * whether it was chunked: a value stored under the key with a plain {@code set} is read back as a single buffer.
+ * Manifests are marked with a flag bit unused by spymemcached's transcoders and this library's others, so a plain
+ * value is never mistaken for one.
+ * <p>
+ * Each write uses a new generation of chunk keys and replaces the manifest only once every chunk is stored, so a
+ * reader sees either the old or the new value, never a mix. The previous generation's chunks are then deleted, so a
+ * read which races an overwrite may fail with a missing chunk and should be retried.
+ */
+public class ChunkedValues {
+
+    /**
+     * Leaves room within memcached's default 1 MB item limit for the key and item header.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024 - 1024;
+
+    static final int MANIFEST = 1 << 7;
+
+    private static final int MAGIC = 0x43484e4b;
+    private static final int MANIFEST_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final StoredTranscoder VALUES = new StoredTranscoder(true);
+    private static final StoredTranscoder MANIFESTS = new StoredTranscoder(false);
+
+    private final ReactiveMemcachedOperations operations;
+    private final int chunkSize;
+    private final int concurrency;
+
+    public ChunkedValues(ReactiveMemcachedOperations operations) {
+        this(operations, DEFAULT_CHUNK_SIZE, 4);
+    }
+
+    /**
+     * @param concurrency the number of chunks written or read at once for one value
+     */
+    public ChunkedValues(ReactiveMemcachedOperations operations, int chunkSize, int concurrency) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.operations = operations;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Stores the remaining bytes of {@code value}, which must not be modified until the returned {@code Mono}
+     * completes. Fails with an {@link IllegalArgumentException}, without writing anything, if the keys derived for
+     * the chunks would be longer than memcached allows.
+     *
+     * @return whether every chunk and the manifest were stored; if not, the chunks which were are deleted again
+     */
+    public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return Mono.defer(() -> {
+            int chunkCount = (value.remaining() + chunkSize - 1) / chunkSize;
+            // the generation is random, so check against the longest one
+            String longestChunkKey = new Manifest(-1L, chunkCount).chunkKey(key, Math.max(chunkCount - 1, 0));
+            if (longestChunkKey.getBytes(StandardCharsets.UTF_8).length > MemcachedClientIF.MAX_KEY_LENGTH) {
+                return Mono.error(new IllegalArgumentException("Chunk keys of " + key + " would exceed the "
+                        + MemcachedClientIF.MAX_KEY_LENGTH + " byte key length limit"));
+            }
+            Manifest manifest = new Manifest(ThreadLocalRandom.current().nextLong(), chunkCount);
+            return Flux.range(0, manifest.chunkCount)
+                    .flatMap(chunk -> operations.set(manifest.chunkKey(key, chunk), exp, slice(value, chunk)),
+                            concurrency)
+                    .all(Boolean::booleanValue)
+                    .onErrorResume(e -> deleteChunks(key, manifest).then(Mono.error(e)))
+                    .flatMap(stored -> stored
+                            ? replaceManifest(key, exp, manifest)
+                            : deleteChunks(key, manifest).thenReturn(false));
+        });
+    }
+
+    /**
+     * Streams the value in order, one buffer per chunk, fetching up to the configured number of chunks ahead of
+     * the subscriber. A value which was not chunked is emitted as a single buffer. Completes empty if there is no
+     * value.
+     */
+    public Flux<ByteBuffer> get(String key) {
+        return operations.get(key, VALUES).flatMapMany(stored -> stored instanceof Manifest
+                ? getChunks(key, (Manifest) stored)
+                : Flux.just((ByteBuffer) stored));
+    }
+
+    /**
+     * Deletes the manifest and then the chunks, or just the value if it was not chunked. A value which was not
+     * chunked is read to tell, but not decoded.
+     *
+     * @return whether there was a value to delete
+     */
+    public Mono<Boolean> delete(String key) {
+        return operations.get(key, MANIFESTS)
+                .flatMap(stored -> stored instanceof Manifest
+                        ? operations.delete(key).then(deleteChunks(key, (Manifest) stored)).thenReturn(true)
+                        : operations.delete(key))
+                .defaultIfEmpty(false);
+    }
+
+    private Flux<ByteBuffer> getChunks(String key, Manifest manifest) {
+        return Flux.range(0, manifest.chunkCount)
+                .flatMapSequential(chunk -> operations.getBuffer(manifest.chunkKey(key, chunk))
+                        .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                                "Chunk " + chunk + " of " + key + " is missing"))), concurrency, 1);
+    }
+
+    private Mono<Boolean> replaceManifest(String key, int exp, Manifest manifest) {
+        return readManifest(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(previous -> operations.<Object>set(key, exp, manifest, MANIFESTS)
+                        .flatMap(replaced -> replaced && previous.isPresent()
+                                ? deleteChunks(key, previous.get()).thenReturn(true)
+                                : Mono.just(replaced)));
+    }
+
+    private Mono<Manifest> readManifest(String key) {
+        return operations.get(key, MANIFESTS).ofType(Manifest.class);
+    }
+
+    private Mono<Void> deleteChunks(String key, Manifest manifest) {
+        return Flux.range(0, manifest.chunkCount)
+                .flatMap(chunk -> operations.delete(manifest.chunkKey(key, chunk)), concurrency)
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private ByteBuffer slice(ByteBuffer value, int chunk) {
+        ByteBuffer slice = value.duplicate();
+        slice.position(value.position() + chunk * chunkSize);
+        slice.limit(Math.min(slice.position() + chunkSize, value.limit()));
+        return slice.slice();
+    }
+
+    private static class Manifest {
+        private final long generation;
+        private final int chunkCount;
+
+        Manifest(long generation, int chunkCount) {
+            this.generation = generation;
+            this.chunkCount = chunkCount;
+        }
+
+        String chunkKey(String key, int chunk) {
+            return key + ":" + Long.toHexString(generation) + ":" + chunk;
+        }
+
+        byte[] encode() {
+            return ByteBuffer.allocate(MANIFEST_SIZE).putInt(MAGIC).putLong(generation).putInt(chunkCount).array();
+        }
+
+        static Manifest decode(byte[] data) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (data.length != MANIFEST_SIZE || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Invalid manifest of " + data.length + " bytes");
+            }
+            return new Manifest(buffer.getLong(), buffer.getInt());
+        }
+    }
+
+    /**
+     * Encodes manifests with the {@link #MANIFEST} flag and decodes either a manifest or, since the flags say what
+     * was stored before the value is decoded, a value which was not chunked as a buffer. When not decoding values,
+     * such a value decodes as an empty buffer instead.
+     */
+    private static final class StoredTranscoder implements Transcoder<Object> {
+        private static final ByteBuffer NOT_DECODED = ByteBuffer.allocate(0);
+
+        private final boolean decodeValues;
+
+        StoredTranscoder(boolean decodeValues) {
+            this.decodeValues = decodeValues;
+        }
+
+        @Override
+        public boolean asyncDecode(CachedData d) {
+            return false;
+        }
+
+        @Override
+        public CachedData encode(Object o) {
+            return new CachedData(MANIFEST, ((Manifest) o).encode(), getMaxSize());
+        }
+
+        @Override
+        public Object decode(CachedData d) {
+            if ((d.getFlags() & MANIFEST) != 0) {
+                return Manifest.decode(d.getData());
+            }
+            return decodeValues ? ByteBufferTranscoder.INSTANCE.decode(d) : NOT_DECODED;
+        }
+
+        @Override
+        public int getMaxSize() {
+            return CachedData.MAX_SIZE;
+        }
+    }
+}
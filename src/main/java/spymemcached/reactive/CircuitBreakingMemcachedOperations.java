@@ -0,0 +1,632 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.OperationTimeoutException;
+import net.spy.memcached.ops.OperationException;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Fails fast for keys held by a node which is failing or timing out, rather than queueing more operations for it.
+ * Each node has its own {@link NodeCircuitBreaker}; while it is open, reads of keys held by that node complete empty,
+ * as a miss, and every other operation fails with a {@link NodeUnavailableException} without being sent. Bulk reads
+ * skip the keys held by such nodes.
+ * <p>
+ * Only timeouts and failures to reach a node count against it; other errors neither count for nor against it.
+ * <p>
+ * Outcomes of bulk reads are not attributed to nodes, since a bulk read spans several nodes, so breakers are only
+ * opened by single key operations. Once a node has been open for the open duration though, a bulk read probes it
+ * with a separate read of just that node's keys, so a node only read in bulk still closes again once it recovers.
+ */
+public class CircuitBreakingMemcachedOperations extends DelegatingReactiveMemcachedOperations {
+
+    private final Function<String, SocketAddress> nodeLocator;
+    private final Duration timeout;
+    private final Function<SocketAddress, NodeCircuitBreaker> breakerFactory;
+    private final Map<SocketAddress, NodeCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private CircuitBreakingMemcachedOperations(Builder builder) {
+        super(builder.delegate);
+        this.nodeLocator = builder.nodeLocator;
+        this.timeout = builder.timeout;
+        long windowNanos = builder.window.toNanos();
+        int minimumCalls = builder.minimumCalls;
+        double failureRateThreshold = builder.failureRateThreshold;
+        long openNanos = builder.openDuration.toNanos();
+        this.breakerFactory = node -> new NodeCircuitBreaker(windowNanos, minimumCalls, failureRateThreshold, openNanos);
+    }
+
+    /**
+     * @param nodeLocator maps a key to the node which holds it
+     */
+    public static Builder builder(ReactiveMemcachedOperations delegate, Function<String, SocketAddress> nodeLocator) {
+        return new Builder(delegate, nodeLocator);
+    }
+
+    /**
+     * Locates the node holding each key as {@code memcachedClient} does.
+     */
+    public static Builder builder(ReactiveMemcachedOperations delegate, MemcachedClient memcachedClient) {
+        return new Builder(delegate, key -> memcachedClient.getNodeLocator().getPrimary(key).getSocketAddress());
+    }
+
+    /**
+     * The nodes whose circuit breakers are currently open or probing.
+     */
+    public Set<SocketAddress> openNodes() {
+        return breakers.entrySet().stream()
+                .filter(entry -> entry.getValue().isOpen())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Mono<Boolean> append(long cas, String key, Object val) {
+        return write(key, () -> delegate.append(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> append(String key, Object val) {
+        return write(key, () -> delegate.append(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(long cas, String key, T val, Transcoder<T> tc) {
+        return write(key, () -> delegate.append(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(String key, T val, Transcoder<T> tc) {
+        return write(key, () -> delegate.append(key, val, tc));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(long cas, String key, Object val) {
+        return write(key, () -> delegate.prepend(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(String key, Object val) {
+        return write(key, () -> delegate.prepend(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(long cas, String key, T val, Transcoder<T> tc) {
+        return write(key, () -> delegate.prepend(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(String key, T val, Transcoder<T> tc) {
+        return write(key, () -> delegate.prepend(key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, T value, Transcoder<T> tc) {
+        return write(key, () -> delegate.cas(key, casId, value, tc));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, Object value) {
+        return write(key, () -> delegate.cas(key, casId, value));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, int exp, Object value) {
+        return write(key, () -> delegate.cas(key, casId, exp, value));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc) {
+        return write(key, () -> delegate.cas(key, casId, exp, value, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> add(String key, int exp, T o, Transcoder<T> tc) {
+        return write(key, () -> delegate.add(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, Object o) {
+        return write(key, () -> delegate.add(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, ByteBuffer value) {
+        return write(key, () -> delegate.add(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<Boolean> set(String key, int exp, T o, Transcoder<T> tc) {
+        return write(key, () -> delegate.set(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, Object o) {
+        return write(key, () -> delegate.set(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return write(key, () -> delegate.set(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<Boolean> replace(String key, int exp, T o, Transcoder<T> tc) {
+        return write(key, () -> delegate.replace(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, Object o) {
+        return write(key, () -> delegate.replace(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, ByteBuffer value) {
+        return write(key, () -> delegate.replace(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<T> get(String key, Transcoder<T> tc) {
+        return read(key, () -> delegate.get(key, tc));
+    }
+
+    @Override
+    public Mono<Object> get(String key) {
+        return read(key, () -> delegate.get(key));
+    }
+
+    @Override
+    public Mono<ByteBuffer> getBuffer(String key) {
+        return read(key, () -> delegate.getBuffer(key));
+    }
+
+    @Override
+    public Mono<CASValue<Object>> getAndTouch(String key, int exp) {
+        return read(key, () -> delegate.getAndTouch(key, exp));
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> getAndTouch(String key, int exp, Transcoder<T> tc) {
+        return read(key, () -> delegate.getAndTouch(key, exp, tc));
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> gets(String key, Transcoder<T> tc) {
+        return read(key, () -> delegate.gets(key, tc));
+    }
+
+    @Override
+    public Mono<CASValue<Object>> gets(String key) {
+        return read(key, () -> delegate.gets(key));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Iterator<Transcoder<T>> tcs) {
+        return Mono.defer(() -> {
+            Map<String, Transcoder<T>> tcsByKey = new LinkedHashMap<>();
+            // like spymemcached, keys without a transcoder are left out
+            while (keys.hasNext() && tcs.hasNext()) {
+                tcsByKey.put(keys.next(), tcs.next());
+            }
+            return readBulk(tcsByKey.keySet(), read -> delegate.getBulk(read,
+                    read.stream().map(tcsByKey::get).iterator()));
+        });
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Iterator<Transcoder<T>> tcs) {
+        return getBulk(keys.iterator(), tcs);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Transcoder<T> tc) {
+        return Mono.defer(() -> readBulk(toList(keys), available -> delegate.getBulk(available, tc)));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Transcoder<T> tc) {
+        return readBulk(keys, available -> delegate.getBulk(available, tc));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Iterator<String> keys) {
+        return Mono.defer(() -> readBulk(toList(keys), delegate::getBulk));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Collection<String> keys) {
+        return readBulk(keys, delegate::getBulk);
+    }
+
+    @Override
+    public Mono<Map<String, ByteBuffer>> getBulkBuffers(Collection<String> keys) {
+        return readBulk(keys, delegate::getBulkBuffers);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Transcoder<T> tc, String... keys) {
+        return readBulk(Arrays.asList(keys), available -> delegate.getBulk(available, tc));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(String... keys) {
+        return readBulk(Arrays.asList(keys), delegate::getBulk);
+    }
+
+    /**
+     * Keys held by nodes whose breakers are open are reported as failed with a {@link NodeUnavailableException}.
+     */
+    @Override
+    public <T> Mono<BulkGetResult<T>> getBulk(Collection<String> keys, Transcoder<T> tc, Duration deadline) {
+        return readBulkWithin(keys, available -> delegate.getBulk(available, tc, deadline));
+    }
+
+    /**
+     * Keys held by nodes whose breakers are open are reported as failed with a {@link NodeUnavailableException}.
+     */
+    @Override
+    public Mono<BulkGetResult<Object>> getBulk(Collection<String> keys, Duration deadline) {
+        return readBulkWithin(keys, available -> delegate.getBulk(available, deadline));
+    }
+
+    @Override
+    public <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return streamBulk(keys, read -> delegate.streamBulk(read, tc));
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return streamBulk(keys, delegate::streamBulk);
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp, Transcoder<T> tc) {
+        return write(key, () -> delegate.touch(key, exp, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp) {
+        return write(key, () -> delegate.touch(key, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by) {
+        return write(key, () -> delegate.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by) {
+        return write(key, () -> delegate.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by) {
+        return write(key, () -> delegate.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by) {
+        return write(key, () -> delegate.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def, int exp) {
+        return write(key, () -> delegate.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def, int exp) {
+        return write(key, () -> delegate.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def, int exp) {
+        return write(key, () -> delegate.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def, int exp) {
+        return write(key, () -> delegate.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def) {
+        return write(key, () -> delegate.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def) {
+        return write(key, () -> delegate.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def) {
+        return write(key, () -> delegate.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def) {
+        return write(key, () -> delegate.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return write(key, () -> delegate.delete(key));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key, long cas) {
+        return write(key, () -> delegate.delete(key, cas));
+    }
+
+    private <T> Mono<T> read(String key, Supplier<Mono<T>> operation) {
+        return guard(key, operation, true);
+    }
+
+    private <T> Mono<T> write(String key, Supplier<Mono<T>> operation) {
+        return guard(key, operation, false);
+    }
+
+    private <T> Mono<T> guard(String key, Supplier<Mono<T>> operation, boolean missWhenOpen) {
+        return Mono.defer(() -> {
+            SocketAddress node = nodeLocator.apply(key);
+            NodeCircuitBreaker breaker = breakers.computeIfAbsent(node, breakerFactory);
+            NodeCircuitBreaker.Permit permit = breaker.acquire();
+            if (permit == NodeCircuitBreaker.Permit.REJECTED) {
+                return missWhenOpen ? Mono.empty() : Mono.error(new NodeUnavailableException(node));
+            }
+            // deferred so an operation which throws rather than erroring still gives the permit back
+            Mono<T> result = Mono.defer(operation);
+            return (timeout != null ? result.timeout(timeout) : result)
+                    .doOnSuccess(ignored -> breaker.onSuccess(permit))
+                    .doOnError(e -> {
+                        if (isNodeFailure(e)) {
+                            breaker.onFailure(permit);
+                        } else {
+                            breaker.onCancel(permit);
+                        }
+                    })
+                    .doOnCancel(() -> breaker.onCancel(permit));
+        });
+    }
+
+    private <T> Mono<Map<String, T>> readBulk(Collection<String> keys,
+                                              Function<Collection<String>, Mono<Map<String, T>>> lookup) {
+        return Mono.defer(() -> {
+            BulkRead read = plan(keys);
+            if (read.probes.isEmpty()) {
+                return read.available.isEmpty() ? Mono.just(new HashMap<>()) : lookup.apply(read.available);
+            }
+            List<Mono<Map<String, T>>> lookups = new ArrayList<>();
+            if (!read.available.isEmpty()) {
+                lookups.add(lookup.apply(read.available));
+            }
+            read.probes.forEach((breaker, probeKeys) -> lookups.add(
+                    // keys of a node which fails its probe read as misses, like those of any other open node
+                    probe(breaker, lookup.apply(probeKeys), found -> false).onErrorResume(e -> Mono.empty())));
+            return Flux.merge(lookups).reduceWith(HashMap::new, (all, found) -> {
+                all.putAll(found);
+                return all;
+            });
+        });
+    }
+
+    private <T> Mono<BulkGetResult<T>> readBulkWithin(Collection<String> keys,
+                                                      Function<Collection<String>, Mono<BulkGetResult<T>>> lookup) {
+        return Mono.defer(() -> {
+            BulkRead read = plan(keys);
+            if (read.unavailable.isEmpty() && read.probes.isEmpty()) {
+                return lookup.apply(read.available);
+            }
+            List<Mono<BulkGetResult<T>>> lookups = new ArrayList<>();
+            if (!read.available.isEmpty()) {
+                lookups.add(lookup.apply(read.available));
+            }
+            read.probes.forEach((breaker, probeKeys) -> lookups.add(
+                    probe(breaker, lookup.apply(probeKeys), found -> found.failures().values().stream()
+                            .anyMatch(CircuitBreakingMemcachedOperations::isNodeFailure))
+                            .onErrorResume(e -> Mono.just(failed(probeKeys, e)))));
+            return Flux.merge(lookups).collectList().map(results -> {
+                Map<String, T> values = new HashMap<>();
+                Set<String> missed = new HashSet<>();
+                Map<String, Throwable> failures = new HashMap<>();
+                read.unavailable.forEach((key, node) -> failures.put(key, new NodeUnavailableException(node)));
+                for (BulkGetResult<T> found : results) {
+                    values.putAll(found.values());
+                    missed.addAll(found.missed());
+                    failures.putAll(found.failures());
+                }
+                return new BulkGetResult<>(values, missed, failures);
+            });
+        });
+    }
+
+    private <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys,
+                                                      Function<Collection<String>, Flux<Map.Entry<String, T>>> lookup) {
+        return Flux.defer(() -> {
+            BulkRead read = plan(keys);
+            List<Flux<Map.Entry<String, T>>> lookups = new ArrayList<>();
+            if (!read.available.isEmpty()) {
+                lookups.add(lookup.apply(read.available));
+            }
+            read.probes.forEach((breaker, probeKeys) -> {
+                Flux<Map.Entry<String, T>> probe = lookup.apply(probeKeys);
+                lookups.add((timeout != null ? probe.timeout(timeout) : probe)
+                        .doOnComplete(() -> breaker.onSuccess(NodeCircuitBreaker.Permit.PROBE))
+                        .doOnError(e -> onProbeError(breaker, e))
+                        .doOnCancel(() -> breaker.onCancel(NodeCircuitBreaker.Permit.PROBE))
+                        .onErrorResume(e -> Flux.empty()));
+            });
+            return Flux.merge(lookups);
+        });
+    }
+
+    /**
+     * Reports the outcome of a bulk read of an open node's keys as the outcome of its probe.
+     */
+    private <R> Mono<R> probe(NodeCircuitBreaker breaker, Mono<R> lookup, Predicate<R> failed) {
+        return (timeout != null ? lookup.timeout(timeout) : lookup)
+                .doOnSuccess(found -> {
+                    if (found != null && failed.test(found)) {
+                        breaker.onFailure(NodeCircuitBreaker.Permit.PROBE);
+                    } else {
+                        breaker.onSuccess(NodeCircuitBreaker.Permit.PROBE);
+                    }
+                })
+                .doOnError(e -> onProbeError(breaker, e))
+                .doOnCancel(() -> breaker.onCancel(NodeCircuitBreaker.Permit.PROBE));
+    }
+
+    private static void onProbeError(NodeCircuitBreaker breaker, Throwable e) {
+        if (isNodeFailure(e)) {
+            breaker.onFailure(NodeCircuitBreaker.Permit.PROBE);
+        } else {
+            breaker.onCancel(NodeCircuitBreaker.Permit.PROBE);
+        }
+    }
+
+    /**
+     * Whether an error says the node is unhealthy, because it timed out or could not be reached. Error responses,
+     * unsupported operations and values which fail to decode say nothing about the node.
+     */
+    static boolean isNodeFailure(Throwable e) {
+        if (e instanceof OperationException) {
+            // an error response, which the node was well enough to send
+            return false;
+        }
+        return e instanceof TimeoutException
+                || e instanceof OperationTimeoutException
+                || e instanceof IOException
+                || e instanceof UncheckedIOException;
+    }
+
+    /**
+     * Sorts the keys of a bulk read by the state of their node's breaker, taking at most one probe of each open node
+     * whose open duration has passed.
+     */
+    private BulkRead plan(Collection<String> keys) {
+        BulkRead read = new BulkRead(keys.size());
+        Map<SocketAddress, NodeCircuitBreaker.Permit> permits = new HashMap<>();
+        for (String key : keys) {
+            SocketAddress node = nodeLocator.apply(key);
+            NodeCircuitBreaker breaker = breakers.get(node);
+            if (breaker == null || !breaker.isOpen()) {
+                read.available.add(key);
+            } else if (permits.computeIfAbsent(node, ignored -> breaker.acquire()) == NodeCircuitBreaker.Permit.PROBE) {
+                read.probes.computeIfAbsent(breaker, ignored -> new ArrayList<>()).add(key);
+            } else {
+                read.unavailable.put(key, node);
+            }
+        }
+        return read;
+    }
+
+    private static <T> BulkGetResult<T> failed(Collection<String> keys, Throwable error) {
+        Map<String, Throwable> failures = new HashMap<>();
+        for (String key : keys) {
+            failures.put(key, error);
+        }
+        return new BulkGetResult<>(new HashMap<>(), new HashSet<>(), failures);
+    }
+
+    private static List<String> toList(Iterator<String> keys) {
+        List<String> list = new ArrayList<>();
+        keys.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static class BulkRead {
+        private final List<String> available;
+        private final Map<NodeCircuitBreaker, List<String>> probes = new HashMap<>();
+        private final Map<String, SocketAddress> unavailable = new HashMap<>();
+
+        BulkRead(int keys) {
+            this.available = new ArrayList<>(keys);
+        }
+    }
+
+    public static class Builder {
+        private final ReactiveMemcachedOperations delegate;
+        private final Function<String, SocketAddress> nodeLocator;
+        private Duration window = Duration.ofSeconds(10);
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(5);
+        private Duration timeout;
+
+        private Builder(ReactiveMemcachedOperations delegate, Function<String, SocketAddress> nodeLocator) {
+            this.delegate = delegate;
+            this.nodeLocator = nodeLocator;
+        }
+
+        /**
+         * Opens a node's breaker once at least {@code minimumCalls} operations sent to it within a {@code window} have
+         * completed and at least {@code failureRateThreshold} of them failed. By default half of at least 20
+         * operations within 10 seconds.
+         */
+        public Builder failureRate(double failureRateThreshold, int minimumCalls, Duration window) {
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+                throw new IllegalArgumentException("Failure rate threshold must be in (0, 1]");
+            }
+            if (minimumCalls < 1) {
+                throw new IllegalArgumentException("Minimum calls must be positive");
+            }
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("Window must be positive");
+            }
+            this.failureRateThreshold = failureRateThreshold;
+            this.minimumCalls = minimumCalls;
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * How long a breaker stays open before letting a probe through, 5 seconds by default.
+         */
+        public Builder openDuration(Duration openDuration) {
+            if (openDuration.isNegative()) {
+                throw new IllegalArgumentException("Open duration must not be negative");
+            }
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Fails operations which take longer than {@code timeout}, counting them as failures of their node. None by
+         * default, leaving timeouts to the delegate.
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public CircuitBreakingMemcachedOperations build() {
+            return new CircuitBreakingMemcachedOperations(this);
+        }
+    }
+}
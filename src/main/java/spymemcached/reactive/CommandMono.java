@@ -0,0 +1,41 @@
+package spymemcached.reactive;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+
+/**
+ * A {@link Mono} which creates a {@link TextCommand} on subscription and sends it on a connection. The command is
+ * itself the subscription.
+ */
+class CommandMono<T> extends Mono<T> {
+
+    @FunctionalInterface
+    interface CommandFactory<T> {
+        TextCommand<T> create(CoreSubscriber<? super T> actual);
+    }
+
+    private final NioConnection connection;
+    private final CommandFactory<T> commandFactory;
+
+    CommandMono(NioConnection connection, CommandFactory<T> commandFactory) {
+        this.connection = connection;
+        this.commandFactory = commandFactory;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+        TextCommand<T> command;
+        try {
+            command = commandFactory.create(actual);
+        } catch (RuntimeException e) {
+            // an invalid key, or a value the transcoder could not encode
+            Operators.error(actual, e);
+            return;
+        }
+        actual.onSubscribe(command);
+        if (!command.isCancelled()) {
+            connection.send(command);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package spymemcached.reactive;
+
+/**
+ * Writes and reads the fields of one class for a {@link CompactTranscoder}. The order in which fields are written is
+ * the schema of the class: a codec must read them back in the same order, and changing it makes values already stored
+ * unreadable, so new fields should only ever be appended by a codec able to tell whether they are present.
+ */
+public interface CompactCodec<T> {
+
+    void write(T value, CompactOutput out);
+
+    T read(CompactInput in);
+}
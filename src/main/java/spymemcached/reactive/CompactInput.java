@@ -0,0 +1,102 @@
+package spymemcached.reactive;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads back the fields written to a {@link CompactOutput}, in the order they were written.
+ */
+public final class CompactInput {
+
+    private final CompactTranscoder transcoder;
+    private final byte[] data;
+    private int position;
+
+    CompactInput(CompactTranscoder transcoder, byte[] data) {
+        this.transcoder = transcoder;
+        this.data = data;
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readInt() {
+        int zigZag = readUnsignedInt();
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    public long readLong() {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length long");
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readFixedInt());
+    }
+
+    public double readDouble() {
+        long high = readFixedInt();
+        return Double.longBitsToDouble(high << 32 | readFixedInt() & 0xFFFFFFFFL);
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public byte[] readBytes() {
+        int length = readLength();
+        byte[] value = new byte[length];
+        System.arraycopy(data, position, value, 0, length);
+        position += length;
+        return value;
+    }
+
+    public Object readObject() {
+        return transcoder.readObject(this);
+    }
+
+    int readUnsignedInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length int");
+    }
+
+    int readLength() {
+        int length = readUnsignedInt();
+        if (length < 0 || length > data.length - position) {
+            throw new IllegalArgumentException("Invalid length " + length + " at " + position);
+        }
+        return length;
+    }
+
+    boolean isExhausted() {
+        return position == data.length;
+    }
+
+    private int readFixedInt() {
+        return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16 | (readByte() & 0xFF) << 8 | readByte() & 0xFF;
+    }
+
+    private byte readByte() {
+        if (position >= data.length) {
+            throw new IllegalArgumentException("Unexpected end of value");
+        }
+        return data[position++];
+    }
+}
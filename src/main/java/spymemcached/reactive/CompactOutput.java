@@ -0,0 +1,118 @@
+package spymemcached.reactive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The buffer a {@link CompactCodec} writes fields into. Integers are written as variable length zig-zag encoded
+ * values, so small magnitudes take a single byte, and strings as their UTF-8 length followed by their bytes.
+ */
+public final class CompactOutput {
+
+    private final CompactTranscoder transcoder;
+    private byte[] buffer;
+    private int position;
+
+    CompactOutput(CompactTranscoder transcoder, int initialCapacity) {
+        this.transcoder = transcoder;
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public void writeBoolean(boolean value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) (value ? 1 : 0);
+    }
+
+    public void writeInt(int value) {
+        writeUnsignedInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeLong(long value) {
+        ensureCapacity(10);
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        buffer[position++] = (byte) zigZag;
+    }
+
+    public void writeFloat(float value) {
+        writeFixedInt(Float.floatToRawIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        writeFixedInt((int) (bits >>> 32));
+        writeFixedInt((int) bits);
+    }
+
+    /**
+     * Writes a string which must not be {@code null}; use {@link #writeObject} for one which may be.
+     */
+    public void writeString(String value) {
+        int length = value.length();
+        // most strings in cached values are ASCII, which is copied char by char without an intermediate array
+        ensureCapacity(5 + length);
+        int start = position;
+        writeUnsignedInt(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                position = start;
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    public void writeBytes(byte[] value) {
+        writeUnsignedInt(value.length);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+    }
+
+    /**
+     * Writes a value of any type the transcoder can encode, or {@code null}, preceded by its type.
+     */
+    public void writeObject(Object value) {
+        transcoder.writeObject(value, this);
+    }
+
+    void writeUnsignedInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    void reset() {
+        position = 0;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    private void writeFixedInt(int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.length - position < bytes) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+}
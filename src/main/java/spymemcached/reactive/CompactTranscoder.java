@@ -0,0 +1,306 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes values in a compact binary format instead of with Java serialization. Strings, boxed primitives, byte
+ * arrays, lists and maps are built in; any other class must be registered up front with a stable id and a
+ * {@link CompactCodec} which writes its fields, so a stored value holds only the id and the field values rather than
+ * class descriptors. Encoding a value of a class which is neither built in nor registered fails.
+ * <p>
+ * Values are marked with a flag bit unused by spymemcached's transcoders. Values without it, such as those stored
+ * before switching to this transcoder, are decoded by a {@link SerializingTranscoder}. Encoding reuses a buffer per
+ * thread, so the only allocation beyond the codecs' own is the stored byte array.
+ */
+public class CompactTranscoder implements Transcoder<Object> {
+
+    static final int COMPACT = 1 << 6;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int BOOLEAN = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int SHORT = 7;
+    private static final int BYTE = 8;
+    private static final int CHARACTER = 9;
+    private static final int BYTES = 10;
+    private static final int LIST = 11;
+    private static final int MAP = 12;
+    private static final int FIRST_REGISTERED = 32;
+    static final int MAX_ID = (1 << 16) - 1;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    /**
+     * Buffers grown beyond this by a large value are not kept for reuse.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private final Map<Class<?>, Registration<?>> byClass;
+    private final Registration<?>[] byId;
+    private final Transcoder<Object> fallback = new SerializingTranscoder();
+    private final ThreadLocal<CompactOutput> outputs;
+
+    private CompactTranscoder(Builder builder) {
+        this.byClass = new HashMap<>(builder.byClass);
+        int maxId = -1;
+        for (Registration<?> registration : byClass.values()) {
+            maxId = Math.max(maxId, registration.id);
+        }
+        this.byId = new Registration<?>[maxId + 1];
+        for (Registration<?> registration : byClass.values()) {
+            byId[registration.id] = registration;
+        }
+        this.outputs = ThreadLocal.withInitial(() -> new CompactOutput(this, INITIAL_BUFFER_SIZE));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A view of this transcoder for the operations taking a typed transcoder, which fails to decode values of any
+     * other type.
+     */
+    public <T> Transcoder<T> as(Class<T> type) {
+        return new Transcoder<T>() {
+            @Override
+            public boolean asyncDecode(CachedData d) {
+                return CompactTranscoder.this.asyncDecode(d);
+            }
+
+            @Override
+            public CachedData encode(T o) {
+                return CompactTranscoder.this.encode(o);
+            }
+
+            @Override
+            public T decode(CachedData d) {
+                Object value = CompactTranscoder.this.decode(d);
+                if (value != null && !type.isInstance(value)) {
+                    throw new IllegalArgumentException("Expected a " + type.getName() + " but decoded a "
+                            + value.getClass().getName());
+                }
+                return type.cast(value);
+            }
+
+            @Override
+            public int getMaxSize() {
+                return CompactTranscoder.this.getMaxSize();
+            }
+        };
+    }
+
+    @Override
+    public boolean asyncDecode(CachedData d) {
+        return false;
+    }
+
+    @Override
+    public CachedData encode(Object o) {
+        CompactOutput output = outputs.get();
+        // a codec which itself encodes a value to store gets a buffer of its own
+        outputs.set(null);
+        if (output == null) {
+            output = new CompactOutput(this, INITIAL_BUFFER_SIZE);
+        }
+        try {
+            writeObject(o, output);
+            return new CachedData(COMPACT, output.toByteArray(), getMaxSize());
+        } finally {
+            output.reset();
+            if (output.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+                outputs.set(output);
+            } else {
+                outputs.remove();
+            }
+        }
+    }
+
+    @Override
+    public Object decode(CachedData d) {
+        if ((d.getFlags() & COMPACT) == 0) {
+            return fallback.decode(d);
+        }
+        CompactInput input = new CompactInput(this, d.getData());
+        Object value = readObject(input);
+        if (!input.isExhausted()) {
+            throw new IllegalArgumentException("Unexpected bytes after the value");
+        }
+        return value;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return CachedData.MAX_SIZE;
+    }
+
+    void writeObject(Object value, CompactOutput out) {
+        if (value == null) {
+            out.writeUnsignedInt(NULL);
+            return;
+        }
+        Class<?> type = value.getClass();
+        Registration<?> registration = byClass.get(type);
+        if (registration != null) {
+            out.writeUnsignedInt(FIRST_REGISTERED + registration.id);
+            registration.write(value, out);
+        } else if (type == String.class) {
+            out.writeUnsignedInt(STRING);
+            out.writeString((String) value);
+        } else if (type == Integer.class) {
+            out.writeUnsignedInt(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (type == Long.class) {
+            out.writeUnsignedInt(LONG);
+            out.writeLong((Long) value);
+        } else if (type == Boolean.class) {
+            out.writeUnsignedInt(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (type == Double.class) {
+            out.writeUnsignedInt(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (type == Float.class) {
+            out.writeUnsignedInt(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (type == Short.class) {
+            out.writeUnsignedInt(SHORT);
+            out.writeInt((Short) value);
+        } else if (type == Byte.class) {
+            out.writeUnsignedInt(BYTE);
+            out.writeInt((Byte) value);
+        } else if (type == Character.class) {
+            out.writeUnsignedInt(CHARACTER);
+            out.writeInt((Character) value);
+        } else if (type == byte[].class) {
+            out.writeUnsignedInt(BYTES);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeUnsignedInt(LIST);
+            out.writeUnsignedInt(list.size());
+            for (Object element : list) {
+                writeObject(element, out);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeUnsignedInt(MAP);
+            out.writeUnsignedInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeObject(entry.getKey(), out);
+                writeObject(entry.getValue(), out);
+            }
+        } else {
+            throw new IllegalArgumentException("Unregistered class " + type.getName());
+        }
+    }
+
+    Object readObject(CompactInput in) {
+        int tag = in.readUnsignedInt();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return (short) in.readInt();
+            case BYTE:
+                return (byte) in.readInt();
+            case CHARACTER:
+                return (char) in.readInt();
+            case BYTES:
+                return in.readBytes();
+            case LIST: {
+                int size = in.readLength();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readObject(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = in.readLength();
+                Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(readObject(in), readObject(in));
+                }
+                return map;
+            }
+            default:
+                int id = tag - FIRST_REGISTERED;
+                if (id < 0 || id >= byId.length || byId[id] == null) {
+                    throw new IllegalArgumentException("Unknown type tag " + tag);
+                }
+                return byId[id].codec.read(in);
+        }
+    }
+
+    private static class Registration<T> {
+        private final int id;
+        private final Class<T> type;
+        private final CompactCodec<T> codec;
+
+        Registration(int id, Class<T> type, CompactCodec<T> codec) {
+            this.id = id;
+            this.type = type;
+            this.codec = codec;
+        }
+
+        void write(Object value, CompactOutput out) {
+            codec.write(type.cast(value), out);
+        }
+    }
+
+    public static class Builder {
+        private final Map<Class<?>, Registration<?>> byClass = new HashMap<>();
+        private final Map<Integer, Class<?>> byId = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Registers the codec of a class under an id from 0 to 65535. The id is stored with every value of the
+         * class, so it must never be reused for another class while values of the first may still be cached.
+         * Only instances of exactly the given class are encoded with the codec, not instances of its subclasses.
+         */
+        public <T> Builder register(int id, Class<T> type, CompactCodec<T> codec) {
+            if (id < 0 || id > MAX_ID) {
+                throw new IllegalArgumentException("Id must be between 0 and " + MAX_ID);
+            }
+            if (byId.containsKey(id)) {
+                throw new IllegalArgumentException("Id " + id + " is already registered to "
+                        + byId.get(id).getName());
+            }
+            if (byClass.containsKey(type)) {
+                throw new IllegalArgumentException(type.getName() + " is already registered");
+            }
+            byId.put(id, type);
+            byClass.put(type, new Registration<>(id, type, codec));
+            return this;
+        }
+
+        public CompactTranscoder build() {
+            return new CompactTranscoder(this);
+        }
+    }
+}
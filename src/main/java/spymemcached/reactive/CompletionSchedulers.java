@@ -0,0 +1,61 @@
+package spymemcached.reactive;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedulers for {@link ReactiveMemcachedTemplate.Builder#completionScheduler(Scheduler)}.
+ */
+public final class CompletionSchedulers {
+
+    private CompletionSchedulers() {
+    }
+
+    /**
+     * Signals results inline on the spymemcached listener thread, the default.
+     */
+    public static Scheduler inline() {
+        return Schedulers.immediate();
+    }
+
+    /**
+     * Signals results on a fixed number of daemon threads, queueing at most {@code queueCapacity} results. When the
+     * queue is full the result is signalled on the listener thread instead, so that a backlog of slow downstream work
+     * slows down completions rather than growing without bound. The caller owns the returned scheduler and should
+     * dispose it once the template is no longer used.
+     */
+    public static Scheduler boundedHandOff(String name, int threads, int queueCapacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads(name), CompletionSchedulers::runOnCaller);
+        return Schedulers.fromExecutorService(executor);
+    }
+
+    private static void runOnCaller(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Completion scheduler has been disposed");
+        }
+        task.run();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package spymemcached.reactive;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compresses values encoded by another transcoder with LZ4 once they reach a size threshold, which costs far less CPU
+ * than the GZIP compression {@link SerializingTranscoder} applies. Compressed values are marked with a flag bit unused
+ * by spymemcached's transcoders, so values stored uncompressed, or by the wrapped transcoder alone, still decode.
+ * A value is only stored compressed if that makes it smaller.
+ * <p>
+ * Use it as the client's default transcoder or pass it to the operations taking one.
+ */
+public class CompressingTranscoder<T> implements Transcoder<T> {
+
+    static final int COMPRESSED = 1 << 4;
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[0]);
+
+    private final Transcoder<T> transcoder;
+    private final int threshold;
+
+    /**
+     * @param threshold the encoded size in bytes from which values are compressed
+     */
+    public CompressingTranscoder(Transcoder<T> transcoder, int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+        this.transcoder = transcoder;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Compresses values serialized by a {@link SerializingTranscoder} whose own compression is disabled.
+     */
+    public static CompressingTranscoder<Object> serializing(int threshold) {
+        SerializingTranscoder serializingTranscoder = new SerializingTranscoder();
+        serializingTranscoder.setCompressionThreshold(Integer.MAX_VALUE);
+        return new CompressingTranscoder<>(serializingTranscoder, threshold);
+    }
+
+    @Override
+    public boolean asyncDecode(CachedData d) {
+        return transcoder.asyncDecode(d);
+    }
+
+    @Override
+    public CachedData encode(T o) {
+        CachedData encoded = transcoder.encode(o);
+        byte[] data = encoded.getData();
+        if (data.length < threshold || (encoded.getFlags() & COMPRESSED) != 0) {
+            return encoded;
+        }
+        byte[] buffer = buffer(LENGTH_BYTES + COMPRESSOR.maxCompressedLength(data.length));
+        int length = LENGTH_BYTES + COMPRESSOR.compress(data, 0, data.length, buffer, LENGTH_BYTES);
+        if (length >= data.length) {
+            return encoded;
+        }
+        ByteBuffer.wrap(buffer).putInt(0, data.length);
+        return new CachedData(encoded.getFlags() | COMPRESSED, Arrays.copyOf(buffer, length), getMaxSize());
+    }
+
+    @Override
+    public T decode(CachedData d) {
+        if ((d.getFlags() & COMPRESSED) == 0) {
+            return transcoder.decode(d);
+        }
+        byte[] data = d.getData();
+        int length = ByteBuffer.wrap(data).getInt(0);
+        if (length < 0 || length > getMaxSize()) {
+            throw new IllegalArgumentException("Invalid uncompressed length " + length);
+        }
+        byte[] decompressed = new byte[length];
+        // the safe decompressor never reads or writes out of bounds, however the data was corrupted
+        int decompressedLength = DECOMPRESSOR.decompress(data, LENGTH_BYTES, data.length - LENGTH_BYTES,
+                decompressed, 0, length);
+        if (decompressedLength != length) {
+            throw new IllegalArgumentException("Decompressed " + decompressedLength + " bytes, expected " + length);
+        }
+        return transcoder.decode(new CachedData(d.getFlags() & ~COMPRESSED, decompressed, getMaxSize()));
+    }
+
+    @Override
+    public int getMaxSize() {
+        return transcoder.getMaxSize();
+    }
+
+    /**
+     * A scratch buffer of at least the given size, reused by every compression on the calling thread unless it is
+     * too large to keep around.
+     */
+    private static byte[] buffer(int size) {
+        if (size > MAX_RETAINED_BUFFER_SIZE) {
+            return new byte[size];
+        }
+        byte[] buffer = BUFFERS.get();
+        if (buffer.length < size) {
+            buffer = new byte[size];
+            BUFFERS.set(buffer);
+        }
+        return buffer;
+    }
+}
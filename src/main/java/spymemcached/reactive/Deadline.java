@@ -0,0 +1,74 @@
+package spymemcached.reactive;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * A request deadline carried in the Reactor {@link Context}. Operations of a {@link ReactiveMemcachedTemplate}
+ * subscribed within a deadline are not issued once it has passed, and are cancelled with a {@link TimeoutException}
+ * when it passes while they are outstanding:
+ * <pre>{@code
+ * operations.get("key").subscriberContext(Deadline.within(Duration.ofMillis(50)))
+ * }</pre>
+ * Since the context flows from subscriber to publisher, a deadline set once on the whole request applies to every
+ * operation it subscribes to.
+ */
+public final class Deadline {
+
+    private static final Object KEY = Deadline.class;
+
+    private Deadline() {
+    }
+
+    /**
+     * Sets the deadline to the given time from subscription, unless the context already holds an earlier one.
+     */
+    public static Function<Context, Context> within(Duration timeout) {
+        long timeoutNanos = timeout.toNanos();
+        return context -> {
+            long deadline = System.nanoTime() + timeoutNanos;
+            Long current = context.getOrDefault(KEY, null);
+            return current != null && current - deadline <= 0 ? context : context.put(KEY, deadline);
+        };
+    }
+
+    /**
+     * The time left until the deadline in the context, or {@code null} if it holds none. Negative or zero once the
+     * deadline has passed.
+     */
+    static Long remainingNanos(Context context) {
+        Long deadline = context.getOrDefault(KEY, null);
+        return deadline == null ? null : deadline - System.nanoTime();
+    }
+
+    /**
+     * Removes the deadline, for operations shared by subscribers which each have their own.
+     */
+    static Context without(Context context) {
+        return context.delete(KEY);
+    }
+
+    static TimeoutException exceeded() {
+        return new TimeoutException("Request deadline exceeded");
+    }
+
+    /**
+     * Applies the deadline of the subscriber context to an operation which does not apply it itself.
+     */
+    static <T> Mono<T> apply(Mono<T> operation) {
+        return Mono.subscriberContext().flatMap(context -> {
+            Long remaining = remainingNanos(context);
+            if (remaining == null) {
+                return operation;
+            }
+            if (remaining <= 0) {
+                return Mono.error(exceeded());
+            }
+            return operation.timeout(Duration.ofNanos(remaining), Mono.defer(() -> Mono.error(exceeded())));
+        });
+    }
+}
@@ -0,0 +1,321 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Forwards every operation to another {@link ReactiveMemcachedOperations}, allowing decorators to override only the
+ * operations they are interested in.
+ */
+public abstract class DelegatingReactiveMemcachedOperations implements ReactiveMemcachedOperations {
+
+    protected final ReactiveMemcachedOperations delegate;
+
+    protected DelegatingReactiveMemcachedOperations(ReactiveMemcachedOperations delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Mono<Boolean> append(long cas, String key, Object val) {
+        return delegate.append(cas, key, val);
+    }
+
+    @Override
+    public Mono<Boolean> append(String key, Object val) {
+        return delegate.append(key, val);
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(long cas, String key, T val, Transcoder<T> tc) {
+        return delegate.append(cas, key, val, tc);
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(String key, T val, Transcoder<T> tc) {
+        return delegate.append(key, val, tc);
+    }
+
+    @Override
+    public Mono<Boolean> prepend(long cas, String key, Object val) {
+        return delegate.prepend(cas, key, val);
+    }
+
+    @Override
+    public Mono<Boolean> prepend(String key, Object val) {
+        return delegate.prepend(key, val);
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(long cas, String key, T val, Transcoder<T> tc) {
+        return delegate.prepend(cas, key, val, tc);
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(String key, T val, Transcoder<T> tc) {
+        return delegate.prepend(key, val, tc);
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, T value, Transcoder<T> tc) {
+        return delegate.cas(key, casId, value, tc);
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, Object value) {
+        return delegate.cas(key, casId, value);
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, int exp, Object value) {
+        return delegate.cas(key, casId, exp, value);
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc) {
+        return delegate.cas(key, casId, exp, value, tc);
+    }
+
+    @Override
+    public <T> Mono<Boolean> add(String key, int exp, T o, Transcoder<T> tc) {
+        return delegate.add(key, exp, o, tc);
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, Object o) {
+        return delegate.add(key, exp, o);
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, ByteBuffer value) {
+        return delegate.add(key, exp, value);
+    }
+
+    @Override
+    public <T> Mono<Boolean> set(String key, int exp, T o, Transcoder<T> tc) {
+        return delegate.set(key, exp, o, tc);
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, Object o) {
+        return delegate.set(key, exp, o);
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return delegate.set(key, exp, value);
+    }
+
+    @Override
+    public <T> Mono<Boolean> replace(String key, int exp, T o, Transcoder<T> tc) {
+        return delegate.replace(key, exp, o, tc);
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, Object o) {
+        return delegate.replace(key, exp, o);
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, ByteBuffer value) {
+        return delegate.replace(key, exp, value);
+    }
+
+    @Override
+    public <T> Mono<T> get(String key, Transcoder<T> tc) {
+        return delegate.get(key, tc);
+    }
+
+    @Override
+    public Mono<Object> get(String key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public Mono<ByteBuffer> getBuffer(String key) {
+        return delegate.getBuffer(key);
+    }
+
+    @Override
+    public Mono<CASValue<Object>> getAndTouch(String key, int exp) {
+        return delegate.getAndTouch(key, exp);
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> getAndTouch(String key, int exp, Transcoder<T> tc) {
+        return delegate.getAndTouch(key, exp, tc);
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> gets(String key, Transcoder<T> tc) {
+        return delegate.gets(key, tc);
+    }
+
+    @Override
+    public Mono<CASValue<Object>> gets(String key) {
+        return delegate.gets(key);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Iterator<Transcoder<T>> tcs) {
+        return delegate.getBulk(keys, tcs);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Iterator<Transcoder<T>> tcs) {
+        return delegate.getBulk(keys, tcs);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Transcoder<T> tc) {
+        return delegate.getBulk(keys, tc);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Transcoder<T> tc) {
+        return delegate.getBulk(keys, tc);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Iterator<String> keys) {
+        return delegate.getBulk(keys);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Collection<String> keys) {
+        return delegate.getBulk(keys);
+    }
+
+    @Override
+    public Mono<Map<String, ByteBuffer>> getBulkBuffers(Collection<String> keys) {
+        return delegate.getBulkBuffers(keys);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Transcoder<T> tc, String... keys) {
+        return delegate.getBulk(tc, keys);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(String... keys) {
+        return delegate.getBulk(keys);
+    }
+
+    @Override
+    public <T> Mono<BulkGetResult<T>> getBulk(Collection<String> keys, Transcoder<T> tc, Duration deadline) {
+        return delegate.getBulk(keys, tc, deadline);
+    }
+
+    @Override
+    public Mono<BulkGetResult<Object>> getBulk(Collection<String> keys, Duration deadline) {
+        return delegate.getBulk(keys, deadline);
+    }
+
+    @Override
+    public <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return delegate.streamBulk(keys, tc);
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return delegate.streamBulk(keys);
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp, Transcoder<T> tc) {
+        return delegate.touch(key, exp, tc);
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp) {
+        return delegate.touch(key, exp);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by) {
+        return delegate.incr(key, by);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by) {
+        return delegate.incr(key, by);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by) {
+        return delegate.decr(key, by);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by) {
+        return delegate.decr(key, by);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def, int exp) {
+        return delegate.incr(key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def, int exp) {
+        return delegate.incr(key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def, int exp) {
+        return delegate.decr(key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def, int exp) {
+        return delegate.decr(key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def) {
+        return delegate.incr(key, by, def);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def) {
+        return delegate.incr(key, by, def);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def) {
+        return delegate.decr(key, by, def);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def) {
+        return delegate.decr(key, by, def);
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key, long cas) {
+        return delegate.delete(key, cas);
+    }
+
+    @Override
+    public Mono<Boolean> flush(int delay) {
+        return delegate.flush(delay);
+    }
+
+    @Override
+    public Mono<Boolean> flush() {
+        return delegate.flush();
+    }
+}
@@ -0,0 +1,239 @@
+package spymemcached.reactive;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Mono} which creates a spymemcached future on subscription and signals its result from the future's
+ * completion listener. The subscription is itself the listener, so subscribing allocates nothing beyond it.
+ * Cancelling the subscription cancels the future.
+ * <p>
+ * The result is read and recorded on the listener thread, then signalled downstream on the completion scheduler,
+ * which is either {@link Schedulers#immediate()} to signal inline or another scheduler to hand off to.
+ * <p>
+ * If the subscriber context holds a {@link Deadline}, the future is not created once it has passed, and is cancelled
+ * with a timeout when it passes before the future completes.
+ */
+abstract class FutureMono<T, F extends Future<T>> extends Mono<T> {
+
+    private final OperationType type;
+    private final int keyCount;
+    private final Supplier<F> futureCreator;
+    private final FutureMonoSettings settings;
+
+    FutureMono(OperationType type, int keyCount, Supplier<F> futureCreator, FutureMonoSettings settings) {
+        this.type = type;
+        this.keyCount = keyCount;
+        this.futureCreator = futureCreator;
+        this.settings = settings;
+    }
+
+    abstract FutureSubscription<T, F> subscription(CoreSubscriber<? super T> actual,
+                                                   OperationType type,
+                                                   int keyCount,
+                                                   FutureMonoSettings settings);
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+        FutureSubscription<T, F> subscription = subscription(actual, type, keyCount, settings);
+        actual.onSubscribe(subscription);
+        if (subscription.isCancelled()) {
+            return;
+        }
+        Long remainingNanos = Deadline.remainingNanos(actual.currentContext());
+        if (remainingNanos != null && remainingNanos <= 0) {
+            subscription.fail(Deadline.exceeded());
+            return;
+        }
+        F future;
+        try {
+            future = futureCreator.get();
+        } catch (RuntimeException e) {
+            subscription.fail(e);
+            return;
+        }
+        subscription.listen(future);
+        if (remainingNanos != null) {
+            subscription.expireAfter(remainingNanos);
+        }
+    }
+
+    /**
+     * Where a {@link FutureMono} records outcomes and signals completion, shared by all operations of a template.
+     */
+    static class FutureMonoSettings {
+        private final OperationRecorder recorder;
+        private final Scheduler completionScheduler;
+        private final Scheduler deadlineScheduler;
+        private final boolean inline;
+
+        FutureMonoSettings(OperationRecorder recorder, Scheduler completionScheduler, Scheduler deadlineScheduler) {
+            this.recorder = recorder;
+            this.completionScheduler = completionScheduler;
+            this.deadlineScheduler = deadlineScheduler;
+            this.inline = completionScheduler == Schedulers.immediate();
+        }
+    }
+
+    abstract static class FutureSubscription<T, F extends Future<T>> extends Operators.MonoSubscriber<T, T>
+            implements Runnable {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<FutureSubscription> TERMINATED =
+                AtomicIntegerFieldUpdater.newUpdater(FutureSubscription.class, "terminated");
+
+        private final OperationType type;
+        private final int keyCount;
+        private final FutureMonoSettings settings;
+        private final long start;
+
+        private volatile F future;
+        private volatile Disposable deadlineTimer;
+        private volatile int terminated;
+        private T result;
+        private Throwable failure;
+
+        FutureSubscription(CoreSubscriber<? super T> actual,
+                           OperationType type,
+                           int keyCount,
+                           FutureMonoSettings settings) {
+            super(actual);
+            this.type = type;
+            this.keyCount = keyCount;
+            this.settings = settings;
+            this.start = System.nanoTime();
+        }
+
+        abstract void addListener(F future);
+
+        void listen(F future) {
+            this.future = future;
+            if (isCancelled()) {
+                future.cancel(true);
+                return;
+            }
+            try {
+                addListener(future);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        void expireAfter(long nanos) {
+            Disposable timer;
+            try {
+                timer = settings.deadlineScheduler.schedule(this::expire, nanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+            deadlineTimer = timer;
+            if (terminated != 0) {
+                timer.dispose();
+            }
+        }
+
+        private void expire() {
+            if (TERMINATED.compareAndSet(this, 0, 1)) {
+                future.cancel(true);
+                record(OperationOutcome.ERROR);
+                failure = Deadline.exceeded();
+                signal();
+            }
+        }
+
+        /**
+         * Called by the listener once the future is done. The listener may be notified more than once, since
+         * spymemcached notifies every listener again whenever one is added to a completed future.
+         */
+        final void onFutureComplete() {
+            F future = this.future;
+            assert future.isDone();
+            if (future.isCancelled() || !TERMINATED.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            disposeDeadlineTimer();
+            try {
+                // the future is done, so this returns without blocking
+                result = future.get();
+                record(OperationOutcome.of(result));
+            } catch (ExecutionException | InterruptedException e) {
+                failure = e.getCause() == null ? e : e.getCause();
+                record(OperationOutcome.ERROR);
+            }
+            signal();
+        }
+
+        /**
+         * Signals the outcome downstream on the completion scheduler, or straight away if it is immediate.
+         */
+        private void signal() {
+            if (settings.inline) {
+                run();
+                return;
+            }
+            try {
+                settings.completionScheduler.schedule(this);
+            } catch (RejectedExecutionException e) {
+                result = null;
+                failure = e;
+                run();
+            }
+        }
+
+        /**
+         * Signals the result read from the future downstream.
+         */
+        @Override
+        public void run() {
+            if (failure != null) {
+                actual.onError(failure);
+            } else if (result == null) {
+                actual.onComplete();
+            } else {
+                complete(result);
+            }
+        }
+
+        final void fail(Throwable e) {
+            if (TERMINATED.compareAndSet(this, 0, 1)) {
+                record(OperationOutcome.ERROR);
+                actual.onError(e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            super.cancel();
+            if (TERMINATED.compareAndSet(this, 0, 1)) {
+                F future = this.future;
+                if (future != null) {
+                    future.cancel(true);
+                }
+                disposeDeadlineTimer();
+                record(OperationOutcome.CANCEL);
+            }
+        }
+
+        private void disposeDeadlineTimer() {
+            Disposable timer = deadlineTimer;
+            if (timer != null) {
+                timer.dispose();
+            }
+        }
+
+        private void record(OperationOutcome outcome) {
+            settings.recorder.record(type, keyCount, start, System.nanoTime() - start, outcome);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects single key lookups and issues them together as one bulk get, either once the batch window since the first
+ * pending lookup has elapsed or as soon as the maximum batch size is reached. A lookup which is cancelled before its
+ * batch is issued is dropped from the batch; once issued, the bulk get runs to completion regardless. A lookup of an
+ * invalid key fails on its own rather than joining a batch, where it would fail the bulk get of every key in it.
+ */
+class GetBatcher<T> {
+
+    private final Function<Collection<String>, Mono<Map<String, T>>> bulkGet;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Scheduler scheduler;
+
+    private List<PendingGet<T>> pending = new ArrayList<>();
+    private Disposable scheduledFlush;
+    // identifies the current window, so a flush scheduled for a window which has since ended is not kept
+    private long windowId;
+
+    GetBatcher(Function<Collection<String>, Mono<Map<String, T>>> bulkGet,
+               Duration window,
+               int maxBatchSize,
+               Scheduler scheduler) {
+        this.bulkGet = bulkGet;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+    }
+
+    Mono<T> get(String key) {
+        return Mono.create(sink -> {
+            try {
+                StringUtils.validateKey(key, false);
+            } catch (IllegalArgumentException e) {
+                sink.error(e);
+                return;
+            }
+            enqueue(new PendingGet<>(key, sink));
+        });
+    }
+
+    private void enqueue(PendingGet<T> get) {
+        List<PendingGet<T>> batch = null;
+        long startedWindow = -1;
+        synchronized (this) {
+            pending.add(get);
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (pending.size() == 1) {
+                startedWindow = windowId;
+            }
+        }
+        get.sink.onCancel(() -> remove(get));
+        if (batch != null) {
+            issue(batch);
+        } else if (startedWindow >= 0) {
+            scheduleFlush(startedWindow);
+        }
+    }
+
+    /**
+     * Schedules the end of the window outside the lock, flushing straight away if the scheduler rejects it so the
+     * pending lookups are not left waiting for a flush which never comes.
+     */
+    private void scheduleFlush(long startedWindow) {
+        Disposable flush;
+        try {
+            flush = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            flush();
+            return;
+        }
+        synchronized (this) {
+            if (windowId == startedWindow && scheduledFlush == null) {
+                scheduledFlush = flush;
+                return;
+            }
+        }
+        // the window ended while this was being scheduled
+        flush.dispose();
+    }
+
+    private synchronized void remove(PendingGet<T> get) {
+        // the window ends with the last pending lookup, so it does not cut short the window of the next one
+        if (pending.remove(get) && pending.isEmpty()) {
+            endWindow();
+        }
+    }
+
+    private void flush() {
+        List<PendingGet<T>> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            issue(batch);
+        }
+    }
+
+    private List<PendingGet<T>> takePending() {
+        List<PendingGet<T>> batch = pending;
+        pending = new ArrayList<>();
+        endWindow();
+        return batch;
+    }
+
+    private void endWindow() {
+        windowId++;
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+    }
+
+    private void issue(List<PendingGet<T>> batch) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (PendingGet<T> get : batch) {
+            keys.add(get.key);
+        }
+        bulkGet.apply(keys).defaultIfEmpty(Collections.emptyMap()).subscribe(
+                values -> {
+                    for (PendingGet<T> get : batch) {
+                        get.sink.success(values.get(get.key));
+                    }
+                },
+                error -> {
+                    for (PendingGet<T> get : batch) {
+                        get.sink.error(error);
+                    }
+                });
+    }
+
+    private static class PendingGet<T> {
+        private final String key;
+        private final MonoSink<T> sink;
+
+        PendingGet(String key, MonoSink<T> sink) {
+            this.key = key;
+            this.sink = sink;
+        }
+    }
+}
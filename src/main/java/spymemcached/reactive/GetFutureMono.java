@@ -0,0 +1,49 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.internal.GetCompletionListener;
+import net.spy.memcached.internal.GetFuture;
+import reactor.core.CoreSubscriber;
+
+import java.util.function.Supplier;
+
+/**
+ * Adapts a {@link GetFuture} to a {@link reactor.core.publisher.Mono}.
+ */
+class GetFutureMono<T> extends FutureMono<T, GetFuture<T>> {
+
+    GetFutureMono(OperationType type,
+                  int keyCount,
+                  Supplier<GetFuture<T>> futureCreator,
+                  FutureMonoSettings settings) {
+        super(type, keyCount, futureCreator, settings);
+    }
+
+    @Override
+    FutureSubscription<T, GetFuture<T>> subscription(CoreSubscriber<? super T> actual,
+                                                     OperationType type,
+                                                     int keyCount,
+                                                     FutureMonoSettings settings) {
+        return new GetFutureSubscription<>(actual, type, keyCount, settings);
+    }
+
+    private static class GetFutureSubscription<T> extends FutureSubscription<T, GetFuture<T>>
+            implements GetCompletionListener {
+
+        GetFutureSubscription(CoreSubscriber<? super T> actual,
+                              OperationType type,
+                              int keyCount,
+                              FutureMonoSettings settings) {
+            super(actual, type, keyCount, settings);
+        }
+
+        @Override
+        void addListener(GetFuture<T> future) {
+            future.addListener(this);
+        }
+
+        @Override
+        public void onComplete(GetFuture<?> future) {
+            onFutureComplete();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package spymemcached.reactive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds the most frequently used keys from a sample of the keys passed to it. Each sampled key is counted in a
+ * count-min sketch, and the keys with the highest estimated counts are kept as top-K candidates. At the end of each
+ * window, the candidates and their estimated rates are published and the counts start over. A window completes with
+ * the first key recorded, or request for the hottest keys, after it has ended.
+ * <p>
+ * Only sampled keys take a lock, so with the default sample rate recording costs a random number for most keys.
+ * Rates are estimates: the sketch never undercounts, but keys used less often than about one in every
+ * {@code 1 / sampleRate} operations per window may not be seen at all.
+ *
+ * @see ReactiveMemcachedTemplate.Builder#hotKeyTracker
+ * @see NearCacheMemcachedOperations.Builder#cacheOnly
+ */
+public class HotKeyTracker {
+
+    private final double sampleRate;
+    private final int topK;
+    private final int width;
+    private final long windowNanos;
+    private final Consumer<List<HotKey>> listener;
+    private final LongSupplier nanoTime;
+    private final long[][] sketch;
+    private final Map<String, Long> candidates = new HashMap<>();
+
+    private long windowStart;
+    private volatile List<HotKey> hotKeys = Collections.emptyList();
+    private volatile Set<String> hotKeySet = Collections.emptySet();
+
+    private HotKeyTracker(Builder builder) {
+        this.sampleRate = builder.sampleRate;
+        this.topK = builder.topK;
+        this.width = builder.width;
+        this.windowNanos = builder.window.toNanos();
+        this.listener = builder.listener;
+        this.nanoTime = builder.nanoTime;
+        this.windowStart = nanoTime.getAsLong();
+        this.sketch = new long[builder.depth][builder.width];
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public void record(String key) {
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        List<HotKey> published = null;
+        synchronized (this) {
+            long now = nanoTime.getAsLong();
+            if (now - windowStart >= windowNanos) {
+                published = rollOver(now);
+            }
+            count(key);
+        }
+        if (published != null) {
+            listener.accept(published);
+        }
+    }
+
+    /**
+     * The hottest keys of the last completed window, hottest first.
+     */
+    public List<HotKey> hotKeys() {
+        List<HotKey> published = null;
+        synchronized (this) {
+            long now = nanoTime.getAsLong();
+            if (now - windowStart >= windowNanos) {
+                published = rollOver(now);
+            }
+        }
+        if (published != null) {
+            listener.accept(published);
+        }
+        return hotKeys;
+    }
+
+    /**
+     * Whether the key was among the hottest keys of the last completed window.
+     */
+    public boolean isHot(String key) {
+        return hotKeySet.contains(key);
+    }
+
+    private void count(String key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < sketch.length; row++) {
+            int column = (mix(hash, row) & Integer.MAX_VALUE) % width;
+            estimate = Math.min(estimate, ++sketch[row][column]);
+        }
+        if (candidates.containsKey(key) || candidates.size() < topK) {
+            candidates.put(key, estimate);
+            return;
+        }
+        Map.Entry<String, Long> coldest = null;
+        for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+            if (coldest == null || candidate.getValue() < coldest.getValue()) {
+                coldest = candidate;
+            }
+        }
+        if (coldest != null && estimate > coldest.getValue()) {
+            candidates.remove(coldest.getKey());
+            candidates.put(key, estimate);
+        }
+    }
+
+    private List<HotKey> rollOver(long now) {
+        double seconds = (now - windowStart) / 1e9;
+        List<HotKey> published = new ArrayList<>(candidates.size());
+        for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+            published.add(new HotKey(candidate.getKey(), candidate.getValue() / sampleRate / seconds));
+        }
+        published.sort((first, second) -> Double.compare(second.rate(), first.rate()));
+        Set<String> publishedSet = new HashSet<>();
+        for (HotKey hotKey : published) {
+            publishedSet.add(hotKey.key());
+        }
+        hotKeys = Collections.unmodifiableList(published);
+        hotKeySet = publishedSet;
+        candidates.clear();
+        for (long[] row : sketch) {
+            Arrays.fill(row, 0);
+        }
+        windowStart = now;
+        return hotKeys;
+    }
+
+    /**
+     * Derives an independent hash for each row of the sketch from the key's hash code.
+     */
+    private static int mix(int hash, int row) {
+        int h = hash * 0x9E3779B9 + row * 0x85EBCA6B;
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+        return h;
+    }
+
+    /**
+     * A key and its estimated rate of use over the window it was hot in.
+     */
+    public static class HotKey {
+        private final String key;
+        private final double rate;
+
+        HotKey(String key, double rate) {
+            this.key = key;
+            this.rate = rate;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        /**
+         * Estimated uses per second.
+         */
+        public double rate() {
+            return rate;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + Math.round(rate) + "/s";
+        }
+    }
+
+    public static class Builder {
+        private double sampleRate = 0.01;
+        private int topK = 20;
+        private int width = 2048;
+        private int depth = 4;
+        private Duration window = Duration.ofSeconds(10);
+        private Consumer<List<HotKey>> listener = hotKeys -> {
+        };
+        private LongSupplier nanoTime = System::nanoTime;
+
+        private Builder() {
+        }
+
+        /**
+         * The fraction of keys counted, 1% by default.
+         */
+        public Builder sampleRate(double sampleRate) {
+            if (sampleRate <= 0 || sampleRate > 1) {
+                throw new IllegalArgumentException("Sample rate must be greater than 0 and at most 1");
+            }
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * The number of hottest keys reported, 20 by default.
+         */
+        public Builder topK(int topK) {
+            if (topK < 1) {
+                throw new IllegalArgumentException("Top K must be positive");
+            }
+            this.topK = topK;
+            return this;
+        }
+
+        /**
+         * The dimensions of the count-min sketch, 2048 counters in each of 4 rows by default. Wider rows overcount
+         * less, more rows make overcounting less likely.
+         */
+        public Builder sketch(int width, int depth) {
+            if (width < 1 || depth < 1) {
+                throw new IllegalArgumentException("Sketch width and depth must be positive");
+            }
+            this.width = width;
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * How long counts accumulate before the hottest keys are published, 10 seconds by default.
+         */
+        public Builder window(Duration window) {
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("Window must be positive");
+            }
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Receives the hottest keys each time a window completes, on the thread which records a key or asks for the
+         * hottest keys once it has.
+         */
+        public Builder onHotKeys(Consumer<List<HotKey>> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * The source of the time windows are measured with, {@link System#nanoTime()} outside of tests.
+         */
+        Builder nanoTime(LongSupplier nanoTime) {
+            this.nanoTime = nanoTime;
+            return this;
+        }
+
+        public HotKeyTracker build() {
+            return new HotKeyTracker(this);
+        }
+    }
+}
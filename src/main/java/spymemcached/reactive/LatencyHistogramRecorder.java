@@ -0,0 +1,47 @@
+package spymemcached.reactive;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link OperationRecorder} which keeps a latency histogram and outcome counts for each {@link OperationType},
+ * from which percentiles can be read on demand. Recording never blocks or allocates.
+ */
+public class LatencyHistogramRecorder implements OperationRecorder {
+
+    private final Map<OperationType, OperationStats> stats = new EnumMap<>(OperationType.class);
+
+    public LatencyHistogramRecorder() {
+        for (OperationType type : OperationType.values()) {
+            stats.put(type, new OperationStats());
+        }
+    }
+
+    @Override
+    public void record(OperationType type, int keyCount, long startNanos, long latencyNanos, OperationOutcome outcome) {
+        OperationStats operationStats = stats.get(type);
+        operationStats.latencies.record(latencyNanos);
+        operationStats.outcomes[outcome.ordinal()].increment();
+    }
+
+    public LatencySnapshot snapshot(OperationType type) {
+        OperationStats operationStats = stats.get(type);
+        Map<OperationOutcome, Long> outcomes = new EnumMap<>(OperationOutcome.class);
+        for (OperationOutcome outcome : OperationOutcome.values()) {
+            outcomes.put(outcome, operationStats.outcomes[outcome.ordinal()].sum());
+        }
+        return new LatencySnapshot(operationStats.latencies.counts(), outcomes);
+    }
+
+    private static class OperationStats {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder[] outcomes = new LongAdder[OperationOutcome.values().length];
+
+        OperationStats() {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package spymemcached.reactive;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time copy of the latencies and outcomes recorded for one {@link OperationType} by a
+ * {@link LatencyHistogramRecorder}. Latencies are in nanoseconds.
+ */
+public class LatencySnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final Map<OperationOutcome, Long> outcomes;
+
+    LatencySnapshot(long[] counts, Map<OperationOutcome, Long> outcomes) {
+        this.counts = counts;
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        this.count = count;
+        this.outcomes = new EnumMap<>(outcomes);
+    }
+
+    /**
+     * The number of operations recorded.
+     */
+    public long count() {
+        return count;
+    }
+
+    public long count(OperationOutcome outcome) {
+        return outcomes.getOrDefault(outcome, 0L);
+    }
+
+    /**
+     * The latency at or below which the given fraction of operations completed, or 0 if none were recorded.
+     *
+     * @param quantile between 0 and 1, for example 0.99 for the 99th percentile
+     */
+    public long percentile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValue(bucket);
+            }
+        }
+        return LatencyHistogram.highestValue(counts.length - 1);
+    }
+
+    public long p50() {
+        return percentile(0.5);
+    }
+
+    public long p99() {
+        return percentile(0.99);
+    }
+
+    public long p999() {
+        return percentile(0.999);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{" +
+                "count=" + count +
+                ", p50=" + TimeUnit.NANOSECONDS.toMicros(p50()) + "us" +
+                ", p99=" + TimeUnit.NANOSECONDS.toMicros(p99()) + "us" +
+                ", p999=" + TimeUnit.NANOSECONDS.toMicros(p999()) + "us" +
+                ", outcomes=" + outcomes +
+                '}';
+    }
+}
@@ -0,0 +1,572 @@
+package spymemcached.reactive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Keeps a bounded, in-process copy of values read through it so that repeated reads of the same key are served
+ * without a round-trip to memcached. Values are only cached for the transcoder they were read with, and misses are
+ * not cached.
+ * <p>
+ * Writes made through this instance invalidate the local copy of the key, both when they are issued and when they
+ * complete. Writes made by other clients are only observed once the local copy expires, so the expiry should be
+ * chosen according to how stale a value may be.
+ */
+public class NearCacheMemcachedOperations extends DelegatingReactiveMemcachedOperations {
+
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final Cache<String, CachedValue> cache;
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Predicate<String> cacheOnly;
+
+    private NearCacheMemcachedOperations(Builder builder) {
+        super(builder.delegate);
+        this.cacheOnly = builder.cacheOnly;
+        Caffeine<String, CachedValue> caffeine = Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .removalListener((String key, CachedValue cached, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                });
+        if (builder.weigher != null) {
+            ToIntBiFunction<String, Object> weigher = builder.weigher;
+            caffeine = caffeine.maximumWeight(builder.maximumWeight)
+                    .weigher((String key, CachedValue cached) -> weigher.applyAsInt(key, cached.value));
+        } else {
+            caffeine = caffeine.maximumSize(builder.maximumSize);
+        }
+        if (builder.expireAfterWrite != null) {
+            caffeine = caffeine.expireAfterWrite(builder.expireAfterWrite.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        this.cache = caffeine.build();
+    }
+
+    public static Builder builder(ReactiveMemcachedOperations delegate) {
+        return new Builder(delegate);
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), cache.estimatedSize());
+    }
+
+    /**
+     * Discards the local copy of the given key, for example in response to an out of band notification that it has
+     * changed.
+     */
+    public void invalidate(String key) {
+        invalidations.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public <T> Mono<T> get(String key, Transcoder<T> tc) {
+        return read(key, tc, () -> delegate.get(key, tc));
+    }
+
+    @Override
+    public Mono<Object> get(String key) {
+        return read(key, null, () -> delegate.get(key));
+    }
+
+    /**
+     * Each caller receives its own view of the cached bytes, with its own position and limit.
+     */
+    @Override
+    public Mono<ByteBuffer> getBuffer(String key) {
+        return read(key, ByteBufferTranscoder.INSTANCE, () -> delegate.getBuffer(key)).map(ByteBuffer::duplicate);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Transcoder<T> tc) {
+        return readBulk(keys, tc, missing -> delegate.getBulk(missing, tc));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Collection<String> keys) {
+        return readBulk(keys, null, delegate::getBulk);
+    }
+
+    @Override
+    public Mono<Map<String, ByteBuffer>> getBulkBuffers(Collection<String> keys) {
+        return readBulk(keys, ByteBufferTranscoder.INSTANCE, delegate::getBulkBuffers).map(values -> {
+            Map<String, ByteBuffer> views = new HashMap<>();
+            values.forEach((key, value) -> views.put(key, value.duplicate()));
+            return views;
+        });
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Transcoder<T> tc, String... keys) {
+        return readBulk(Arrays.asList(keys), tc, missing -> delegate.getBulk(missing, tc));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(String... keys) {
+        return readBulk(Arrays.asList(keys), null, delegate::getBulk);
+    }
+
+    @Override
+    public <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return readStream(keys, tc, missing -> delegate.streamBulk(missing, tc));
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return readStream(keys, null, delegate::streamBulk);
+    }
+
+    @Override
+    public Mono<Boolean> append(long cas, String key, Object val) {
+        return write(key, delegate.append(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> append(String key, Object val) {
+        return write(key, delegate.append(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(long cas, String key, T val, Transcoder<T> tc) {
+        return write(key, delegate.append(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(String key, T val, Transcoder<T> tc) {
+        return write(key, delegate.append(key, val, tc));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(long cas, String key, Object val) {
+        return write(key, delegate.prepend(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(String key, Object val) {
+        return write(key, delegate.prepend(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(long cas, String key, T val, Transcoder<T> tc) {
+        return write(key, delegate.prepend(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(String key, T val, Transcoder<T> tc) {
+        return write(key, delegate.prepend(key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, T value, Transcoder<T> tc) {
+        return write(key, delegate.cas(key, casId, value, tc));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, Object value) {
+        return write(key, delegate.cas(key, casId, value));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, int exp, Object value) {
+        return write(key, delegate.cas(key, casId, exp, value));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc) {
+        return write(key, delegate.cas(key, casId, exp, value, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> add(String key, int exp, T o, Transcoder<T> tc) {
+        return write(key, delegate.add(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, Object o) {
+        return write(key, delegate.add(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, ByteBuffer value) {
+        return write(key, delegate.add(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<Boolean> set(String key, int exp, T o, Transcoder<T> tc) {
+        return write(key, delegate.set(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, Object o) {
+        return write(key, delegate.set(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return write(key, delegate.set(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<Boolean> replace(String key, int exp, T o, Transcoder<T> tc) {
+        return write(key, delegate.replace(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, Object o) {
+        return write(key, delegate.replace(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, ByteBuffer value) {
+        return write(key, delegate.replace(key, exp, value));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by) {
+        return write(key, delegate.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by) {
+        return write(key, delegate.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by) {
+        return write(key, delegate.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by) {
+        return write(key, delegate.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def, int exp) {
+        return write(key, delegate.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def, int exp) {
+        return write(key, delegate.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def, int exp) {
+        return write(key, delegate.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def, int exp) {
+        return write(key, delegate.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def) {
+        return write(key, delegate.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def) {
+        return write(key, delegate.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def) {
+        return write(key, delegate.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def) {
+        return write(key, delegate.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return write(key, delegate.delete(key));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key, long cas) {
+        return write(key, delegate.delete(key, cas));
+    }
+
+    @Override
+    public Mono<Boolean> flush(int delay) {
+        return Mono.defer(() -> {
+            invalidateAll();
+            return delegate.flush(delay).doFinally(ignored -> invalidateAll());
+        });
+    }
+
+    @Override
+    public Mono<Boolean> flush() {
+        return Mono.defer(() -> {
+            invalidateAll();
+            return delegate.flush().doFinally(ignored -> invalidateAll());
+        });
+    }
+
+    private <T> Mono<T> read(String key, Transcoder<?> tc, Supplier<Mono<T>> lookup) {
+        return Mono.defer(() -> {
+            T cached = lookupLocal(key, tc);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long generation = invalidations.get(stripe(key));
+            return lookup.get().doOnNext(value -> populate(key, tc, value, generation));
+        });
+    }
+
+    private <T> Mono<Map<String, T>> readBulk(Collection<String> keys,
+                                              Transcoder<?> tc,
+                                              Function<Collection<String>, Mono<Map<String, T>>> lookup) {
+        return Mono.defer(() -> {
+            Map<String, T> found = new HashMap<>();
+            List<String> missing = new ArrayList<>();
+            for (String key : keys) {
+                T cached = lookupLocal(key, tc);
+                if (cached != null) {
+                    found.put(key, cached);
+                } else {
+                    missing.add(key);
+                }
+            }
+            if (missing.isEmpty()) {
+                return Mono.just(found);
+            }
+            long[] generations = generations(missing);
+            return lookup.apply(missing).map(values -> {
+                for (int i = 0; i < missing.size(); i++) {
+                    T value = values.get(missing.get(i));
+                    if (value != null) {
+                        populate(missing.get(i), tc, value, generations[i]);
+                    }
+                }
+                found.putAll(values);
+                return found;
+            });
+        });
+    }
+
+    private <T> Flux<Map.Entry<String, T>> readStream(Collection<String> keys,
+                                                      Transcoder<?> tc,
+                                                      Function<Collection<String>, Flux<Map.Entry<String, T>>> lookup) {
+        return Flux.defer(() -> {
+            List<Map.Entry<String, T>> found = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            for (String key : keys) {
+                T cached = lookupLocal(key, tc);
+                if (cached != null) {
+                    found.add(new SimpleImmutableEntry<>(key, cached));
+                } else {
+                    missing.add(key);
+                }
+            }
+            if (missing.isEmpty()) {
+                return Flux.fromIterable(found);
+            }
+            Map<String, Long> generations = new HashMap<>();
+            for (String key : missing) {
+                generations.put(key, invalidations.get(stripe(key)));
+            }
+            return Flux.fromIterable(found).concatWith(lookup.apply(missing)
+                    .doOnNext(entry -> populate(entry.getKey(), tc, entry.getValue(), generations.get(entry.getKey()))));
+        });
+    }
+
+    private <T> T lookupLocal(String key, Transcoder<?> tc) {
+        CachedValue cached = cache.getIfPresent(key);
+        if (cached != null && Objects.equals(cached.tc, tc)) {
+            hits.increment();
+            @SuppressWarnings("unchecked")
+            T value = (T) cached.value;
+            return value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    private long[] generations(List<String> keys) {
+        long[] generations = new long[keys.size()];
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = invalidations.get(stripe(keys.get(i)));
+        }
+        return generations;
+    }
+
+    /**
+     * Caches a value read from memcached, unless a write to a key in the same stripe was made while it was being read
+     * in which case the value may already be stale.
+     */
+    private void populate(String key, Transcoder<?> tc, Object value, long generation) {
+        int stripe = stripe(key);
+        if (invalidations.get(stripe) != generation || !cacheOnly.test(key)) {
+            return;
+        }
+        CachedValue cached = new CachedValue(tc, value);
+        cache.put(key, cached);
+        if (invalidations.get(stripe) != generation) {
+            cache.asMap().remove(key, cached);
+        }
+    }
+
+    private <R> Mono<R> write(String key, Mono<R> write) {
+        return Mono.defer(() -> {
+            invalidate(key);
+            return write.doFinally(ignored -> invalidate(key));
+        });
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
+    private static class CachedValue {
+        private final Transcoder<?> tc;
+        private final Object value;
+
+        CachedValue(Transcoder<?> tc, Object value) {
+            this.tc = tc;
+            this.value = value;
+        }
+    }
+
+    public static class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long size;
+
+        Stats(long hitCount, long missCount, long evictionCount, long size) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+        }
+
+        public long hitCount() {
+            return hitCount;
+        }
+
+        public long missCount() {
+            return missCount;
+        }
+
+        /**
+         * The number of values removed to respect the size or weight bound, or because they expired.
+         */
+        public long evictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * The approximate number of values currently held.
+         */
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hitCount=" + hitCount +
+                    ", missCount=" + missCount +
+                    ", evictionCount=" + evictionCount +
+                    ", size=" + size +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+        private final ReactiveMemcachedOperations delegate;
+        private long maximumSize = 10_000;
+        private long maximumWeight;
+        private ToIntBiFunction<String, Object> weigher;
+        private Duration expireAfterWrite;
+        private Predicate<String> cacheOnly = key -> true;
+
+        private Builder(ReactiveMemcachedOperations delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * The maximum number of values held locally, 10,000 by default.
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            this.weigher = null;
+            return this;
+        }
+
+        /**
+         * Bounds the values held locally by their combined weight, as given by {@code weigher}, rather than by their
+         * number.
+         */
+        public Builder maximumWeight(long maximumWeight, ToIntBiFunction<String, Object> weigher) {
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * How long a value is served locally after it was read from memcached.
+         */
+        public Builder expireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        /**
+         * Only values of the keys matching the predicate when they are read are held locally, every key by default.
+         * Passing {@link HotKeyTracker#isHot} pins the hottest keys locally, relieving the nodes which hold them; a
+         * key which cools down is served locally until its value expires or is evicted.
+         */
+        public Builder cacheOnly(Predicate<String> cacheOnly) {
+            this.cacheOnly = cacheOnly;
+            return this;
+        }
+
+        public NearCacheMemcachedOperations build() {
+            return new NearCacheMemcachedOperations(this);
+        }
+    }
+}
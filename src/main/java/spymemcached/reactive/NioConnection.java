@@ -0,0 +1,259 @@
+package spymemcached.reactive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single pipelined connection to a memcached server. Commands may be sent from any thread; they are written in the
+ * order sent, as many at a time as the socket accepts, and completed in that order as their responses are decoded.
+ * <p>
+ * If the connection fails, every outstanding command fails with the cause and commands sent until it has been
+ * re-established, after the reconnect delay, fail straight away.
+ */
+class NioConnection {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_WRITES_PER_CALL = 64;
+
+    private enum State {
+        CONNECTING, CONNECTED, DISCONNECTED, CLOSED
+    }
+
+    private final InetSocketAddress address;
+    private final NioEventLoop loop;
+    private final int maxOutstanding;
+    private final long reconnectDelayNanos;
+
+    private final Queue<TextCommand<?>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable flush = this::flush;
+    private volatile State state = State.CONNECTING;
+
+    // only accessed from the event loop
+    private final ArrayDeque<TextCommand<?>> awaitingResponse = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> awaitingWrite = new ArrayDeque<>();
+    private final ByteBuffer[] writes = new ByteBuffer[MAX_WRITES_PER_CALL];
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private SocketChannel channel;
+    private SelectionKey key;
+    private long reconnectAt;
+
+    NioConnection(InetSocketAddress address, NioEventLoop loop, int maxOutstanding, long reconnectDelayNanos) {
+        this.address = address;
+        this.loop = loop;
+        this.maxOutstanding = maxOutstanding;
+        this.reconnectDelayNanos = reconnectDelayNanos;
+    }
+
+    InetSocketAddress address() {
+        return address;
+    }
+
+    void send(TextCommand<?> command) {
+        State state = this.state;
+        if (state == State.DISCONNECTED || state == State.CLOSED) {
+            command.fail(new ConnectException("Not connected to " + address));
+            return;
+        }
+        if (outstanding.incrementAndGet() > maxOutstanding) {
+            outstanding.decrementAndGet();
+            command.fail(new IllegalStateException("Queue full for " + address));
+            return;
+        }
+        pending.offer(command);
+        if (this.state == State.CLOSED) {
+            // closed after the check above, possibly after close failed what was pending, so nothing will send this
+            failPending(closed());
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(flush);
+        }
+    }
+
+    void connect() {
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            state = State.CONNECTING;
+            key = channel.register(loop.selector(), 0, this);
+            if (channel.connect(address)) {
+                connected();
+            } else {
+                key.interestOps(SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+    void handle(SelectionKey key) {
+        try {
+            if (key.isConnectable() && channel.finishConnect()) {
+                connected();
+            }
+            if (key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                write();
+            }
+        } catch (IOException | RuntimeException e) {
+            disconnect(e);
+        }
+    }
+
+    void reconnectIfDue(long now) {
+        if (state == State.DISCONNECTED && now - reconnectAt >= 0) {
+            connect();
+        }
+    }
+
+    void close() {
+        state = State.CLOSED;
+        closeChannel();
+        failAll(closed());
+    }
+
+    private void connected() throws IOException {
+        key.interestOps(SelectionKey.OP_READ);
+        state = State.CONNECTED;
+        flush();
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        if (state != State.CONNECTED) {
+            return;
+        }
+        TextCommand<?> command;
+        while ((command = pending.poll()) != null) {
+            if (command.isCancelled()) {
+                outstanding.decrementAndGet();
+                continue;
+            }
+            command.encode(awaitingWrite);
+            awaitingResponse.add(command);
+        }
+        try {
+            write();
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+    private void write() throws IOException {
+        while (!awaitingWrite.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : awaitingWrite) {
+                writes[count++] = buffer;
+                if (count == MAX_WRITES_PER_CALL) {
+                    break;
+                }
+            }
+            long written = channel.write(writes, 0, count);
+            Arrays.fill(writes, 0, count, null);
+            while (!awaitingWrite.isEmpty() && !awaitingWrite.peek().hasRemaining()) {
+                awaitingWrite.poll();
+            }
+            if (written == 0) {
+                break;
+            }
+        }
+        key.interestOps(awaitingWrite.isEmpty()
+                ? SelectionKey.OP_READ
+                : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void read() throws IOException {
+        int read;
+        while ((read = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            decode();
+            if (readBuffer.position() == 0 && readBuffer.limit() == readBuffer.capacity()) {
+                // a single response is larger than the buffer
+                ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                larger.put(readBuffer);
+                readBuffer = larger;
+            } else {
+                readBuffer.compact();
+            }
+        }
+        if (read < 0) {
+            throw new EOFException("Connection closed by " + address);
+        }
+    }
+
+    private void decode() throws IOException {
+        while (readBuffer.hasRemaining()) {
+            TextCommand<?> command = awaitingResponse.peek();
+            if (command == null) {
+                throw TextCommand.unexpected("data with no command outstanding");
+            }
+            if (!command.decode(readBuffer)) {
+                return;
+            }
+            awaitingResponse.poll();
+            outstanding.decrementAndGet();
+        }
+    }
+
+    private void disconnect(Exception cause) {
+        closeChannel();
+        if (state != State.CLOSED) {
+            state = State.DISCONNECTED;
+            reconnectAt = System.nanoTime() + reconnectDelayNanos;
+        }
+        failAll(cause);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // the channel is being discarded
+            }
+            channel = null;
+            key = null;
+        }
+        awaitingWrite.clear();
+        readBuffer.clear();
+    }
+
+    private void failAll(Exception cause) {
+        TextCommand<?> command;
+        while ((command = awaitingResponse.poll()) != null) {
+            outstanding.decrementAndGet();
+            command.fail(cause);
+        }
+        failPending(cause);
+    }
+
+    private void failPending(Exception cause) {
+        TextCommand<?> command;
+        while ((command = pending.poll()) != null) {
+            outstanding.decrementAndGet();
+            command.fail(cause);
+        }
+    }
+
+    private IllegalStateException closed() {
+        return new IllegalStateException("Connection to " + address + " has been closed");
+    }
+}
@@ -0,0 +1,99 @@
+package spymemcached.reactive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A selector thread serving any number of {@link NioConnection}s. Everything a connection does to its channel happens
+ * on this thread; other threads hand work to it through {@link #execute(Runnable)}.
+ */
+class NioEventLoop implements Runnable {
+
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<NioConnection> connections = new ArrayList<>();
+    private volatile boolean running = true;
+
+    NioEventLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void execute(Runnable task) {
+        tasks.offer(task);
+        selector.wakeup();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    void register(NioConnection connection) {
+        execute(() -> {
+            connections.add(connection);
+            connection.connect();
+        });
+    }
+
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        thread.join(unit.toMillis(timeout));
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((NioConnection) key.attachment()).handle(key);
+                }
+                long now = System.nanoTime();
+                for (NioConnection connection : connections) {
+                    connection.reconnectIfDue(now);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            runTasks();
+            for (NioConnection connection : connections) {
+                connection.close();
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.CachedData;
+import net.spy.memcached.DefaultHashAlgorithm;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A {@link ReactiveMemcachedOperations} which speaks the memcached text protocol itself over non-blocking sockets,
+ * rather than through a spymemcached client. Requests are pipelined on each connection and every operation completes
+ * straight from the decoding of its response on the connection's event loop thread.
+ * <p>
+ * Keys are distributed over the servers as spymemcached does by default, so that either implementation can be used
+ * against the same servers. {@code getAndTouch} uses {@code gats}, which requires memcached 1.5.3 or later, and
+ * {@code delete} with a CAS value is not supported by the text protocol.
+ */
+public class NioMemcachedOperations implements ReactiveMemcachedOperations, Closeable {
+
+    private final List<NioConnection[]> nodes;
+    private final List<NioEventLoop> eventLoops;
+    private final Transcoder<Object> transcoder;
+    private final OperationRecorder recorder;
+
+    private NioMemcachedOperations(Builder builder) {
+        this.transcoder = builder.transcoder;
+        this.recorder = builder.operationRecorder;
+        int eventLoopCount = Math.min(builder.eventLoops, builder.addresses.size() * builder.connectionsPerNode);
+        this.eventLoops = new ArrayList<>(eventLoopCount);
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops.add(new NioEventLoop("memcached-nio-" + i));
+        }
+        this.nodes = new ArrayList<>(builder.addresses.size());
+        int next = 0;
+        for (InetSocketAddress address : builder.addresses) {
+            NioConnection[] connections = new NioConnection[builder.connectionsPerNode];
+            for (int i = 0; i < connections.length; i++) {
+                NioEventLoop eventLoop = eventLoops.get(next++ % eventLoopCount);
+                connections[i] = new NioConnection(address, eventLoop, builder.maxOutstanding,
+                        builder.reconnectDelay.toNanos());
+                eventLoop.register(connections[i]);
+            }
+            nodes.add(connections);
+        }
+    }
+
+    public static Builder builder(InetSocketAddress... addresses) {
+        return builder(Arrays.asList(addresses));
+    }
+
+    public static Builder builder(List<InetSocketAddress> addresses) {
+        return new Builder(addresses);
+    }
+
+    @Override
+    public Mono<Boolean> append(long cas, String key, Object val) {
+        return append(key, val, transcoder);
+    }
+
+    @Override
+    public Mono<Boolean> append(String key, Object val) {
+        return append(key, val, transcoder);
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(long cas, String key, T val, Transcoder<T> tc) {
+        return append(key, val, tc);
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(String key, T val, Transcoder<T> tc) {
+        return store(OperationType.APPEND, key, 0, val, tc);
+    }
+
+    @Override
+    public Mono<Boolean> prepend(long cas, String key, Object val) {
+        return prepend(key, val, transcoder);
+    }
+
+    @Override
+    public Mono<Boolean> prepend(String key, Object val) {
+        return prepend(key, val, transcoder);
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(long cas, String key, T val, Transcoder<T> tc) {
+        return prepend(key, val, tc);
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(String key, T val, Transcoder<T> tc) {
+        return store(OperationType.PREPEND, key, 0, val, tc);
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, T value, Transcoder<T> tc) {
+        return cas(key, casId, 0, value, tc);
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, Object value) {
+        return cas(key, casId, 0, value, transcoder);
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, int exp, Object value) {
+        return cas(key, casId, exp, value, transcoder);
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc) {
+        return new CommandMono<>(connection(key),
+                actual -> new TextCommands.Cas(actual, recorder, key, casId, exp, tc.encode(value)));
+    }
+
+    @Override
+    public <T> Mono<Boolean> add(String key, int exp, T o, Transcoder<T> tc) {
+        return store(OperationType.ADD, key, exp, o, tc);
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, Object o) {
+        return store(OperationType.ADD, key, exp, o, transcoder);
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, ByteBuffer value) {
+        return store(OperationType.ADD, key, exp, value);
+    }
+
+    @Override
+    public <T> Mono<Boolean> set(String key, int exp, T o, Transcoder<T> tc) {
+        return store(OperationType.SET, key, exp, o, tc);
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, Object o) {
+        return store(OperationType.SET, key, exp, o, transcoder);
+    }
+
+    /**
+     * Sets the remaining bytes of {@code value}, writing them to the connection straight from the buffer, so it must
+     * not be modified until the returned {@code Mono} completes.
+     */
+    @Override
+    public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return store(OperationType.SET, key, exp, value);
+    }
+
+    @Override
+    public <T> Mono<Boolean> replace(String key, int exp, T o, Transcoder<T> tc) {
+        return store(OperationType.REPLACE, key, exp, o, tc);
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, Object o) {
+        return store(OperationType.REPLACE, key, exp, o, transcoder);
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, ByteBuffer value) {
+        return store(OperationType.REPLACE, key, exp, value);
+    }
+
+    @Override
+    public <T> Mono<T> get(String key, Transcoder<T> tc) {
+        return new CommandMono<>(connection(key), actual -> new TextCommands.Get<>(actual, recorder, key, tc));
+    }
+
+    @Override
+    public Mono<Object> get(String key) {
+        return get(key, transcoder);
+    }
+
+    @Override
+    public Mono<CASValue<Object>> getAndTouch(String key, int exp) {
+        return getAndTouch(key, exp, transcoder);
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> getAndTouch(String key, int exp, Transcoder<T> tc) {
+        return new CommandMono<>(connection(key), actual -> new TextCommands.Gets<>(actual, recorder, key, exp, tc));
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> gets(String key, Transcoder<T> tc) {
+        return new CommandMono<>(connection(key), actual -> new TextCommands.Gets<>(actual, recorder, key, tc));
+    }
+
+    @Override
+    public Mono<CASValue<Object>> gets(String key) {
+        return gets(key, transcoder);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Iterator<Transcoder<T>> tcs) {
+        return getBulk(toList(keys), tcs);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Iterator<Transcoder<T>> tcs) {
+        // like spymemcached, keys without a transcoder are left out
+        Map<String, Transcoder<T>> tcsByKey = new LinkedHashMap<>();
+        Iterator<String> keyIterator = keys.iterator();
+        while (keyIterator.hasNext() && tcs.hasNext()) {
+            tcsByKey.put(keyIterator.next(), tcs.next());
+        }
+        return bulkGet(tcsByKey.keySet(), tcsByKey::get);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Transcoder<T> tc) {
+        return getBulk(toList(keys), tc);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Transcoder<T> tc) {
+        return bulkGet(keys, key -> tc);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Iterator<String> keys) {
+        return getBulk(toList(keys), transcoder);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Collection<String> keys) {
+        return getBulk(keys, transcoder);
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Transcoder<T> tc, String... keys) {
+        return getBulk(Arrays.asList(keys), tc);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(String... keys) {
+        return getBulk(Arrays.asList(keys), transcoder);
+    }
+
+    @Override
+    public <T> Mono<BulkGetResult<T>> getBulk(Collection<String> keys, Transcoder<T> tc, Duration deadline) {
+        return Mono.defer(() -> PartialBulkGets.getBulk(groupByConnection(keys).values(), deadline,
+                connectionKeys -> new CommandMono<>(connection(connectionKeys.get(0)),
+                        actual -> new TextCommands.BulkGet<>(actual, recorder, connectionKeys, key -> tc))));
+    }
+
+    @Override
+    public Mono<BulkGetResult<Object>> getBulk(Collection<String> keys, Duration deadline) {
+        return getBulk(keys, transcoder, deadline);
+    }
+
+    @Override
+    public <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return bulkGetPerNode(keys, key -> tc).flatMapIterable(Map::entrySet);
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return streamBulk(keys, transcoder);
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp, Transcoder<T> tc) {
+        return touch(key, exp);
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp) {
+        return new CommandMono<>(connection(key), actual -> new TextCommands.Touch(actual, recorder, key, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by) {
+        return mutate(OperationType.INCR, key, by);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by) {
+        return mutate(OperationType.INCR, key, by);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by) {
+        return mutate(OperationType.DECR, key, by);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by) {
+        return mutate(OperationType.DECR, key, by);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def, int exp) {
+        return mutate(OperationType.INCR, key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def, int exp) {
+        return mutate(OperationType.INCR, key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def, int exp) {
+        return mutate(OperationType.DECR, key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def, int exp) {
+        return mutate(OperationType.DECR, key, by, def, exp);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def) {
+        return mutate(OperationType.INCR, key, by, def, 0);
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def) {
+        return mutate(OperationType.INCR, key, by, def, 0);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def) {
+        return mutate(OperationType.DECR, key, by, def, 0);
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def) {
+        return mutate(OperationType.DECR, key, by, def, 0);
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return new CommandMono<>(connection(key), actual -> new TextCommands.Delete(actual, recorder, key));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key, long cas) {
+        return Mono.error(new UnsupportedOperationException("The text protocol does not support delete with CAS"));
+    }
+
+    @Override
+    public Mono<Boolean> flush(int delay) {
+        return Flux.fromIterable(nodes)
+                .flatMap(connections -> new CommandMono<Boolean>(connections[0],
+                        actual -> new TextCommands.Flush(actual, recorder, delay)), nodes.size())
+                .all(Boolean::booleanValue);
+    }
+
+    @Override
+    public Mono<Boolean> flush() {
+        return flush(-1);
+    }
+
+    /**
+     * Closes every connection, failing any operation still outstanding.
+     */
+    @Override
+    public void close() {
+        try {
+            for (NioEventLoop eventLoop : eventLoops) {
+                eventLoop.shutdown(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> Mono<Boolean> store(OperationType type, String key, int exp, T value, Transcoder<T> tc) {
+        return new CommandMono<>(connection(key),
+                actual -> new TextCommands.Store(actual, type, recorder, key, exp, tc.encode(value)));
+    }
+
+    private Mono<Boolean> store(OperationType type, String key, int exp, ByteBuffer value) {
+        return new CommandMono<>(connection(key), actual ->
+                new TextCommands.Store(actual, type, recorder, key, exp, ByteBufferTranscoder.FLAGS, value));
+    }
+
+    private Mono<Long> mutate(OperationType type, String key, long by) {
+        return new CommandMono<>(connection(key),
+                actual -> new TextCommands.Arithmetic(actual, type, recorder, key, by));
+    }
+
+    /**
+     * The text protocol has no default for {@code incr} and {@code decr}, so, as spymemcached does, a missing counter
+     * is created with {@code add} and the mutation retried if another client created it first.
+     */
+    private Mono<Long> mutate(OperationType type, String key, long by, long def, int exp) {
+        return mutate(type, key, by).flatMap(value -> value != -1 ? Mono.just(value) :
+                addCounter(key, def, exp).flatMap(added -> added ? Mono.just(def) : mutate(type, key, by)));
+    }
+
+    private Mono<Boolean> addCounter(String key, long value, int exp) {
+        CachedData data = new CachedData(0, Long.toString(value).getBytes(StandardCharsets.US_ASCII),
+                CachedData.MAX_SIZE);
+        return new CommandMono<>(connection(key),
+                actual -> new TextCommands.Store(actual, OperationType.ADD, recorder, key, exp, data));
+    }
+
+    private <T> Mono<Map<String, T>> bulkGet(Collection<String> keys, Function<String, Transcoder<T>> tcs) {
+        return bulkGetPerNode(keys, tcs).reduce((values, nodeValues) -> {
+            Map<String, T> merged = new HashMap<>(values);
+            merged.putAll(nodeValues);
+            return merged;
+        }).defaultIfEmpty(Collections.emptyMap());
+    }
+
+    private <T> Flux<Map<String, T>> bulkGetPerNode(Collection<String> keys, Function<String, Transcoder<T>> tcs) {
+        Map<NioConnection, List<String>> keysByConnection = groupByConnection(keys);
+        return Flux.fromIterable(keysByConnection.entrySet())
+                .flatMap(connectionKeys -> new CommandMono<>(connectionKeys.getKey(),
+                                actual -> new TextCommands.BulkGet<>(actual, recorder, connectionKeys.getValue(), tcs)),
+                        Math.max(keysByConnection.size(), 1));
+    }
+
+    private Map<NioConnection, List<String>> groupByConnection(Collection<String> keys) {
+        Map<NioConnection, List<String>> keysByConnection = new LinkedHashMap<>();
+        for (String key : keys) {
+            keysByConnection.computeIfAbsent(connection(key), ignored -> new ArrayList<>()).add(key);
+        }
+        return keysByConnection;
+    }
+
+    private NioConnection connection(String key) {
+        long hash = DefaultHashAlgorithm.NATIVE_HASH.hash(key);
+        NioConnection[] connections = nodes.get((int) (hash % nodes.size()));
+        // the same key always uses the same connection, so operations on it are not reordered
+        return connections[(int) (hash / nodes.size() % connections.length)];
+    }
+
+    private static List<String> toList(Iterator<String> keys) {
+        List<String> list = new ArrayList<>();
+        keys.forEachRemaining(list::add);
+        return list;
+    }
+
+    public static class Builder {
+        private final List<InetSocketAddress> addresses;
+        private int eventLoops = Runtime.getRuntime().availableProcessors();
+        private int connectionsPerNode = 1;
+        private int maxOutstanding = 16_384;
+        private Duration reconnectDelay = Duration.ofSeconds(1);
+        private Transcoder<Object> transcoder = new SerializingTranscoder();
+        private OperationRecorder operationRecorder = OperationRecorder.NOOP;
+
+        private Builder(List<InetSocketAddress> addresses) {
+            if (addresses.isEmpty()) {
+                throw new IllegalArgumentException("At least one server address is required");
+            }
+            this.addresses = new ArrayList<>(addresses);
+        }
+
+        /**
+         * The number of selector threads the connections are spread over, by default the number of processors but
+         * never more than the number of connections.
+         */
+        public Builder eventLoops(int eventLoops) {
+            if (eventLoops < 1) {
+                throw new IllegalArgumentException("Number of event loops must be positive");
+            }
+            this.eventLoops = eventLoops;
+            return this;
+        }
+
+        /**
+         * The number of connections opened to each server, one by default. Each key always uses the same connection.
+         */
+        public Builder connectionsPerNode(int connectionsPerNode) {
+            if (connectionsPerNode < 1) {
+                throw new IllegalArgumentException("Number of connections per node must be positive");
+            }
+            this.connectionsPerNode = connectionsPerNode;
+            return this;
+        }
+
+        /**
+         * The number of operations which may be queued or awaiting a response on one connection, beyond which
+         * operations fail with an {@link IllegalStateException}.
+         */
+        public Builder maxOutstanding(int maxOutstanding) {
+            if (maxOutstanding < 1) {
+                throw new IllegalArgumentException("Maximum outstanding operations must be positive");
+            }
+            this.maxOutstanding = maxOutstanding;
+            return this;
+        }
+
+        /**
+         * How long to wait before reconnecting a failed connection, one second by default.
+         */
+        public Builder reconnectDelay(Duration reconnectDelay) {
+            this.reconnectDelay = reconnectDelay;
+            return this;
+        }
+
+        /**
+         * The transcoder used when none is given, a {@link SerializingTranscoder} by default.
+         */
+        public Builder transcoder(Transcoder<Object> transcoder) {
+            this.transcoder = transcoder;
+            return this;
+        }
+
+        /**
+         * Receives the latency and outcome of every operation issued, none by default.
+         */
+        public Builder operationRecorder(OperationRecorder operationRecorder) {
+            this.operationRecorder = operationRecorder;
+            return this;
+        }
+
+        /**
+         * Opens the connections, without waiting for them to be established.
+         */
+        public NioMemcachedOperations build() {
+            return new NioMemcachedOperations(this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package spymemcached.reactive;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the failure rate of the operations sent to one node. Once at least the minimum number of operations have
+ * completed within a window and the failure rate reaches the threshold, the breaker opens and rejects operations for
+ * the open duration. It then lets a single probe through: the breaker closes if the probe succeeds and opens again if
+ * it fails.
+ */
+class NodeCircuitBreaker {
+
+    enum Permit {
+        REJECTED, GRANTED, PROBE
+    }
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final long windowNanos;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicReference<Window> window;
+    private volatile long openedAt;
+
+    NodeCircuitBreaker(long windowNanos, int minimumCalls, double failureRateThreshold, long openNanos) {
+        this.windowNanos = windowNanos;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openNanos;
+        this.window = new AtomicReference<>(new Window(System.nanoTime()));
+    }
+
+    boolean isOpen() {
+        return state.get() != CLOSED;
+    }
+
+    Permit acquire() {
+        int current = state.get();
+        if (current == CLOSED) {
+            return Permit.GRANTED;
+        }
+        if (current == OPEN && System.nanoTime() - openedAt >= openNanos && state.compareAndSet(OPEN, HALF_OPEN)) {
+            return Permit.PROBE;
+        }
+        return Permit.REJECTED;
+    }
+
+    void onSuccess(Permit permit) {
+        if (permit == Permit.PROBE) {
+            window.set(new Window(System.nanoTime()));
+            state.set(CLOSED);
+        } else {
+            currentWindow().calls.increment();
+        }
+    }
+
+    void onFailure(Permit permit) {
+        if (permit == Permit.PROBE) {
+            open(System.nanoTime());
+            return;
+        }
+        Window current = currentWindow();
+        current.calls.increment();
+        current.failures.increment();
+        long calls = current.calls.sum();
+        if (calls >= minimumCalls && current.failures.sum() >= calls * failureRateThreshold
+                && state.get() == CLOSED) {
+            open(System.nanoTime());
+        }
+    }
+
+    /**
+     * Called when an operation is cancelled, in which case its outcome is unknown. A cancelled probe lets the next
+     * operation probe straight away.
+     */
+    void onCancel(Permit permit) {
+        if (permit == Permit.PROBE) {
+            open(System.nanoTime() - openNanos);
+        }
+    }
+
+    private void open(long at) {
+        openedAt = at;
+        state.set(OPEN);
+    }
+
+    private Window currentWindow() {
+        Window current = window.get();
+        long now = System.nanoTime();
+        if (now - current.start >= windowNanos) {
+            Window next = new Window(now);
+            return window.compareAndSet(current, next) ? next : window.get();
+        }
+        return current;
+    }
+
+    private static class Window {
+        private final long start;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+}
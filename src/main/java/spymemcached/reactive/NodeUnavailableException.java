@@ -0,0 +1,24 @@
+package spymemcached.reactive;
+
+import java.net.SocketAddress;
+
+/**
+ * Signalled instead of sending an operation to a node whose circuit breaker is open.
+ *
+ * @see CircuitBreakingMemcachedOperations
+ */
+public class NodeUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SocketAddress node;
+
+    public NodeUnavailableException(SocketAddress node) {
+        super("Circuit breaker for " + node + " is open");
+        this.node = node;
+    }
+
+    public SocketAddress node() {
+        return node;
+    }
+}
@@ -0,0 +1,49 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.internal.OperationCompletionListener;
+import net.spy.memcached.internal.OperationFuture;
+import reactor.core.CoreSubscriber;
+
+import java.util.function.Supplier;
+
+/**
+ * Adapts an {@link OperationFuture} to a {@link reactor.core.publisher.Mono}.
+ */
+class OperationFutureMono<T> extends FutureMono<T, OperationFuture<T>> {
+
+    OperationFutureMono(OperationType type,
+                        int keyCount,
+                        Supplier<OperationFuture<T>> futureCreator,
+                        FutureMonoSettings settings) {
+        super(type, keyCount, futureCreator, settings);
+    }
+
+    @Override
+    FutureSubscription<T, OperationFuture<T>> subscription(CoreSubscriber<? super T> actual,
+                                                           OperationType type,
+                                                           int keyCount,
+                                                           FutureMonoSettings settings) {
+        return new OperationFutureSubscription<>(actual, type, keyCount, settings);
+    }
+
+    private static class OperationFutureSubscription<T> extends FutureSubscription<T, OperationFuture<T>>
+            implements OperationCompletionListener {
+
+        OperationFutureSubscription(CoreSubscriber<? super T> actual,
+                                    OperationType type,
+                                    int keyCount,
+                                    FutureMonoSettings settings) {
+            super(actual, type, keyCount, settings);
+        }
+
+        @Override
+        void addListener(OperationFuture<T> future) {
+            future.addListener(this);
+        }
+
+        @Override
+        public void onComplete(OperationFuture<?> future) {
+            onFutureComplete();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+
+import java.util.Map;
+
+/**
+ * How an operation issued by {@link ReactiveMemcachedTemplate} finished.
+ */
+public enum OperationOutcome {
+    /**
+     * The operation completed and found or stored its value.
+     */
+    SUCCESS,
+    /**
+     * The operation completed but found nothing or did not store anything: a lookup without a value, an empty bulk
+     * lookup, a {@code false} result, a {@link CASResponse#NOT_FOUND} or an {@code incr}/{@code decr} of a missing
+     * key.
+     */
+    MISS,
+    /**
+     * The operation failed, could not be issued or was abandoned once its {@link Deadline} passed.
+     */
+    ERROR,
+    /**
+     * The subscriber cancelled before the operation completed.
+     */
+    CANCEL;
+
+    static OperationOutcome of(Object result) {
+        if (result == null ||
+                Boolean.FALSE.equals(result) ||
+                CASResponse.NOT_FOUND == result ||
+                (result instanceof Long && (Long) result == -1L) ||
+                (result instanceof Map && ((Map<?, ?>) result).isEmpty())) {
+            return MISS;
+        }
+        return SUCCESS;
+    }
+}
@@ -0,0 +1,25 @@
+package spymemcached.reactive;
+
+/**
+ * Receives the timing and outcome of every operation issued by {@link ReactiveMemcachedTemplate}. It is called on the
+ * thread which completes the operation, usually one of spymemcached's listener threads, so implementations must be
+ * thread-safe and cheap.
+ *
+ * @see LatencyHistogramRecorder
+ */
+@FunctionalInterface
+public interface OperationRecorder {
+
+    OperationRecorder NOOP = (type, keyCount, startNanos, latencyNanos, outcome) -> {
+    };
+
+    /**
+     * @param type         the kind of operation
+     * @param keyCount     the number of keys the operation covered, 1 for single key operations, 0 for flush and -1
+     *                     when the keys were given as an iterator
+     * @param startNanos   the {@link System#nanoTime()} at which the operation was issued
+     * @param latencyNanos the time from issuing the operation until it completed, failed or was cancelled
+     * @param outcome      how the operation finished
+     */
+    void record(OperationType type, int keyCount, long startNanos, long latencyNanos, OperationOutcome outcome);
+}
@@ -0,0 +1,36 @@
+package spymemcached.reactive;
+
+/**
+ * The kinds of memcached operation issued by {@link ReactiveMemcachedTemplate}, as reported to an
+ * {@link OperationRecorder}.
+ */
+public enum OperationType {
+    GET("get"),
+    GETS("gets"),
+    GET_AND_TOUCH("gats"),
+    GET_BULK("get"),
+    ADD("add"),
+    SET("set"),
+    REPLACE("replace"),
+    APPEND("append"),
+    PREPEND("prepend"),
+    CAS("cas"),
+    TOUCH("touch"),
+    INCR("incr"),
+    DECR("decr"),
+    DELETE("delete"),
+    FLUSH("flush_all");
+
+    private final String command;
+
+    OperationType(String command) {
+        this.command = command;
+    }
+
+    /**
+     * The text protocol command which performs this operation.
+     */
+    String command() {
+        return command;
+    }
+}
@@ -0,0 +1,68 @@
+package spymemcached.reactive;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Backs the bulk gets with a deadline, which look up each group of keys separately, typically the keys held by one
+ * node, so that a group which fails or overruns the deadline only affects its own keys.
+ */
+final class PartialBulkGets {
+
+    private PartialBulkGets() {
+    }
+
+    static <T> Mono<BulkGetResult<T>> getBulk(Collection<List<String>> keyGroups,
+                                              Duration deadline,
+                                              Function<List<String>, Mono<Map<String, T>>> getBulk) {
+        return Flux.fromIterable(keyGroups)
+                .filter(keys -> !keys.isEmpty())
+                .flatMap(keys -> getBulk.apply(keys)
+                        .timeout(deadline)
+                        .defaultIfEmpty(new HashMap<>())
+                        .map(values -> new GroupResult<>(keys, values, null))
+                        .onErrorResume(e -> Mono.just(new GroupResult<>(keys, null, e))),
+                        Math.max(keyGroups.size(), 1))
+                .collectList()
+                .map(PartialBulkGets::combine);
+    }
+
+    private static <T> BulkGetResult<T> combine(List<GroupResult<T>> groups) {
+        Map<String, T> values = new HashMap<>();
+        Set<String> missed = new HashSet<>();
+        Map<String, Throwable> failures = new HashMap<>();
+        for (GroupResult<T> group : groups) {
+            for (String key : group.keys) {
+                if (group.error != null) {
+                    failures.put(key, group.error);
+                } else if (group.values.containsKey(key)) {
+                    values.put(key, group.values.get(key));
+                } else {
+                    missed.add(key);
+                }
+            }
+        }
+        return new BulkGetResult<>(values, missed, failures);
+    }
+
+    private static class GroupResult<T> {
+        private final List<String> keys;
+        private final Map<String, T> values;
+        private final Throwable error;
+
+        GroupResult(List<String> keys, Map<String, T> values, Throwable error) {
+            this.keys = keys;
+            this.values = values;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Spreads operations over a pool of {@link ReactiveMemcachedOperations}, typically templates over separate
+ * {@link MemcachedClient} instances connected to the same servers, since each client does all of its IO on a single
+ * thread which can saturate before the network or memcached do.
+ * <p>
+ * With {@link Selection#KEY_AFFINITY} every operation on a key goes through the same member, so operations on a key
+ * are still sent in the order they are issued. With {@link Selection#LEAST_OUTSTANDING} each operation goes through
+ * whichever member has the fewest operations outstanding, which evens out load better but may reorder operations on
+ * the same key. Operations spanning several keys and {@code flush} always go through the least loaded member.
+ */
+public class PooledMemcachedOperations implements ReactiveMemcachedOperations {
+
+    public enum Selection {
+        KEY_AFFINITY, LEAST_OUTSTANDING
+    }
+
+    private final Member[] members;
+    private final Selection selection;
+
+    public PooledMemcachedOperations(List<? extends ReactiveMemcachedOperations> members, Selection selection) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("The pool must have at least one member");
+        }
+        this.members = members.stream().map(Member::new).toArray(Member[]::new);
+        this.selection = selection;
+    }
+
+    /**
+     * Pools a {@link ReactiveMemcachedTemplate} created by {@code factory} for each client, for example
+     * {@code client -> ReactiveMemcachedTemplate.builder(client).operationRecorder(recorder).build()}.
+     */
+    public static PooledMemcachedOperations ofClients(Collection<? extends MemcachedClient> clients,
+                                                      Function<MemcachedClient, ReactiveMemcachedTemplate> factory,
+                                                      Selection selection) {
+        List<ReactiveMemcachedOperations> members = new ArrayList<>(clients.size());
+        for (MemcachedClient client : clients) {
+            members.add(factory.apply(client));
+        }
+        return new PooledMemcachedOperations(members, selection);
+    }
+
+    /**
+     * The number of operations outstanding through each member, in pool order.
+     */
+    public int[] outstanding() {
+        int[] outstanding = new int[members.length];
+        for (int i = 0; i < members.length; i++) {
+            outstanding[i] = members[i].outstanding.get();
+        }
+        return outstanding;
+    }
+
+    @Override
+    public Mono<Boolean> append(long cas, String key, Object val) {
+        return route(key, operations -> operations.append(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> append(String key, Object val) {
+        return route(key, operations -> operations.append(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(long cas, String key, T val, Transcoder<T> tc) {
+        return route(key, operations -> operations.append(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(String key, T val, Transcoder<T> tc) {
+        return route(key, operations -> operations.append(key, val, tc));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(long cas, String key, Object val) {
+        return route(key, operations -> operations.prepend(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(String key, Object val) {
+        return route(key, operations -> operations.prepend(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(long cas, String key, T val, Transcoder<T> tc) {
+        return route(key, operations -> operations.prepend(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(String key, T val, Transcoder<T> tc) {
+        return route(key, operations -> operations.prepend(key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, T value, Transcoder<T> tc) {
+        return route(key, operations -> operations.cas(key, casId, value, tc));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, Object value) {
+        return route(key, operations -> operations.cas(key, casId, value));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, int exp, Object value) {
+        return route(key, operations -> operations.cas(key, casId, exp, value));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc) {
+        return route(key, operations -> operations.cas(key, casId, exp, value, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> add(String key, int exp, T o, Transcoder<T> tc) {
+        return route(key, operations -> operations.add(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, Object o) {
+        return route(key, operations -> operations.add(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, ByteBuffer value) {
+        return route(key, operations -> operations.add(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<Boolean> set(String key, int exp, T o, Transcoder<T> tc) {
+        return route(key, operations -> operations.set(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, Object o) {
+        return route(key, operations -> operations.set(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return route(key, operations -> operations.set(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<Boolean> replace(String key, int exp, T o, Transcoder<T> tc) {
+        return route(key, operations -> operations.replace(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, Object o) {
+        return route(key, operations -> operations.replace(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, ByteBuffer value) {
+        return route(key, operations -> operations.replace(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<T> get(String key, Transcoder<T> tc) {
+        return route(key, operations -> operations.get(key, tc));
+    }
+
+    @Override
+    public Mono<Object> get(String key) {
+        return route(key, operations -> operations.get(key));
+    }
+
+    @Override
+    public Mono<ByteBuffer> getBuffer(String key) {
+        return route(key, operations -> operations.getBuffer(key));
+    }
+
+    @Override
+    public Mono<CASValue<Object>> getAndTouch(String key, int exp) {
+        return route(key, operations -> operations.getAndTouch(key, exp));
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> getAndTouch(String key, int exp, Transcoder<T> tc) {
+        return route(key, operations -> operations.getAndTouch(key, exp, tc));
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> gets(String key, Transcoder<T> tc) {
+        return route(key, operations -> operations.gets(key, tc));
+    }
+
+    @Override
+    public Mono<CASValue<Object>> gets(String key) {
+        return route(key, operations -> operations.gets(key));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Iterator<Transcoder<T>> tcs) {
+        return route(null, operations -> operations.getBulk(keys, tcs));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Iterator<Transcoder<T>> tcs) {
+        return route(null, operations -> operations.getBulk(keys, tcs));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Transcoder<T> tc) {
+        return route(null, operations -> operations.getBulk(keys, tc));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Transcoder<T> tc) {
+        return route(null, operations -> operations.getBulk(keys, tc));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Iterator<String> keys) {
+        return route(null, operations -> operations.getBulk(keys));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Collection<String> keys) {
+        return route(null, operations -> operations.getBulk(keys));
+    }
+
+    @Override
+    public Mono<Map<String, ByteBuffer>> getBulkBuffers(Collection<String> keys) {
+        return route(null, operations -> operations.getBulkBuffers(keys));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Transcoder<T> tc, String... keys) {
+        return route(null, operations -> operations.getBulk(tc, keys));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(String... keys) {
+        return route(null, operations -> operations.getBulk(keys));
+    }
+
+    @Override
+    public <T> Mono<BulkGetResult<T>> getBulk(Collection<String> keys, Transcoder<T> tc, Duration deadline) {
+        return route(null, operations -> operations.getBulk(keys, tc, deadline));
+    }
+
+    @Override
+    public Mono<BulkGetResult<Object>> getBulk(Collection<String> keys, Duration deadline) {
+        return route(null, operations -> operations.getBulk(keys, deadline));
+    }
+
+    @Override
+    public <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return routeMany(operations -> operations.streamBulk(keys, tc));
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return routeMany(operations -> operations.streamBulk(keys));
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp, Transcoder<T> tc) {
+        return route(key, operations -> operations.touch(key, exp, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp) {
+        return route(key, operations -> operations.touch(key, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by) {
+        return route(key, operations -> operations.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by) {
+        return route(key, operations -> operations.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by) {
+        return route(key, operations -> operations.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by) {
+        return route(key, operations -> operations.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def, int exp) {
+        return route(key, operations -> operations.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def, int exp) {
+        return route(key, operations -> operations.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def, int exp) {
+        return route(key, operations -> operations.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def, int exp) {
+        return route(key, operations -> operations.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def) {
+        return route(key, operations -> operations.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def) {
+        return route(key, operations -> operations.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def) {
+        return route(key, operations -> operations.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def) {
+        return route(key, operations -> operations.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return route(key, operations -> operations.delete(key));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key, long cas) {
+        return route(key, operations -> operations.delete(key, cas));
+    }
+
+    @Override
+    public Mono<Boolean> flush(int delay) {
+        return route(null, operations -> operations.flush(delay));
+    }
+
+    @Override
+    public Mono<Boolean> flush() {
+        return route(null, operations -> operations.flush());
+    }
+
+    private <T> Mono<T> route(String key, Function<ReactiveMemcachedOperations, Mono<T>> operation) {
+        return Mono.defer(() -> {
+            Member member = key != null && selection == Selection.KEY_AFFINITY ? byKey(key) : leastOutstanding();
+            member.outstanding.incrementAndGet();
+            return operation.apply(member.operations).doFinally(ignored -> member.outstanding.decrementAndGet());
+        });
+    }
+
+    private <T> Flux<T> routeMany(Function<ReactiveMemcachedOperations, Flux<T>> operation) {
+        return Flux.defer(() -> {
+            Member member = leastOutstanding();
+            member.outstanding.incrementAndGet();
+            return operation.apply(member.operations).doFinally(ignored -> member.outstanding.decrementAndGet());
+        });
+    }
+
+    private Member byKey(String key) {
+        int hash = key.hashCode();
+        return members[Math.floorMod(hash ^ (hash >>> 16), members.length)];
+    }
+
+    /**
+     * Compares two members picked at random rather than scanning them all, which balances nearly as well without
+     * every caller contending on the least loaded member's counter.
+     */
+    private Member leastOutstanding() {
+        if (members.length == 1) {
+            return members[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(members.length);
+        int second = random.nextInt(members.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        return members[first].outstanding.get() <= members[second].outstanding.get()
+                ? members[first]
+                : members[second];
+    }
+
+    private static class Member {
+        private final ReactiveMemcachedOperations operations;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        Member(ReactiveMemcachedOperations operations) {
+            this.operations = operations;
+        }
+    }
+}
@@ -4,11 +4,18 @@ import net.spy.memcached.CASResponse;
 import net.spy.memcached.CASValue;
 import net.spy.memcached.MemcachedClientIF;
 import net.spy.memcached.transcoders.Transcoder;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * @see MemcachedClientIF
@@ -74,6 +81,46 @@ public interface ReactiveMemcachedOperations {
      */
     <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc);
 
+    /**
+     * Applies {@code mutator} to the current value and stores the result if no other client has changed the value
+     * since it was read, otherwise reads the value and applies {@code mutator} again, as {@code retry} allows.
+     * Completes with the value stored, or empty if there is no value to update.
+     *
+     * @param mutator computes the new value from the current one; it may be applied several times and must not
+     *                return null
+     */
+    default <T> Mono<T> casUpdate(String key, int exp, Function<T, T> mutator, Transcoder<T> tc, CasRetry retry) {
+        return CasUpdates.update(key, mutator, retry, () -> gets(key, tc),
+                (casId, value) -> cas(key, casId, exp, value, tc));
+    }
+
+    /**
+     * Updates the value using the given transcoder, as {@link #casUpdate(String, int, Function, Transcoder, CasRetry)}
+     * does with {@link CasRetry#DEFAULT}.
+     */
+    default <T> Mono<T> casUpdate(String key, int exp, Function<T, T> mutator, Transcoder<T> tc) {
+        return casUpdate(key, exp, mutator, tc, CasRetry.DEFAULT);
+    }
+
+    /**
+     * Updates the value using the default transcoder, as
+     * {@link #casUpdate(String, int, Function, Transcoder, CasRetry)} does.
+     */
+    @SuppressWarnings("unchecked")
+    default <T> Mono<T> casUpdate(String key, int exp, Function<T, T> mutator, CasRetry retry) {
+        return CasUpdates.update(key, mutator, retry,
+                () -> gets(key).map(value -> (CASValue<T>) (CASValue<?>) value),
+                (casId, value) -> cas(key, casId, exp, value));
+    }
+
+    /**
+     * Updates the value using the default transcoder, as
+     * {@link #casUpdate(String, int, Function, Transcoder, CasRetry)} does with {@link CasRetry#DEFAULT}.
+     */
+    default <T> Mono<T> casUpdate(String key, int exp, Function<T, T> mutator) {
+        return casUpdate(key, exp, mutator, CasRetry.DEFAULT);
+    }
+
     /**
      * @see MemcachedClientIF#add(String, int, Object, Transcoder)
      */
@@ -84,6 +131,13 @@ public interface ReactiveMemcachedOperations {
      */
     Mono<Boolean> add(String key, int exp, Object o);
 
+    /**
+     * Adds the remaining bytes of {@code value}, as {@link ByteBufferTranscoder} stores them.
+     */
+    default Mono<Boolean> add(String key, int exp, ByteBuffer value) {
+        return add(key, exp, value, ByteBufferTranscoder.INSTANCE);
+    }
+
     /**
      * @see MemcachedClientIF#set(String, int, Object, Transcoder)
      */
@@ -94,6 +148,35 @@ public interface ReactiveMemcachedOperations {
      */
     Mono<Boolean> set(String key, int exp, Object o);
 
+    /**
+     * Sets the remaining bytes of {@code value}, as {@link ByteBufferTranscoder} stores them.
+     */
+    default Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return set(key, exp, value, ByteBufferTranscoder.INSTANCE);
+    }
+
+    /**
+     * Stores every entry, keeping at most {@code maxInFlight} sets outstanding and only requesting further entries
+     * from {@code entries} as earlier sets complete. A set rejected because the client's operation queue is full is
+     * retried after a short backoff. A result is emitted for each key as its set completes, and a failed set is
+     * reported in its result rather than terminating the stream.
+     *
+     * @see SetSummary#summarize(Publisher)
+     */
+    default Flux<SetResult> setAll(Publisher<? extends Map.Entry<String, ?>> entries, int exp, int maxInFlight) {
+        return BulkWrites.<Object>setAll(entries, maxInFlight, (key, value) -> set(key, exp, value));
+    }
+
+    /**
+     * Stores every entry using the given transcoder, as {@link #setAll(Publisher, int, int)}.
+     */
+    default <T> Flux<SetResult> setAll(Publisher<? extends Map.Entry<String, ? extends T>> entries,
+                                       int exp,
+                                       int maxInFlight,
+                                       Transcoder<T> tc) {
+        return BulkWrites.<T>setAll(entries, maxInFlight, (key, value) -> set(key, exp, value, tc));
+    }
+
     /**
      * @see MemcachedClientIF#replace(String, int, Object, Transcoder)
      */
@@ -104,6 +187,13 @@ public interface ReactiveMemcachedOperations {
      */
     Mono<Boolean> replace(String key, int exp, Object o);
 
+    /**
+     * Replaces the value with the remaining bytes of {@code value}, as {@link ByteBufferTranscoder} stores them.
+     */
+    default Mono<Boolean> replace(String key, int exp, ByteBuffer value) {
+        return replace(key, exp, value, ByteBufferTranscoder.INSTANCE);
+    }
+
     /**
      * @see MemcachedClientIF#asyncGet(String, Transcoder)
      */
@@ -114,6 +204,40 @@ public interface ReactiveMemcachedOperations {
      */
     Mono<Object> get(String key);
 
+    /**
+     * Gets the value as a buffer wrapping the bytes read, without deserializing it.
+     *
+     * @see ByteBufferTranscoder
+     */
+    default Mono<ByteBuffer> getBuffer(String key) {
+        return get(key, ByteBufferTranscoder.INSTANCE);
+    }
+
+    /**
+     * Gets the value, computing and storing it with {@code loader} if there is none, guarding against many readers
+     * recomputing a popular value at once. Readers occasionally recompute a value shortly before it goes stale after
+     * {@code exp} seconds, more often the longer it took to compute, and only the reader holding a short lease does
+     * so; everyone else, or the lease holder if {@code loader} fails, is served the stale value meanwhile. Readers
+     * which miss while another holds the lease wait for its value.
+     * <p>
+     * The value is stored with its expiry and compute time for {@code 2 * exp} seconds, so it should only be read and
+     * written through this method.
+     *
+     * @param exp the number of seconds until the value goes stale, at most 30 days, or 0 for never
+     */
+    default <T> Mono<T> getOrCompute(String key, int exp, Mono<T> loader, Transcoder<T> tc) {
+        return CacheAside.getOrCompute(this, key, exp, loader, tc);
+    }
+
+    /**
+     * Gets the value as {@link #getOrCompute(String, int, Mono, Transcoder)} does, serializing it as
+     * {@link net.spy.memcached.transcoders.SerializingTranscoder} does.
+     */
+    @SuppressWarnings("unchecked")
+    default <T> Mono<T> getOrCompute(String key, int exp, Mono<T> loader) {
+        return getOrCompute(key, exp, loader, (Transcoder<T>) CacheAside.SERIALIZING);
+    }
+
     /**
      * @see MemcachedClientIF#asyncGetAndTouch(String, int)
      */
@@ -164,6 +288,15 @@ public interface ReactiveMemcachedOperations {
      */
     Mono<Map<String, Object>> getBulk(Collection<String> keys);
 
+    /**
+     * Gets the values as buffers wrapping the bytes read, without deserializing them.
+     *
+     * @see ByteBufferTranscoder
+     */
+    default Mono<Map<String, ByteBuffer>> getBulkBuffers(Collection<String> keys) {
+        return getBulk(keys, ByteBufferTranscoder.INSTANCE);
+    }
+
     /**
      * @see MemcachedClientIF#asyncGetBulk(Transcoder, String...)
      */
@@ -174,6 +307,67 @@ public interface ReactiveMemcachedOperations {
      */
     Mono<Map<String, Object>> getBulk(String... keys);
 
+    /**
+     * Retrieves the given keys, emitting the entries held by each node as soon as that node responds rather than
+     * waiting for every node as {@link #getBulk(Collection, Transcoder)} does. Keys which are not found are not
+     * emitted. By default this emits the entries of {@link #getBulk(Collection, Transcoder)} once every node has
+     * responded, for implementations which cannot tell the nodes' responses apart.
+     *
+     * @see MemcachedClientIF#asyncGetBulk(Collection, Transcoder)
+     */
+    default <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return getBulk(keys, tc).flatMapIterable(Map::entrySet);
+    }
+
+    /**
+     * Retrieves the given keys, emitting the entries held by each node as soon as that node responds rather than
+     * waiting for every node as {@link #getBulk(Collection)} does. Keys which are not found are not emitted. By
+     * default this emits the entries of {@link #getBulk(Collection)} once every node has responded.
+     *
+     * @see MemcachedClientIF#asyncGetBulk(Collection)
+     */
+    default Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return getBulk(keys).flatMapIterable(Map::entrySet);
+    }
+
+    /**
+     * Retrieves the given keys, completing once every lookup has completed or {@code deadline} has passed, whichever
+     * is first. Rather than failing as a whole, keys whose lookup failed or was still outstanding at the deadline are
+     * reported as failures in the result alongside the values found. Implementations which know the node holding
+     * each key look up each node's keys separately, so a failing node only affects its own keys.
+     */
+    default <T> Mono<BulkGetResult<T>> getBulk(Collection<String> keys, Transcoder<T> tc, Duration deadline) {
+        return PartialBulkGets.getBulk(Collections.singletonList(new ArrayList<>(keys)), deadline,
+                group -> getBulk(group, tc));
+    }
+
+    /**
+     * Retrieves the given keys using the default transcoder, as {@link #getBulk(Collection, Transcoder, Duration)}.
+     */
+    default Mono<BulkGetResult<Object>> getBulk(Collection<String> keys, Duration deadline) {
+        return PartialBulkGets.getBulk(Collections.singletonList(new ArrayList<>(keys)), deadline, this::getBulk);
+    }
+
+    /**
+     * Retrieves a stream of keys of any length, as bulk gets of up to {@code batchSize} keys with at most
+     * {@code maxInFlight} of them outstanding. Keys are only requested from {@code keys} as downstream demand and
+     * completed batches allow, so neither the keys nor the values need fit in memory at once. Entries are emitted as
+     * each batch completes, not in key order, and keys which are not found are not emitted.
+     */
+    default Flux<Map.Entry<String, Object>> getMany(Publisher<String> keys, int batchSize, int maxInFlight) {
+        return BulkReads.getMany(keys, batchSize, maxInFlight, this::getBulk);
+    }
+
+    /**
+     * Retrieves a stream of keys using the given transcoder, as {@link #getMany(Publisher, int, int)}.
+     */
+    default <T> Flux<Map.Entry<String, T>> getMany(Publisher<String> keys,
+                                                   int batchSize,
+                                                   int maxInFlight,
+                                                   Transcoder<T> tc) {
+        return BulkReads.getMany(keys, batchSize, maxInFlight, batch -> getBulk(batch, tc));
+    }
+
     /**
      * @see MemcachedClientIF#touch(String, int, Transcoder)
      */
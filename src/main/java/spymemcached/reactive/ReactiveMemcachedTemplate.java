@@ -1,328 +1,551 @@
 package spymemcached.reactive;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import net.spy.memcached.CASResponse;
 import net.spy.memcached.CASValue;
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.NodeLocator;
 import net.spy.memcached.internal.BulkFuture;
 import net.spy.memcached.internal.GetFuture;
 import net.spy.memcached.internal.OperationFuture;
 import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.MonoSink;
-
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.function.BiConsumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class ReactiveMemcachedTemplate implements ReactiveMemcachedOperations {
 
+    private static final int UNKNOWN_KEY_COUNT = -1;
+    /**
+     * The number of transcoders whose gets are batched separately before the batchers of the least used are dropped.
+     */
+    private static final int MAX_GET_BATCHERS = 64;
+
     private final MemcachedClient memcachedClient;
+    private final FutureMono.FutureMonoSettings futureMonoSettings;
+    private final boolean coalesceGets;
+    private final Map<Map.Entry<String, Transcoder<?>>, InFlightGet<?>> inFlightGets = new ConcurrentHashMap<>();
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+    private final Scheduler batchScheduler;
+    private final GetBatcher<Object> defaultGetBatcher;
+    private final Cache<Transcoder<?>, GetBatcher<?>> getBatchers = Caffeine.newBuilder()
+            .executor(Runnable::run)
+            .maximumSize(MAX_GET_BATCHERS)
+            .build();
+    private final HotKeyTracker hotKeyTracker;
 
     public ReactiveMemcachedTemplate(MemcachedClient memcachedClient) {
-        this.memcachedClient = memcachedClient;
+        this(builder(memcachedClient));
+    }
+
+    private ReactiveMemcachedTemplate(Builder builder) {
+        this.memcachedClient = builder.memcachedClient;
+        this.futureMonoSettings =
+                new FutureMono.FutureMonoSettings(builder.operationRecorder, builder.completionScheduler,
+                        builder.deadlineScheduler);
+        this.coalesceGets = builder.coalesceGets;
+        this.batchWindow = builder.batchWindow;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.batchScheduler = builder.batchScheduler;
+        this.hotKeyTracker = builder.hotKeyTracker;
+        this.defaultGetBatcher = batchWindow == null ? null :
+                new GetBatcher<>(keys -> fromBulkFuture(keys.size(), () -> memcachedClient.asyncGetBulk(keys)),
+                        batchWindow, maxBatchSize, batchScheduler);
+    }
+
+    public static Builder builder(MemcachedClient memcachedClient) {
+        return new Builder(memcachedClient);
     }
 
     @Override
     public Mono<Boolean> append(long cas, String key, Object val) {
-        return fromOperationFuture(() -> memcachedClient.append(cas, key, val));
+        return fromOperationFuture(OperationType.APPEND, () -> memcachedClient.append(cas, key, val));
     }
 
     @Override
     public Mono<Boolean> append(String key, Object val) {
-        return fromOperationFuture(() -> memcachedClient.append(key, val));
+        return fromOperationFuture(OperationType.APPEND, () -> memcachedClient.append(key, val));
     }
 
     @Override
     public <T> Mono<Boolean> append(long cas, String key, T val, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.append(cas, key, val, tc));
+        return fromOperationFuture(OperationType.APPEND, () -> memcachedClient.append(cas, key, val, tc));
     }
 
     @Override
     public <T> Mono<Boolean> append(String key, T val, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.append(key, val, tc));
+        return fromOperationFuture(OperationType.APPEND, () -> memcachedClient.append(key, val, tc));
     }
 
     @Override
     public Mono<Boolean> prepend(long cas, String key, Object val) {
-        return fromOperationFuture(() -> memcachedClient.prepend(cas, key, val));
+        return fromOperationFuture(OperationType.PREPEND, () -> memcachedClient.prepend(cas, key, val));
     }
 
     @Override
     public Mono<Boolean> prepend(String key, Object val) {
-        return fromOperationFuture(() -> memcachedClient.prepend(key, val));
+        return fromOperationFuture(OperationType.PREPEND, () -> memcachedClient.prepend(key, val));
     }
 
     @Override
     public <T> Mono<Boolean> prepend(long cas, String key, T val, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.prepend(cas, key, val, tc));
+        return fromOperationFuture(OperationType.PREPEND, () -> memcachedClient.prepend(cas, key, val, tc));
     }
 
     @Override
     public <T> Mono<Boolean> prepend(String key, T val, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.prepend(key, val, tc));
+        return fromOperationFuture(OperationType.PREPEND, () -> memcachedClient.prepend(key, val, tc));
     }
 
     @Override
     public <T> Mono<CASResponse> cas(String key, long casId, T value, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.asyncCAS(key, casId, value, tc));
+        return fromOperationFuture(OperationType.CAS, () -> memcachedClient.asyncCAS(key, casId, value, tc));
     }
 
     @Override
     public Mono<CASResponse> cas(String key, long casId, Object value) {
-        return fromOperationFuture(() -> memcachedClient.asyncCAS(key, casId, value));
+        return fromOperationFuture(OperationType.CAS, () -> memcachedClient.asyncCAS(key, casId, value));
     }
 
     @Override
     public Mono<CASResponse> cas(String key, long casId, int exp, Object value) {
-        return fromOperationFuture(() -> memcachedClient.asyncCAS(key, casId, exp, value));
+        return fromOperationFuture(OperationType.CAS, () -> memcachedClient.asyncCAS(key, casId, exp, value));
     }
 
     @Override
     public <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.asyncCAS(key, casId, exp, value, tc));
+        return fromOperationFuture(OperationType.CAS, () -> memcachedClient.asyncCAS(key, casId, exp, value, tc));
     }
 
     @Override
     public <T> Mono<Boolean> add(String key, int exp, T o, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.add(key, exp, o, tc));
+        return fromOperationFuture(OperationType.ADD, () -> memcachedClient.add(key, exp, o, tc));
     }
 
     @Override
     public Mono<Boolean> add(String key, int exp, Object o) {
-        return fromOperationFuture(() -> memcachedClient.add(key, exp, o));
+        return fromOperationFuture(OperationType.ADD, () -> memcachedClient.add(key, exp, o));
     }
 
     @Override
     public <T> Mono<Boolean> set(String key, int exp, T o, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.set(key, exp, o, tc));
+        return trackHotKey(key, fromOperationFuture(OperationType.SET, () -> memcachedClient.set(key, exp, o, tc)));
     }
 
     @Override
     public Mono<Boolean> set(String key, int exp, Object o) {
-        return fromOperationFuture(() -> memcachedClient.set(key, exp, o));
+        return trackHotKey(key, fromOperationFuture(OperationType.SET, () -> memcachedClient.set(key, exp, o)));
     }
 
     @Override
     public <T> Mono<Boolean> replace(String key, int exp, T o, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.replace(key, exp, o, tc));
+        return fromOperationFuture(OperationType.REPLACE, () -> memcachedClient.replace(key, exp, o, tc));
     }
 
     @Override
     public Mono<Boolean> replace(String key, int exp, Object o) {
-        return fromOperationFuture(() -> memcachedClient.replace(key, exp, o));
+        return fromOperationFuture(OperationType.REPLACE, () -> memcachedClient.replace(key, exp, o));
     }
 
     @Override
     public <T> Mono<T> get(String key, Transcoder<T> tc) {
-        return fromGetFuture(() -> memcachedClient.asyncGet(key, tc));
+        Mono<T> get = batchWindow != null ?
+                getBatcher(tc).get(key) :
+                fromGetFuture(OperationType.GET, () -> memcachedClient.asyncGet(key, tc));
+        return trackHotKey(key, coalesceGets ? coalesce(key, tc, get) : withDeadline(get));
     }
 
     @Override
     public Mono<Object> get(String key) {
-        return fromGetFuture(() -> memcachedClient.asyncGet(key));
+        Mono<Object> get = defaultGetBatcher != null ?
+                defaultGetBatcher.get(key) :
+                fromGetFuture(OperationType.GET, () -> memcachedClient.asyncGet(key));
+        return trackHotKey(key, coalesceGets ? coalesce(key, null, get) : withDeadline(get));
     }
 
     @Override
     public Mono<CASValue<Object>> getAndTouch(String key, int exp) {
-        return fromOperationFuture(() -> memcachedClient.asyncGetAndTouch(key, exp));
+        return fromOperationFuture(OperationType.GET_AND_TOUCH, () -> memcachedClient.asyncGetAndTouch(key, exp));
     }
 
     @Override
     public <T> Mono<CASValue<T>> getAndTouch(String key, int exp, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.asyncGetAndTouch(key, exp, tc));
+        return fromOperationFuture(OperationType.GET_AND_TOUCH, () -> memcachedClient.asyncGetAndTouch(key, exp, tc));
     }
 
     @Override
     public <T> Mono<CASValue<T>> gets(String key, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.asyncGets(key, tc));
+        return fromOperationFuture(OperationType.GETS, () -> memcachedClient.asyncGets(key, tc));
     }
 
     @Override
     public Mono<CASValue<Object>> gets(String key) {
-        return fromOperationFuture(() -> memcachedClient.asyncGets(key));
+        return fromOperationFuture(OperationType.GETS, () -> memcachedClient.asyncGets(key));
     }
 
     @Override
     public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Iterator<Transcoder<T>> tcs) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(keys, tcs));
+        return fromBulkFuture(UNKNOWN_KEY_COUNT, () -> memcachedClient.asyncGetBulk(keys, tcs));
     }
 
     @Override
     public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Iterator<Transcoder<T>> tcs) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(keys, tcs));
+        return trackHotKeys(keys, fromBulkFuture(keys.size(), () -> memcachedClient.asyncGetBulk(keys, tcs)));
     }
 
     @Override
     public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Transcoder<T> tc) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(keys, tc));
+        return fromBulkFuture(UNKNOWN_KEY_COUNT, () -> memcachedClient.asyncGetBulk(keys, tc));
     }
 
     @Override
     public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Transcoder<T> tc) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(keys, tc));
+        return trackHotKeys(keys, fromBulkFuture(keys.size(), () -> memcachedClient.asyncGetBulk(keys, tc)));
     }
 
     @Override
     public Mono<Map<String, Object>> getBulk(Iterator<String> keys) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(keys));
+        return fromBulkFuture(UNKNOWN_KEY_COUNT, () -> memcachedClient.asyncGetBulk(keys));
     }
 
     @Override
     public Mono<Map<String, Object>> getBulk(Collection<String> keys) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(keys));
+        return trackHotKeys(keys, fromBulkFuture(keys.size(), () -> memcachedClient.asyncGetBulk(keys)));
     }
 
     @Override
     public <T> Mono<Map<String, T>> getBulk(Transcoder<T> tc, String... keys) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(tc, keys));
+        return trackHotKeys(Arrays.asList(keys),
+                fromBulkFuture(keys.length, () -> memcachedClient.asyncGetBulk(tc, keys)));
     }
 
     @Override
     public Mono<Map<String, Object>> getBulk(String... keys) {
-        return fromBulkFuture(() -> memcachedClient.asyncGetBulk(keys));
+        return trackHotKeys(Arrays.asList(keys),
+                fromBulkFuture(keys.length, () -> memcachedClient.asyncGetBulk(keys)));
+    }
+
+    @Override
+    public <T> Mono<BulkGetResult<T>> getBulk(Collection<String> keys, Transcoder<T> tc, Duration deadline) {
+        return trackHotKeys(keys, Mono.defer(() -> PartialBulkGets.getBulk(groupByPrimaryNode(keys), deadline,
+                nodeKeys -> fromBulkFuture(nodeKeys.size(), () -> memcachedClient.asyncGetBulk(nodeKeys, tc)))));
+    }
+
+    @Override
+    public Mono<BulkGetResult<Object>> getBulk(Collection<String> keys, Duration deadline) {
+        return trackHotKeys(keys, Mono.defer(() -> PartialBulkGets.getBulk(groupByPrimaryNode(keys), deadline,
+                nodeKeys -> fromBulkFuture(nodeKeys.size(), () -> memcachedClient.asyncGetBulk(nodeKeys)))));
+    }
+
+    @Override
+    public <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return trackHotKeys(keys,
+                fromBulkFuturePerNode(keys, nodeKeys -> memcachedClient.asyncGetBulk(nodeKeys, tc)));
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return trackHotKeys(keys, fromBulkFuturePerNode(keys, memcachedClient::asyncGetBulk));
     }
 
     @Override
     public <T> Mono<Boolean> touch(String key, int exp, Transcoder<T> tc) {
-        return fromOperationFuture(() -> memcachedClient.touch(key, exp, tc));
+        return fromOperationFuture(OperationType.TOUCH, () -> memcachedClient.touch(key, exp, tc));
     }
 
     @Override
     public <T> Mono<Boolean> touch(String key, int exp) {
-        return fromOperationFuture(() -> memcachedClient.touch(key, exp));
+        return fromOperationFuture(OperationType.TOUCH, () -> memcachedClient.touch(key, exp));
     }
 
     @Override
     public Mono<Long> incr(String key, long by) {
-        return fromOperationFuture(() -> memcachedClient.asyncIncr(key, by));
+        return fromOperationFuture(OperationType.INCR, () -> memcachedClient.asyncIncr(key, by));
     }
 
     @Override
     public Mono<Long> incr(String key, int by) {
-        return fromOperationFuture(() -> memcachedClient.asyncIncr(key, by));
+        return fromOperationFuture(OperationType.INCR, () -> memcachedClient.asyncIncr(key, by));
     }
 
     @Override
     public Mono<Long> decr(String key, long by) {
-        return fromOperationFuture(() -> memcachedClient.asyncDecr(key, by));
+        return fromOperationFuture(OperationType.DECR, () -> memcachedClient.asyncDecr(key, by));
     }
 
     @Override
     public Mono<Long> decr(String key, int by) {
-        return fromOperationFuture(() -> memcachedClient.asyncDecr(key, by));
+        return fromOperationFuture(OperationType.DECR, () -> memcachedClient.asyncDecr(key, by));
     }
 
     @Override
     public Mono<Long> incr(String key, long by, long def, int exp) {
-        return fromOperationFuture(() -> memcachedClient.asyncIncr(key, by, def, exp));
+        return fromOperationFuture(OperationType.INCR, () -> memcachedClient.asyncIncr(key, by, def, exp));
     }
 
     @Override
     public Mono<Long> incr(String key, int by, long def, int exp) {
-        return fromOperationFuture(() -> memcachedClient.asyncIncr(key, by, def, exp));
+        return fromOperationFuture(OperationType.INCR, () -> memcachedClient.asyncIncr(key, by, def, exp));
     }
 
     @Override
     public Mono<Long> decr(String key, long by, long def, int exp) {
-        return fromOperationFuture(() -> memcachedClient.asyncDecr(key, by, def, exp));
+        return fromOperationFuture(OperationType.DECR, () -> memcachedClient.asyncDecr(key, by, def, exp));
     }
 
     @Override
     public Mono<Long> decr(String key, int by, long def, int exp) {
-        return fromOperationFuture(() -> memcachedClient.asyncDecr(key, by, def, exp));
+        return fromOperationFuture(OperationType.DECR, () -> memcachedClient.asyncDecr(key, by, def, exp));
     }
 
     @Override
     public Mono<Long> incr(String key, long by, long def) {
-        return fromOperationFuture(() -> memcachedClient.asyncIncr(key, by, def));
+        return fromOperationFuture(OperationType.INCR, () -> memcachedClient.asyncIncr(key, by, def));
     }
 
     @Override
     public Mono<Long> incr(String key, int by, long def) {
-        return fromOperationFuture(() -> memcachedClient.asyncIncr(key, by, def));
+        return fromOperationFuture(OperationType.INCR, () -> memcachedClient.asyncIncr(key, by, def));
     }
 
     @Override
     public Mono<Long> decr(String key, long by, long def) {
-        return fromOperationFuture(() -> memcachedClient.asyncDecr(key, by, def));
+        return fromOperationFuture(OperationType.DECR, () -> memcachedClient.asyncDecr(key, by, def));
     }
 
     @Override
     public Mono<Long> decr(String key, int by, long def) {
-        return fromOperationFuture(() -> memcachedClient.asyncDecr(key, by, def));
+        return fromOperationFuture(OperationType.DECR, () -> memcachedClient.asyncDecr(key, by, def));
     }
 
     @Override
     public Mono<Boolean> delete(String key) {
-        return fromOperationFuture(() -> memcachedClient.delete(key));
+        return fromOperationFuture(OperationType.DELETE, () -> memcachedClient.delete(key));
     }
 
     @Override
     public Mono<Boolean> delete(String key, long cas) {
-        return fromOperationFuture(() -> memcachedClient.delete(key, cas));
+        return fromOperationFuture(OperationType.DELETE, () -> memcachedClient.delete(key, cas));
     }
 
     @Override
     public Mono<Boolean> flush(int delay) {
-        return fromOperationFuture(() -> memcachedClient.flush(delay));
+        return fromOperationFuture(OperationType.FLUSH, 0, () -> memcachedClient.flush(delay));
     }
 
     @Override
     public Mono<Boolean> flush() {
-        return fromOperationFuture(memcachedClient::flush);
+        return fromOperationFuture(OperationType.FLUSH, 0, memcachedClient::flush);
     }
 
-    private <T> Mono<T> fromOperationFuture(Supplier<OperationFuture<T>> futureCreator) {
-        return toMono(futureCreator, (sink, future) -> {
-            try {
-                future.addListener(ignored -> pipeToSync(future, sink));
-            } catch (RuntimeException e) {
-                sink.error(e);
-            }
-        });
+    /**
+     * Records the key with the hot key tracker each time the operation is subscribed to, which is when it is issued.
+     */
+    private <T> Mono<T> trackHotKey(String key, Mono<T> operation) {
+        return hotKeyTracker == null ? operation : operation.doOnSubscribe(ignored -> hotKeyTracker.record(key));
     }
 
-    private <T> Mono<T> fromGetFuture(Supplier<GetFuture<T>> futureCreator) {
-        return toMono(futureCreator, (sink, future) -> {
-            try {
-                future.addListener(ignored -> pipeToSync(future, sink));
-            } catch (RuntimeException e) {
-                sink.error(e);
-            }
-        });
+    private <T> Mono<T> trackHotKeys(Collection<String> keys, Mono<T> operation) {
+        return hotKeyTracker == null ? operation : operation.doOnSubscribe(ignored -> recordHotKeys(keys));
     }
 
-    private <T> Mono<T> fromBulkFuture(Supplier<BulkFuture<T>> futureCreator) {
-        return toMono(futureCreator, (sink, future) -> {
-            try {
-                future.addListener(ignored -> pipeToSync(future, sink));
-            } catch (RuntimeException e) {
-                sink.error(e);
-            }
-        });
+    private <T> Flux<T> trackHotKeys(Collection<String> keys, Flux<T> operation) {
+        return hotKeyTracker == null ? operation : operation.doOnSubscribe(ignored -> recordHotKeys(keys));
     }
 
-    private <T, F extends Future<T>> Mono<T> toMono(Supplier<F> futureCreator, BiConsumer<MonoSink<T>, F> callback) {
-        return Mono.create(sink -> {
-            F future = futureCreator.get();
-            sink = sink.onCancel(() -> future.cancel(true));
-            callback.accept(sink, future);
+    private void recordHotKeys(Collection<String> keys) {
+        for (String key : keys) {
+            hotKeyTracker.record(key);
+        }
+    }
+
+    private <T> GetBatcher<T> getBatcher(Transcoder<T> tc) {
+        @SuppressWarnings("unchecked")
+        GetBatcher<T> batcher = (GetBatcher<T>) getBatchers.get(tc, ignored -> new GetBatcher<>(
+                keys -> fromBulkFuture(keys.size(), () -> memcachedClient.asyncGetBulk(keys, tc)),
+                batchWindow, maxBatchSize, batchScheduler));
+        return batcher;
+    }
+
+    private <T> Mono<T> coalesce(String key, Transcoder<?> tc, Mono<T> get) {
+        Map.Entry<String, Transcoder<?>> id = new SimpleImmutableEntry<>(key, tc);
+        return Mono.defer(() -> {
+            @SuppressWarnings("unchecked")
+            InFlightGet<T> inFlightGet =
+                    (InFlightGet<T>) inFlightGets.computeIfAbsent(id, ignored -> new InFlightGet<>(id, get));
+            return inFlightGet.result;
+        }).transform(Deadline::apply);
+    }
+
+    /**
+     * Batched gets are issued outside of the subscriber's context, so the deadline is applied around them instead.
+     */
+    private <T> Mono<T> withDeadline(Mono<T> get) {
+        return batchWindow != null ? Deadline.apply(get) : get;
+    }
+
+    private <T> Mono<T> fromOperationFuture(OperationType type, Supplier<OperationFuture<T>> futureCreator) {
+        return fromOperationFuture(type, 1, futureCreator);
+    }
+
+    private <T> Mono<T> fromOperationFuture(OperationType type, int keyCount, Supplier<OperationFuture<T>> futureCreator) {
+        return new OperationFutureMono<>(type, keyCount, futureCreator, futureMonoSettings);
+    }
+
+    private <T> Mono<T> fromGetFuture(OperationType type, Supplier<GetFuture<T>> futureCreator) {
+        return new GetFutureMono<>(type, 1, futureCreator, futureMonoSettings);
+    }
+
+    private <T> Mono<T> fromBulkFuture(int keyCount, Supplier<BulkFuture<T>> futureCreator) {
+        return new BulkFutureMono<>(OperationType.GET_BULK, keyCount, futureCreator, futureMonoSettings);
+    }
+
+    private <T> Flux<Map.Entry<String, T>> fromBulkFuturePerNode(Collection<String> keys,
+                                                                Function<Collection<String>, BulkFuture<Map<String, T>>> futureCreator) {
+        return Flux.defer(() -> {
+            Collection<List<String>> keysByNode = groupByPrimaryNode(keys);
+            return Flux.fromIterable(keysByNode)
+                    .flatMap(nodeKeys -> fromBulkFuture(nodeKeys.size(), () -> futureCreator.apply(nodeKeys)),
+                            Math.max(keysByNode.size(), 1))
+                    .flatMapIterable(Map::entrySet);
         });
     }
 
-    private <T> void pipeToSync(Future<T> future, MonoSink<T> sink) {
-        assert future.isDone();
-        if (future.isCancelled()) {
-            return;
+    private Collection<List<String>> groupByPrimaryNode(Collection<String> keys) {
+        NodeLocator locator = memcachedClient.getNodeLocator();
+        Map<SocketAddress, List<String>> keysByNode = new HashMap<>();
+        for (String key : keys) {
+            SocketAddress node = locator.getPrimary(key).getSocketAddress();
+            keysByNode.computeIfAbsent(node, ignored -> new ArrayList<>()).add(key);
+        }
+        return keysByNode.values();
+    }
+
+    /**
+     * A lookup shared by every subscriber which asks for the same key and transcoder while it is outstanding. The
+     * underlying future is only cancelled once all of those subscribers have cancelled, and each subscriber's deadline
+     * only applies to that subscriber.
+     */
+    private class InFlightGet<T> {
+        private final Mono<T> result;
+
+        InFlightGet(Map.Entry<String, Transcoder<?>> id, Mono<T> get) {
+            this.result = Mono.from(get
+                    .subscriberContext(Deadline::without)
+                    .doFinally(ignored -> inFlightGets.remove(id, this))
+                    .flux()
+                    .replay(1)
+                    .refCount());
+        }
+    }
+
+    public static class Builder {
+        private final MemcachedClient memcachedClient;
+        private OperationRecorder operationRecorder = OperationRecorder.NOOP;
+        private Scheduler completionScheduler = Schedulers.immediate();
+        private boolean coalesceGets;
+        private Duration batchWindow;
+        private int maxBatchSize;
+        private Scheduler batchScheduler = Schedulers.parallel();
+        private Scheduler deadlineScheduler = Schedulers.parallel();
+        private HotKeyTracker hotKeyTracker;
+
+        private Builder(MemcachedClient memcachedClient) {
+            this.memcachedClient = memcachedClient;
+        }
+
+        /**
+         * Receives the latency and outcome of every operation issued, none by default.
+         *
+         * @see LatencyHistogramRecorder
+         */
+        public Builder operationRecorder(OperationRecorder operationRecorder) {
+            this.operationRecorder = operationRecorder;
+            return this;
         }
-        try {
-            sink.success(future.get());
-        } catch (ExecutionException | InterruptedException e) {
-            sink.error(e.getCause() == null ? e : e.getCause());
+
+        /**
+         * The scheduler on which operation results are signalled. By default they are signalled inline on the
+         * spymemcached listener thread, so slow downstream work delays the completion of other operations. A scheduler
+         * from {@link CompletionSchedulers#boundedHandOff} moves that work off the listener thread.
+         */
+        public Builder completionScheduler(Scheduler completionScheduler) {
+            this.completionScheduler = completionScheduler;
+            return this;
+        }
+
+        /**
+         * When enabled, concurrent {@code get} calls for the same key and transcoder share a single lookup rather than
+         * each issuing their own. Subscribers which share a lookup receive the same value instance.
+         */
+        public Builder coalesceGets(boolean coalesceGets) {
+            this.coalesceGets = coalesceGets;
+            return this;
+        }
+
+        /**
+         * When enabled, single key {@code get} calls are collected and issued together as one bulk get once
+         * {@code window} has elapsed since the first of them, or as soon as {@code maxBatchSize} keys are pending.
+         * Each caller still receives only the value for its own key. Gets with a transcoder are batched separately
+         * for each transcoder instance, so transcoders should be reused rather than created for each call; only the
+         * batchers of a bounded number of transcoders are kept.
+         */
+        public Builder batchGets(Duration window, int maxBatchSize) {
+            if (window.isNegative()) {
+                throw new IllegalArgumentException("Batch window must not be negative");
+            }
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("Maximum batch size must be positive");
+            }
+            this.batchWindow = window;
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * The scheduler used to time the batch window, {@link Schedulers#parallel()} by default.
+         */
+        public Builder batchScheduler(Scheduler batchScheduler) {
+            this.batchScheduler = batchScheduler;
+            return this;
+        }
+
+        /**
+         * The scheduler used to time the {@link Deadline} of operations, {@link Schedulers#parallel()} by default.
+         */
+        public Builder deadlineScheduler(Scheduler deadlineScheduler) {
+            this.deadlineScheduler = deadlineScheduler;
+            return this;
+        }
+
+        /**
+         * Samples the keys passed to {@code get}, {@code getBulk}, {@code streamBulk} and {@code set} to find the
+         * hottest ones, none by default. Bulk gets given an iterator of keys are not sampled.
+         */
+        public Builder hotKeyTracker(HotKeyTracker hotKeyTracker) {
+            this.hotKeyTracker = hotKeyTracker;
+            return this;
+        }
+
+        public ReactiveMemcachedTemplate build() {
+            return new ReactiveMemcachedTemplate(this);
         }
     }
 
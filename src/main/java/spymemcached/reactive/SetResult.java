@@ -0,0 +1,57 @@
+package spymemcached.reactive;
+
+/**
+ * The outcome of storing a single entry as part of
+ * {@link ReactiveMemcachedOperations#setAll(org.reactivestreams.Publisher, int, int)}.
+ */
+public class SetResult {
+
+    private final String key;
+    private final boolean stored;
+    private final Throwable error;
+
+    private SetResult(String key, boolean stored, Throwable error) {
+        this.key = key;
+        this.stored = stored;
+        this.error = error;
+    }
+
+    static SetResult completed(String key, boolean stored) {
+        return new SetResult(key, stored, null);
+    }
+
+    static SetResult failed(String key, Throwable error) {
+        return new SetResult(key, false, error);
+    }
+
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Whether memcached acknowledged the entry as stored.
+     */
+    public boolean isStored() {
+        return stored;
+    }
+
+    /**
+     * Whether the set could not be issued or did not complete, in which case {@link #error()} holds the cause.
+     */
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public Throwable error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "SetResult{" +
+                "key='" + key + '\'' +
+                ", stored=" + stored +
+                ", error=" + error +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package spymemcached.reactive;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aggregated counts of the outcomes of a bulk write, for callers which do not need the result of each key.
+ */
+public class SetSummary {
+
+    private final long stored;
+    private final long notStored;
+    private final long failed;
+
+    SetSummary(long stored, long notStored, long failed) {
+        this.stored = stored;
+        this.notStored = notStored;
+        this.failed = failed;
+    }
+
+    public static Mono<SetSummary> summarize(Publisher<SetResult> results) {
+        return Flux.from(results)
+                .collect(() -> new long[3], (counts, result) -> {
+                    if (result.isFailed()) {
+                        counts[2]++;
+                    } else if (result.isStored()) {
+                        counts[0]++;
+                    } else {
+                        counts[1]++;
+                    }
+                })
+                .map(counts -> new SetSummary(counts[0], counts[1], counts[2]));
+    }
+
+    public long stored() {
+        return stored;
+    }
+
+    public long notStored() {
+        return notStored;
+    }
+
+    public long failed() {
+        return failed;
+    }
+
+    public long total() {
+        return stored + notStored + failed;
+    }
+
+    @Override
+    public String toString() {
+        return "SetSummary{" +
+                "stored=" + stored +
+                ", notStored=" + notStored +
+                ", failed=" + failed +
+                '}';
+    }
+}
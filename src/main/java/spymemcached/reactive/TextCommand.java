@@ -0,0 +1,144 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.ops.OperationErrorType;
+import net.spy.memcached.ops.OperationException;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Operators;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A memcached text protocol request together with the subscriber awaiting its response. The request is encoded on
+ * the subscribing thread; the response is decoded, and the subscriber signalled, on the connection's event loop.
+ * <p>
+ * Responses arrive in request order, so a connection hands incoming bytes to its oldest outstanding command until
+ * that command reports its response complete. A cancelled command still consumes its response, it just no longer
+ * signals it.
+ */
+abstract class TextCommand<T> extends Operators.MonoSubscriber<T, T> {
+
+    static final byte[] CRLF = {'\r', '\n'};
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<TextCommand> TERMINATED =
+            AtomicIntegerFieldUpdater.newUpdater(TextCommand.class, "terminated");
+
+    private final OperationType type;
+    private final int keyCount;
+    private final OperationRecorder recorder;
+    private final long start;
+
+    private volatile int terminated;
+
+    TextCommand(CoreSubscriber<? super T> actual, OperationType type, int keyCount, OperationRecorder recorder) {
+        super(actual);
+        this.type = type;
+        this.keyCount = keyCount;
+        this.recorder = recorder;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Adds the buffers making up the request, in order, ready to be written.
+     */
+    abstract void encode(Collection<? super ByteBuffer> out);
+
+    /**
+     * Consumes as much of the response as is available from {@code in}.
+     *
+     * @return whether the response is complete, in which case the subscriber has been signalled
+     * @throws OperationException if the response cannot be parsed, after which the connection can no longer be used
+     */
+    abstract boolean decode(ByteBuffer in) throws OperationException;
+
+    final void succeed(T value) {
+        if (TERMINATED.compareAndSet(this, 0, 1)) {
+            record(OperationOutcome.of(value));
+            if (value == null) {
+                actual.onComplete();
+            } else {
+                complete(value);
+            }
+        }
+    }
+
+    final void fail(Throwable e) {
+        if (TERMINATED.compareAndSet(this, 0, 1)) {
+            record(OperationOutcome.ERROR);
+            actual.onError(e);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        if (TERMINATED.compareAndSet(this, 0, 1)) {
+            record(OperationOutcome.CANCEL);
+        }
+    }
+
+    private void record(OperationOutcome outcome) {
+        recorder.record(type, keyCount, start, System.nanoTime() - start, outcome);
+    }
+
+    /**
+     * Fails this command if {@code line} is one of the generic error replies.
+     *
+     * @return whether it was
+     */
+    final boolean failOnError(String line) {
+        if (line.equals("ERROR")) {
+            fail(new OperationException(OperationErrorType.GENERAL, line));
+        } else if (line.startsWith("CLIENT_ERROR ")) {
+            fail(new OperationException(OperationErrorType.CLIENT, line.substring(13)));
+        } else if (line.startsWith("SERVER_ERROR ")) {
+            fail(new OperationException(OperationErrorType.SERVER, line.substring(13)));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    static OperationException unexpected(String line) {
+        return new OperationException(OperationErrorType.GENERAL, "Unexpected response: " + line);
+    }
+
+    /**
+     * Reads the next line without its terminating CRLF, or returns null without consuming anything if the line is not
+     * complete yet.
+     */
+    static String readLine(ByteBuffer in) {
+        for (int i = in.position(); i < in.limit() - 1; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n') {
+                byte[] line = new byte[i - in.position()];
+                in.get(line);
+                in.position(i + 2);
+                return new String(line, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a data block of the given length and its terminating CRLF, or returns null without consuming anything if
+     * the block is not complete yet.
+     */
+    static byte[] readData(ByteBuffer in, int length) throws OperationException {
+        if (in.remaining() < length + CRLF.length) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.get(data);
+        if (in.get() != '\r' || in.get() != '\n') {
+            throw new OperationException(OperationErrorType.GENERAL, "Data block not terminated by CRLF");
+        }
+        return data;
+    }
+
+    static ByteBuffer request(String line) {
+        return ByteBuffer.wrap((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,423 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.CachedData;
+import net.spy.memcached.ops.OperationException;
+import net.spy.memcached.transcoders.Transcoder;
+import net.spy.memcached.util.StringUtils;
+import reactor.core.CoreSubscriber;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The memcached text protocol commands used by {@link NioMemcachedOperations}.
+ */
+final class TextCommands {
+
+    private TextCommands() {
+    }
+
+    static String validKey(String key) {
+        StringUtils.validateKey(key, false);
+        return key;
+    }
+
+    private static String storageLine(String command, String key, int flags, int exp, ByteBuffer data) {
+        return command + " " + key + " " + Integer.toUnsignedString(flags) + " " + exp + " " + data.remaining();
+    }
+
+    /**
+     * A command whose response is a single line.
+     */
+    abstract static class SingleLine<T> extends TextCommand<T> {
+
+        SingleLine(CoreSubscriber<? super T> actual, OperationType type, OperationRecorder recorder) {
+            this(actual, type, 1, recorder);
+        }
+
+        SingleLine(CoreSubscriber<? super T> actual, OperationType type, int keyCount, OperationRecorder recorder) {
+            super(actual, type, keyCount, recorder);
+        }
+
+        @Override
+        final boolean decode(ByteBuffer in) throws OperationException {
+            String line = readLine(in);
+            if (line == null) {
+                return false;
+            }
+            if (!failOnError(line)) {
+                succeed(parse(line));
+            }
+            return true;
+        }
+
+        abstract T parse(String line) throws OperationException;
+    }
+
+    /**
+     * {@code set}, {@code add}, {@code replace}, {@code append} and {@code prepend}.
+     */
+    static class Store extends SingleLine<Boolean> {
+        private final ByteBuffer header;
+        private final ByteBuffer data;
+
+        Store(CoreSubscriber<? super Boolean> actual,
+              OperationType type,
+              OperationRecorder recorder,
+              String key,
+              int exp,
+              CachedData data) {
+            this(actual, type, recorder, key, exp, data.getFlags(), ByteBuffer.wrap(data.getData()));
+        }
+
+        /**
+         * Stores the remaining bytes of {@code data}, which are written to the connection as they are.
+         */
+        Store(CoreSubscriber<? super Boolean> actual,
+              OperationType type,
+              OperationRecorder recorder,
+              String key,
+              int exp,
+              int flags,
+              ByteBuffer data) {
+            super(actual, type, recorder);
+            this.header = request(storageLine(type.command(), validKey(key), flags, exp, data));
+            this.data = data.duplicate();
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(header);
+            out.add(data);
+            out.add(ByteBuffer.wrap(CRLF));
+        }
+
+        @Override
+        Boolean parse(String line) throws OperationException {
+            switch (line) {
+                case "STORED":
+                    return true;
+                case "NOT_STORED":
+                case "EXISTS":
+                case "NOT_FOUND":
+                    return false;
+                default:
+                    throw unexpected(line);
+            }
+        }
+    }
+
+    static class Cas extends SingleLine<CASResponse> {
+        private final ByteBuffer header;
+        private final ByteBuffer data;
+
+        Cas(CoreSubscriber<? super CASResponse> actual,
+            OperationRecorder recorder,
+            String key,
+            long casId,
+            int exp,
+            CachedData data) {
+            super(actual, OperationType.CAS, recorder);
+            this.data = ByteBuffer.wrap(data.getData());
+            this.header = request(storageLine("cas", validKey(key), data.getFlags(), exp, this.data) + " "
+                    + Long.toUnsignedString(casId));
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(header);
+            out.add(data);
+            out.add(ByteBuffer.wrap(CRLF));
+        }
+
+        @Override
+        CASResponse parse(String line) throws OperationException {
+            switch (line) {
+                case "STORED":
+                    return CASResponse.OK;
+                case "EXISTS":
+                    return CASResponse.EXISTS;
+                case "NOT_FOUND":
+                    return CASResponse.NOT_FOUND;
+                default:
+                    throw unexpected(line);
+            }
+        }
+    }
+
+    static class Touch extends SingleLine<Boolean> {
+        private final ByteBuffer request;
+
+        Touch(CoreSubscriber<? super Boolean> actual, OperationRecorder recorder, String key, int exp) {
+            super(actual, OperationType.TOUCH, recorder);
+            this.request = request("touch " + validKey(key) + " " + exp);
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(request);
+        }
+
+        @Override
+        Boolean parse(String line) throws OperationException {
+            switch (line) {
+                case "TOUCHED":
+                    return true;
+                case "NOT_FOUND":
+                    return false;
+                default:
+                    throw unexpected(line);
+            }
+        }
+    }
+
+    static class Delete extends SingleLine<Boolean> {
+        private final ByteBuffer request;
+
+        Delete(CoreSubscriber<? super Boolean> actual, OperationRecorder recorder, String key) {
+            super(actual, OperationType.DELETE, recorder);
+            this.request = request("delete " + validKey(key));
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(request);
+        }
+
+        @Override
+        Boolean parse(String line) throws OperationException {
+            switch (line) {
+                case "DELETED":
+                    return true;
+                case "NOT_FOUND":
+                    return false;
+                default:
+                    throw unexpected(line);
+            }
+        }
+    }
+
+    /**
+     * {@code incr} and {@code decr}, which like spymemcached report a missing key as -1.
+     */
+    static class Arithmetic extends SingleLine<Long> {
+        private final ByteBuffer request;
+
+        Arithmetic(CoreSubscriber<? super Long> actual, OperationType type, OperationRecorder recorder, String key,
+                   long by) {
+            super(actual, type, recorder);
+            this.request = request(type.command() + " " + validKey(key) + " " + by);
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(request);
+        }
+
+        @Override
+        Long parse(String line) throws OperationException {
+            if (line.equals("NOT_FOUND")) {
+                return -1L;
+            }
+            try {
+                return Long.parseUnsignedLong(line.trim());
+            } catch (NumberFormatException e) {
+                throw unexpected(line);
+            }
+        }
+    }
+
+    static class Flush extends SingleLine<Boolean> {
+        private final ByteBuffer request;
+
+        Flush(CoreSubscriber<? super Boolean> actual, OperationRecorder recorder, int delay) {
+            super(actual, OperationType.FLUSH, 0, recorder);
+            this.request = request(delay > 0 ? "flush_all " + delay : "flush_all");
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(request);
+        }
+
+        @Override
+        Boolean parse(String line) throws OperationException {
+            if (!line.equals("OK")) {
+                throw unexpected(line);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A command whose response is any number of {@code VALUE} blocks followed by {@code END}.
+     */
+    abstract static class Retrieval<T> extends TextCommand<T> {
+        private String key;
+        private int flags;
+        private int length = -1;
+        private long cas;
+        private RuntimeException decodeFailure;
+
+        Retrieval(CoreSubscriber<? super T> actual, OperationType type, int keyCount, OperationRecorder recorder) {
+            super(actual, type, keyCount, recorder);
+        }
+
+        @Override
+        final boolean decode(ByteBuffer in) throws OperationException {
+            while (true) {
+                if (length < 0) {
+                    String line = readLine(in);
+                    if (line == null) {
+                        return false;
+                    }
+                    if (line.equals("END")) {
+                        if (decodeFailure != null) {
+                            fail(decodeFailure);
+                        } else {
+                            succeed(result());
+                        }
+                        return true;
+                    }
+                    if (failOnError(line)) {
+                        return true;
+                    }
+                    parseHeader(line);
+                }
+                byte[] data = readData(in, length);
+                if (data == null) {
+                    return false;
+                }
+                length = -1;
+                try {
+                    value(key, cas, new CachedData(flags, data, CachedData.MAX_SIZE));
+                } catch (RuntimeException e) {
+                    // the rest of the response must still be consumed
+                    decodeFailure = e;
+                }
+            }
+        }
+
+        private void parseHeader(String line) throws OperationException {
+            String[] parts = line.split(" ");
+            if (parts.length < 4 || !parts[0].equals("VALUE")) {
+                throw unexpected(line);
+            }
+            try {
+                key = parts[1];
+                flags = (int) Long.parseLong(parts[2]);
+                length = Integer.parseInt(parts[3]);
+                cas = parts.length > 4 ? Long.parseUnsignedLong(parts[4]) : 0;
+            } catch (NumberFormatException e) {
+                throw unexpected(line);
+            }
+        }
+
+        abstract void value(String key, long cas, CachedData data);
+
+        abstract T result();
+    }
+
+    static class Get<T> extends Retrieval<T> {
+        private final ByteBuffer request;
+        private final Transcoder<T> tc;
+        private T value;
+
+        Get(CoreSubscriber<? super T> actual, OperationRecorder recorder, String key, Transcoder<T> tc) {
+            super(actual, OperationType.GET, 1, recorder);
+            this.request = request("get " + validKey(key));
+            this.tc = tc;
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(request);
+        }
+
+        @Override
+        void value(String key, long cas, CachedData data) {
+            value = tc.decode(data);
+        }
+
+        @Override
+        T result() {
+            return value;
+        }
+    }
+
+    /**
+     * {@code gets}, or {@code gats} when given an expiration.
+     */
+    static class Gets<T> extends Retrieval<CASValue<T>> {
+        private final ByteBuffer request;
+        private final Transcoder<T> tc;
+        private CASValue<T> value;
+
+        Gets(CoreSubscriber<? super CASValue<T>> actual, OperationRecorder recorder, String key, Transcoder<T> tc) {
+            super(actual, OperationType.GETS, 1, recorder);
+            this.request = request("gets " + validKey(key));
+            this.tc = tc;
+        }
+
+        Gets(CoreSubscriber<? super CASValue<T>> actual, OperationRecorder recorder, String key, int exp,
+             Transcoder<T> tc) {
+            super(actual, OperationType.GET_AND_TOUCH, 1, recorder);
+            this.request = request("gats " + exp + " " + validKey(key));
+            this.tc = tc;
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(request);
+        }
+
+        @Override
+        void value(String key, long cas, CachedData data) {
+            value = new CASValue<>(cas, tc.decode(data));
+        }
+
+        @Override
+        CASValue<T> result() {
+            return value;
+        }
+    }
+
+    static class BulkGet<T> extends Retrieval<Map<String, T>> {
+        private final ByteBuffer request;
+        private final Function<String, Transcoder<T>> tcs;
+        private final Map<String, T> values = new HashMap<>();
+
+        BulkGet(CoreSubscriber<? super Map<String, T>> actual,
+                OperationRecorder recorder,
+                Collection<String> keys,
+                Function<String, Transcoder<T>> tcs) {
+            super(actual, OperationType.GET_BULK, keys.size(), recorder);
+            StringBuilder line = new StringBuilder("get");
+            for (String key : keys) {
+                line.append(' ').append(validKey(key));
+            }
+            this.request = request(line.toString());
+            this.tcs = tcs;
+        }
+
+        @Override
+        void encode(Collection<? super ByteBuffer> out) {
+            out.add(request);
+        }
+
+        @Override
+        void value(String key, long cas, CachedData data) {
+            values.put(key, tcs.apply(key).decode(data));
+        }
+
+        @Override
+        Map<String, T> result() {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Buffers {@code set}, {@code replace} and {@code touch} in memory and writes them to the delegate in the background
+ * once per flush interval, so a key rewritten many times within an interval is only written once, with its last
+ * value. A {@code replace} following a {@code set} of the same key is written as a {@code set}, and a {@code touch}
+ * following either updates its expiry.
+ * <p>
+ * Buffered writes complete with {@code true} as soon as they are buffered, and a write which later fails is only
+ * counted in {@link #failedWrites()}. Values are encoded as they are buffered, so they may be changed afterwards
+ * without changing what is written. Once the buffer holds the maximum number of keys, or once closed, writes are
+ * written through straight away. Any other operation on a key, including a read, first writes what is buffered for
+ * it, so reads through this instance see its own writes.
+ */
+public class WriteBehindMemcachedOperations extends DelegatingReactiveMemcachedOperations implements Closeable {
+
+    private final Transcoder<Object> transcoder;
+    private final int maxPendingKeys;
+    private final int maxInFlight;
+    private final Duration closeTimeout;
+    private final Map<String, Write> pending = new ConcurrentHashMap<>();
+    private final Map<String, Mono<Void>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicReference<Mono<Void>> running = new AtomicReference<>();
+    private final LongAdder failedWrites = new LongAdder();
+    private final Disposable schedule;
+    private volatile boolean closed;
+
+    private WriteBehindMemcachedOperations(Builder builder) {
+        super(builder.delegate);
+        this.transcoder = builder.transcoder;
+        this.maxPendingKeys = builder.maxPendingKeys;
+        this.maxInFlight = builder.maxInFlight;
+        this.closeTimeout = builder.closeTimeout;
+        long intervalNanos = builder.flushInterval.toNanos();
+        this.schedule = builder.scheduler.schedulePeriodically(this::startFlush, intervalNanos, intervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    public static Builder builder(ReactiveMemcachedOperations delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * The number of buffered writes which failed when written to the delegate.
+     */
+    public long failedWrites() {
+        return failedWrites.sum();
+    }
+
+    /**
+     * The number of keys with writes buffered or being written.
+     */
+    public int pendingKeys() {
+        Set<String> keys = new HashSet<>(pending.keySet());
+        keys.addAll(inFlight.keySet());
+        return keys.size();
+    }
+
+    /**
+     * Writes everything buffered now, completing once it has been written. If the buffer is already being written,
+     * this starts once that completes.
+     */
+    public Mono<Void> flushPending() {
+        return Mono.defer(() -> {
+            Mono<Void> current = running.get();
+            return current == null ? startFlush() : current.then(Mono.defer(this::startFlush));
+        });
+    }
+
+    /**
+     * Stops the periodic flush and writes everything buffered, waiting up to the close timeout for it to be written.
+     * Writes which have not completed by then carry on in the background, and are counted in {@link #pendingKeys()}.
+     * Writes made after closing are written through.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        schedule.dispose();
+        flushPending().timeout(closeTimeout, Mono.empty()).block();
+    }
+
+    @Override
+    public Mono<Boolean> append(long cas, String key, Object val) {
+        return afterPending(key, () -> delegate.append(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> append(String key, Object val) {
+        return afterPending(key, () -> delegate.append(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(long cas, String key, T val, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.append(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> append(String key, T val, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.append(key, val, tc));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(long cas, String key, Object val) {
+        return afterPending(key, () -> delegate.prepend(cas, key, val));
+    }
+
+    @Override
+    public Mono<Boolean> prepend(String key, Object val) {
+        return afterPending(key, () -> delegate.prepend(key, val));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(long cas, String key, T val, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.prepend(cas, key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> prepend(String key, T val, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.prepend(key, val, tc));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, T value, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.cas(key, casId, value, tc));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, Object value) {
+        return afterPending(key, () -> delegate.cas(key, casId, value));
+    }
+
+    @Override
+    public Mono<CASResponse> cas(String key, long casId, int exp, Object value) {
+        return afterPending(key, () -> delegate.cas(key, casId, exp, value));
+    }
+
+    @Override
+    public <T> Mono<CASResponse> cas(String key, long casId, int exp, T value, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.cas(key, casId, exp, value, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> add(String key, int exp, T o, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.add(key, exp, o, tc));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, Object o) {
+        return afterPending(key, () -> delegate.add(key, exp, o));
+    }
+
+    @Override
+    public Mono<Boolean> add(String key, int exp, ByteBuffer value) {
+        return afterPending(key, () -> delegate.add(key, exp, value));
+    }
+
+    @Override
+    public <T> Mono<Boolean> set(String key, int exp, T o, Transcoder<T> tc) {
+        return buffer(key, Write.SET, exp, () -> tc.encode(o));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, Object o) {
+        return buffer(key, Write.SET, exp, () -> transcoder.encode(o));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+        return buffer(key, Write.SET, exp, () -> ByteBufferTranscoder.INSTANCE.encode(copy(value)));
+    }
+
+    @Override
+    public <T> Mono<Boolean> replace(String key, int exp, T o, Transcoder<T> tc) {
+        return buffer(key, Write.REPLACE, exp, () -> tc.encode(o));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, Object o) {
+        return buffer(key, Write.REPLACE, exp, () -> transcoder.encode(o));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, int exp, ByteBuffer value) {
+        return buffer(key, Write.REPLACE, exp, () -> ByteBufferTranscoder.INSTANCE.encode(copy(value)));
+    }
+
+    @Override
+    public <T> Mono<T> get(String key, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.get(key, tc));
+    }
+
+    @Override
+    public Mono<Object> get(String key) {
+        return afterPending(key, () -> delegate.get(key));
+    }
+
+    @Override
+    public Mono<ByteBuffer> getBuffer(String key) {
+        return afterPending(key, () -> delegate.getBuffer(key));
+    }
+
+    @Override
+    public Mono<CASValue<Object>> getAndTouch(String key, int exp) {
+        return afterPending(key, () -> delegate.getAndTouch(key, exp));
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> getAndTouch(String key, int exp, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.getAndTouch(key, exp, tc));
+    }
+
+    @Override
+    public <T> Mono<CASValue<T>> gets(String key, Transcoder<T> tc) {
+        return afterPending(key, () -> delegate.gets(key, tc));
+    }
+
+    @Override
+    public Mono<CASValue<Object>> gets(String key) {
+        return afterPending(key, () -> delegate.gets(key));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Iterator<Transcoder<T>> tcs) {
+        return Mono.defer(() -> {
+            List<String> keyList = toList(keys);
+            return afterPending(keyList, () -> delegate.getBulk(keyList.iterator(), tcs));
+        });
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Iterator<Transcoder<T>> tcs) {
+        return afterPending(keys, () -> delegate.getBulk(keys, tcs));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Iterator<String> keys, Transcoder<T> tc) {
+        return Mono.defer(() -> {
+            List<String> keyList = toList(keys);
+            return afterPending(keyList, () -> delegate.getBulk(keyList, tc));
+        });
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Collection<String> keys, Transcoder<T> tc) {
+        return afterPending(keys, () -> delegate.getBulk(keys, tc));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Iterator<String> keys) {
+        return Mono.defer(() -> {
+            List<String> keyList = toList(keys);
+            return afterPending(keyList, () -> delegate.getBulk(keyList));
+        });
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(Collection<String> keys) {
+        return afterPending(keys, () -> delegate.getBulk(keys));
+    }
+
+    @Override
+    public Mono<Map<String, ByteBuffer>> getBulkBuffers(Collection<String> keys) {
+        return afterPending(keys, () -> delegate.getBulkBuffers(keys));
+    }
+
+    @Override
+    public <T> Mono<Map<String, T>> getBulk(Transcoder<T> tc, String... keys) {
+        return afterPending(Arrays.asList(keys), () -> delegate.getBulk(tc, keys));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getBulk(String... keys) {
+        return afterPending(Arrays.asList(keys), () -> delegate.getBulk(keys));
+    }
+
+    @Override
+    public <T> Mono<BulkGetResult<T>> getBulk(Collection<String> keys, Transcoder<T> tc, Duration deadline) {
+        return afterPending(keys, () -> delegate.getBulk(keys, tc, deadline));
+    }
+
+    @Override
+    public Mono<BulkGetResult<Object>> getBulk(Collection<String> keys, Duration deadline) {
+        return afterPending(keys, () -> delegate.getBulk(keys, deadline));
+    }
+
+    @Override
+    public <T> Flux<Map.Entry<String, T>> streamBulk(Collection<String> keys, Transcoder<T> tc) {
+        return writePending(keys).thenMany(Flux.defer(() -> delegate.streamBulk(keys, tc)));
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> streamBulk(Collection<String> keys) {
+        return writePending(keys).thenMany(Flux.defer(() -> delegate.streamBulk(keys)));
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp, Transcoder<T> tc) {
+        return buffer(key, new Write(Write.TOUCH, exp, null, tc));
+    }
+
+    @Override
+    public <T> Mono<Boolean> touch(String key, int exp) {
+        return buffer(key, new Write(Write.TOUCH, exp, null, null));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by) {
+        return afterPending(key, () -> delegate.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by) {
+        return afterPending(key, () -> delegate.incr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by) {
+        return afterPending(key, () -> delegate.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by) {
+        return afterPending(key, () -> delegate.decr(key, by));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def, int exp) {
+        return afterPending(key, () -> delegate.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def, int exp) {
+        return afterPending(key, () -> delegate.incr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def, int exp) {
+        return afterPending(key, () -> delegate.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def, int exp) {
+        return afterPending(key, () -> delegate.decr(key, by, def, exp));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, long by, long def) {
+        return afterPending(key, () -> delegate.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> incr(String key, int by, long def) {
+        return afterPending(key, () -> delegate.incr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, long by, long def) {
+        return afterPending(key, () -> delegate.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Long> decr(String key, int by, long def) {
+        return afterPending(key, () -> delegate.decr(key, by, def));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return afterPending(key, () -> delegate.delete(key));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key, long cas) {
+        return afterPending(key, () -> delegate.delete(key, cas));
+    }
+
+    @Override
+    public Mono<Boolean> flush(int delay) {
+        return Mono.defer(() -> {
+            pending.clear();
+            return delegate.flush(delay);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> flush() {
+        return Mono.defer(() -> {
+            pending.clear();
+            return delegate.flush();
+        });
+    }
+
+    private Mono<Boolean> buffer(String key, int type, int exp, Supplier<CachedData> value) {
+        // encoded straight away, so the value may change once this returns without changing what is written
+        return Mono.defer(() -> buffer(key, new Write(type, exp, value.get(), Write.ENCODED)));
+    }
+
+    private Mono<Boolean> buffer(String key, Write write) {
+        return Mono.defer(() -> {
+            if (closed || (pending.size() >= maxPendingKeys && !pending.containsKey(key))) {
+                return writePending(key).then(Mono.defer(() -> write.apply(delegate, key)));
+            }
+            pending.merge(key, write, Write::then);
+            if (closed) {
+                // closed since the check above, possibly after the last flush, so nothing else will write it
+                return writePending(key).thenReturn(true);
+            }
+            return Mono.just(true);
+        });
+    }
+
+    private <T> Mono<T> afterPending(String key, Supplier<Mono<T>> operation) {
+        return writePending(key).then(Mono.defer(operation));
+    }
+
+    private <T> Mono<T> afterPending(Collection<String> keys, Supplier<Mono<T>> operation) {
+        return writePending(keys).then(Mono.defer(operation));
+    }
+
+    private Mono<Void> writePending(Collection<String> keys) {
+        return Flux.fromIterable(keys).flatMap(this::writePending, maxInFlight).then();
+    }
+
+    /**
+     * Writes what is buffered for the key once any write of the key already in flight has completed, completing once
+     * both have. The buffered write moves to the in-flight writes in one step, so a concurrent operation on the key
+     * always finds it in one or the other.
+     */
+    private Mono<Void> writePending(String key) {
+        return Mono.defer(() -> {
+            Mono<Void> result = inFlight.compute(key, (k, previous) -> {
+                Write write = pending.remove(k);
+                if (write == null) {
+                    return previous;
+                }
+                return (previous == null ? Mono.<Void>empty() : previous).then(start(k, write)).cache();
+            });
+            return result == null ? Mono.empty() : result.doOnTerminate(() -> inFlight.remove(key, result));
+        });
+    }
+
+    /**
+     * Starts writing everything buffered unless that is already running, returning the running flush.
+     */
+    private Mono<Void> startFlush() {
+        for (;;) {
+            Mono<Void> current = running.get();
+            if (current != null) {
+                return current;
+            }
+            Mono<Void> flush = Mono.defer(this::writeAllPending)
+                    .doOnTerminate(() -> running.set(null))
+                    .cache();
+            if (running.compareAndSet(null, flush)) {
+                flush.subscribe();
+                return flush;
+            }
+        }
+    }
+
+    private Mono<Void> writeAllPending() {
+        Set<String> keys = new LinkedHashSet<>(pending.keySet());
+        keys.addAll(inFlight.keySet());
+        return writePending(keys);
+    }
+
+    /**
+     * The write to the delegate, which only starts once subscribed to.
+     */
+    private Mono<Void> start(String key, Write write) {
+        return Mono.defer(() -> write.apply(delegate, key))
+                .doOnError(e -> failedWrites.increment())
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static ByteBuffer copy(ByteBuffer value) {
+        ByteBuffer copy = ByteBuffer.allocate(value.remaining());
+        copy.put(value.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    private static List<String> toList(Iterator<String> keys) {
+        List<String> list = new ArrayList<>();
+        keys.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static class Write {
+        static final int SET = 0;
+        static final int REPLACE = 1;
+        static final int TOUCH = 2;
+        // writes values encoded when they were buffered as they are
+        static final Transcoder<CachedData> ENCODED = new Transcoder<CachedData>() {
+            @Override
+            public boolean asyncDecode(CachedData d) {
+                return false;
+            }
+
+            @Override
+            public CachedData encode(CachedData o) {
+                return o;
+            }
+
+            @Override
+            public CachedData decode(CachedData d) {
+                return d;
+            }
+
+            @Override
+            public int getMaxSize() {
+                return CachedData.MAX_SIZE;
+            }
+        };
+
+        private final int type;
+        private final int exp;
+        private final Object value;
+        private final Transcoder<?> tc;
+
+        Write(int type, int exp, Object value, Transcoder<?> tc) {
+            this.type = type;
+            this.exp = exp;
+            this.value = value;
+            this.tc = tc;
+        }
+
+        /**
+         * Combines this buffered write with a later one of the same key into the single write with the same effect.
+         */
+        Write then(Write later) {
+            if (later.type == TOUCH) {
+                return type == TOUCH ? later : new Write(type, later.exp, value, tc);
+            }
+            if (later.type == REPLACE && type == SET) {
+                return new Write(SET, later.exp, later.value, later.tc);
+            }
+            return later;
+        }
+
+        @SuppressWarnings("unchecked")
+        Mono<Boolean> apply(ReactiveMemcachedOperations operations, String key) {
+            Transcoder<Object> tc = (Transcoder<Object>) this.tc;
+            switch (type) {
+                case SET:
+                    return tc == null ? operations.set(key, exp, value) : operations.set(key, exp, value, tc);
+                case REPLACE:
+                    return tc == null ? operations.replace(key, exp, value) : operations.replace(key, exp, value, tc);
+                default:
+                    return tc == null ? operations.touch(key, exp) : operations.touch(key, exp, tc);
+            }
+        }
+    }
+
+    public static class Builder {
+        private final ReactiveMemcachedOperations delegate;
+        private Transcoder<Object> transcoder = new SerializingTranscoder();
+        private Duration flushInterval = Duration.ofMillis(100);
+        private Scheduler scheduler = Schedulers.parallel();
+        private int maxPendingKeys = 100_000;
+        private int maxInFlight = 256;
+        private Duration closeTimeout = Duration.ofSeconds(5);
+
+        private Builder(ReactiveMemcachedOperations delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * The transcoder the delegate uses when none is given, with which such writes are encoded as they are
+         * buffered, a {@link SerializingTranscoder} by default.
+         */
+        public Builder transcoder(Transcoder<Object> transcoder) {
+            this.transcoder = transcoder;
+            return this;
+        }
+
+        /**
+         * How often buffered writes are written, every 100 milliseconds by default.
+         */
+        public Builder flushInterval(Duration flushInterval) {
+            if (flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("Flush interval must be positive");
+            }
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * The scheduler on which flushes are triggered, {@link Schedulers#parallel()} by default.
+         */
+        public Builder scheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * The number of keys which may have writes buffered at once, 100,000 by default.
+         */
+        public Builder maxPendingKeys(int maxPendingKeys) {
+            if (maxPendingKeys < 1) {
+                throw new IllegalArgumentException("Maximum pending keys must be positive");
+            }
+            this.maxPendingKeys = maxPendingKeys;
+            return this;
+        }
+
+        /**
+         * The number of buffered writes written to the delegate at once, 256 by default.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("Maximum in-flight writes must be positive");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder closeTimeout(Duration closeTimeout) {
+            this.closeTimeout = closeTimeout;
+            return this;
+        }
+
+        public WriteBehindMemcachedOperations build() {
+            return new WriteBehindMemcachedOperations(this);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package spymemcached.reactive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AggregatingCountersTest {
+
+    @Mock
+    private ReactiveMemcachedOperations operations;
+    private AggregatingCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        counters = AggregatingCounters.builder(operations).flushInterval(Duration.ofHours(1)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        counters.close();
+    }
+
+    @Test
+    void appliesTheNetChangeOncePerFlush() {
+        when(operations.incr("key", 2L, 2L, 0)).thenReturn(Mono.just(2L));
+
+        counters.incr("key", 1);
+        counters.incr("key", 2);
+        counters.decr("key", 1);
+        counters.flush().block();
+        counters.flush().block();
+
+        verify(operations, times(1)).incr("key", 2L, 2L, 0);
+        verifyNoMoreInteractions(operations);
+        assertThat(counters.pending("key"), equalTo(0L));
+    }
+
+    @Test
+    void keepsChangesWhichFailToFlush() {
+        when(operations.decr("key", 3L, 0L, 0))
+                .thenReturn(Mono.error(new IllegalStateException("Queue full")))
+                .thenReturn(Mono.just(7L));
+
+        counters.decr("key", 3);
+        counters.flush().block();
+        assertThat(counters.pending("key"), equalTo(-3L));
+
+        counters.flush().block();
+        assertThat(counters.pending("key"), equalTo(0L));
+    }
+
+    @Test
+    void readsIncludeChangesNotYetFlushed() {
+        when(operations.incr("key", 0L)).thenReturn(Mono.just(10L));
+        when(operations.incr("key", 3L, 3L, 0)).thenReturn(Mono.just(13L));
+
+        counters.incr("key", 3);
+
+        assertThat(counters.get("key").block(), equalTo(13L));
+    }
+
+    @Test
+    void closingFlushesPendingChanges() {
+        when(operations.incr("key", 1L, 1L, 0)).thenReturn(Mono.just(1L));
+
+        counters.incr("key", 1);
+        counters.close();
+
+        verify(operations).incr("key", 1L, 1L, 0);
+    }
+
+    @Test
+    void rejectsChangesAfterClosing() {
+        counters.close();
+
+        assertThrows(IllegalStateException.class, () -> counters.incr("key", 1));
+    }
+
+    @Test
+    void closingLeavesChangesWhichCouldNotBeAppliedInTimePending() {
+        when(operations.incr("key", 1L, 1L, 0)).thenReturn(Mono.never());
+        counters = AggregatingCounters.builder(operations)
+                .flushInterval(Duration.ofHours(1))
+                .closeTimeout(Duration.ofMillis(50))
+                .build();
+
+        counters.incr("key", 1);
+        counters.close();
+
+        assertThat(counters.pending(), equalTo(Collections.singletonMap("key", 1L)));
+    }
+
+    @Test
+    void flushingWhileAFlushIsRunningWaitsForIt() {
+        MonoProcessor<Long> running = MonoProcessor.create();
+        when(operations.incr("key", 1L, 1L, 0)).thenReturn(running).thenReturn(Mono.just(2L));
+
+        counters.incr("key", 1);
+        counters.flush().subscribe();
+        counters.incr("key", 1);
+        MonoProcessor<Void> flush = counters.flush().toProcessor();
+
+        assertThat(flush.isTerminated(), equalTo(false));
+        running.onNext(1L);
+        assertThat(flush.isTerminated(), equalTo(true));
+        verify(operations, times(2)).incr("key", 1L, 1L, 0);
+    }
+
+    @Test
+    void stopsTrackingIdleCountersWithoutLosingChanges() {
+        when(operations.incr("key", 1L, 1L, 0)).thenReturn(Mono.just(1L));
+
+        counters.incr("key", 1);
+        for (int i = 0; i < 3; i++) {
+            counters.flush().block();
+        }
+        counters.incr("key", 1);
+        counters.flush().block();
+
+        verify(operations, times(2)).incr("key", 1L, 1L, 0);
+    }
+
+    @Test
+    void doesNotLoseIncrementsMadeWhileFlushing() throws InterruptedException {
+        AtomicLong applied = new AtomicLong();
+        when(operations.incr(eq("key"), anyLong(), anyLong(), eq(0)))
+                .thenAnswer(invocation -> Mono.just(applied.addAndGet(invocation.getArgument(1))));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    counters.incr("key", 1);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            counters.flush().block();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        counters.flush().block();
+
+        assertThat(applied.get(), equalTo(400_000L));
+        assertThat(counters.pending("key"), equalTo(0L));
+    }
+}
@@ -0,0 +1,47 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ByteBufferTranscoderTest {
+
+    private final ByteBufferTranscoder transcoder = new ByteBufferTranscoder();
+
+    @Test
+    void storesAWholeHeapBufferWithoutCopying() {
+        byte[] bytes = {1, 2, 3};
+
+        assertThat(transcoder.encode(ByteBuffer.wrap(bytes)).getData(), sameInstance(bytes));
+    }
+
+    @Test
+    void storesTheRemainingBytesOfOtherBuffersWithoutMovingThem() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(4).put(new byte[]{1, 2, 3, 4});
+        direct.position(1);
+        ByteBuffer readOnly = ByteBuffer.wrap(new byte[]{1, 2, 3, 4}, 1, 3).asReadOnlyBuffer();
+
+        assertThat(transcoder.encode(direct).getData(), equalTo(new byte[]{2, 3, 4}));
+        assertThat(direct.position(), equalTo(1));
+        assertThat(transcoder.encode(readOnly).getData(), equalTo(new byte[]{2, 3, 4}));
+        assertThat(readOnly.position(), equalTo(1));
+    }
+
+    @Test
+    void readsAndWritesTheSerializingTranscodersByteArrays() {
+        SerializingTranscoder serializingTranscoder = new SerializingTranscoder();
+        byte[] large = new byte[100_000];
+        Arrays.fill(large, (byte) 7);
+
+        CachedData compressed = serializingTranscoder.encode(large);
+        assertThat(transcoder.decode(compressed), equalTo(ByteBuffer.wrap(large)));
+        assertThat(serializingTranscoder.decode(transcoder.encode(ByteBuffer.wrap(large))), equalTo(large));
+    }
+}
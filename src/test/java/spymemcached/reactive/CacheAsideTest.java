@@ -0,0 +1,108 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.transcoders.Transcoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class CacheAsideTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private FakeMemcachedServer server;
+    private NioMemcachedOperations operations;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeMemcachedServer();
+        operations = NioMemcachedOperations.builder(server.address()).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        operations.close();
+        server.close();
+    }
+
+    @Test
+    void computesOnMissAndServesTheStoredValueAfter() {
+        assertThat(operations.getOrCompute("key", 60, loader("value")).block(TIMEOUT), equalTo("value"));
+        assertThat(operations.getOrCompute("key", 60, loader("other")).block(TIMEOUT), equalTo("value"));
+
+        assertThat(loads.get(), equalTo(1));
+        assertThat(server.contains(CacheAside.leaseKey("key")), equalTo(false));
+    }
+
+    @Test
+    void concurrentMissesComputeOnce() {
+        Mono<String> slowLoader = loader("value").delayElement(Duration.ofMillis(200));
+
+        String[] values = Mono.zip(operations.getOrCompute("key", 60, slowLoader),
+                operations.getOrCompute("key", 60, slowLoader), (first, second) -> new String[]{first, second})
+                .block(TIMEOUT);
+
+        assertThat(values[0], equalTo("value"));
+        assertThat(values[1], equalTo("value"));
+        assertThat(loads.get(), equalTo(1));
+    }
+
+    @Test
+    void refreshesAStaleValue() {
+        setStale("key", "stale");
+
+        assertThat(operations.getOrCompute("key", 60, loader("fresh")).block(TIMEOUT), equalTo("fresh"));
+        assertThat(operations.getOrCompute("key", 60, loader("other")).block(TIMEOUT), equalTo("fresh"));
+        assertThat(loads.get(), equalTo(1));
+    }
+
+    @Test
+    void servesTheStaleValueWhileAnotherReaderRefreshesIt() {
+        setStale("key", "stale");
+        operations.add(CacheAside.leaseKey("key"), 10, "").block(TIMEOUT);
+
+        assertThat(operations.getOrCompute("key", 60, loader("fresh")).block(TIMEOUT), equalTo("stale"));
+        assertThat(loads.get(), equalTo(0));
+    }
+
+    @Test
+    void servesTheStaleValueWhenRefreshingFails() {
+        setStale("key", "stale");
+
+        Mono<String> failing = Mono.error(new IllegalStateException("Database unavailable"));
+
+        assertThat(operations.getOrCompute("key", 60, failing).block(TIMEOUT), equalTo("stale"));
+        assertThat(server.contains(CacheAside.leaseKey("key")), equalTo(false));
+    }
+
+    @Test
+    void wrapsTheSameTranscoderInEqualStampedTranscoders() {
+        Transcoder<Object> tc = CacheAside.SERIALIZING;
+
+        assertThat(new CacheAside.StampedTranscoder<>(tc), equalTo(new CacheAside.StampedTranscoder<>(tc)));
+        assertThat(new CacheAside.StampedTranscoder<>(tc).hashCode(),
+                equalTo(new CacheAside.StampedTranscoder<>(tc).hashCode()));
+    }
+
+    private Mono<String> loader(String value) {
+        return Mono.fromCallable(() -> {
+            loads.incrementAndGet();
+            return value;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setStale(String key, String value) {
+        Transcoder<String> tc = (Transcoder<String>) (Transcoder<?>) CacheAside.SERIALIZING;
+        CacheAside.Stamped<String> stale = new CacheAside.Stamped<>(value, System.currentTimeMillis() - 1000, 10);
+        operations.set(key, 120, stale, new CacheAside.StampedTranscoder<>(tc)).block(TIMEOUT);
+    }
+}
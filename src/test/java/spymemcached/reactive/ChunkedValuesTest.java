@@ -0,0 +1,147 @@
+package spymemcached.reactive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ChunkedValuesTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private FakeMemcachedServer server;
+    private NioMemcachedOperations operations;
+    private ChunkedValues chunkedValues;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeMemcachedServer();
+        operations = NioMemcachedOperations.builder(server.address()).build();
+        chunkedValues = new ChunkedValues(operations, 1000, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        operations.close();
+        server.close();
+    }
+
+    @Test
+    void streamsBackChunksInOrder() {
+        byte[] value = randomBytes(3500);
+
+        assertThat(chunkedValues.set("key", 60, ByteBuffer.wrap(value)).block(TIMEOUT), equalTo(true));
+
+        List<ByteBuffer> chunks = chunkedValues.get("key").collectList().block(TIMEOUT);
+        assertThat(chunks, hasSize(4));
+        assertThat(concat(chunks), equalTo(value));
+    }
+
+    @Test
+    void completesEmptyWhenThereIsNoValue() {
+        assertThat(chunkedValues.get("missing").collectList().block(TIMEOUT), hasSize(0));
+        assertThat(chunkedValues.delete("missing").block(TIMEOUT), equalTo(false));
+    }
+
+    @Test
+    void overwritingDeletesThePreviousChunks() {
+        chunkedValues.set("key", 60, ByteBuffer.wrap(randomBytes(2500))).block(TIMEOUT);
+        byte[] value = randomBytes(1500);
+
+        chunkedValues.set("key", 60, ByteBuffer.wrap(value)).block(TIMEOUT);
+
+        assertThat(concat(chunkedValues.get("key").collectList().block(TIMEOUT)), equalTo(value));
+        assertThat(server.size(), equalTo(3));
+    }
+
+    @Test
+    void deletesTheManifestAndChunks() {
+        chunkedValues.set("key", 60, ByteBuffer.wrap(randomBytes(2500))).block(TIMEOUT);
+
+        assertThat(chunkedValues.delete("key").block(TIMEOUT), equalTo(true));
+
+        assertThat(server.size(), equalTo(0));
+    }
+
+    @Test
+    void failsWhenAChunkIsMissing() {
+        chunkedValues.set("key", 60, ByteBuffer.wrap(randomBytes(2500))).block(TIMEOUT);
+        server.removeIf(key -> key.endsWith(":1"));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> chunkedValues.get("key").collectList().block(TIMEOUT));
+
+        assertThat(e, instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    void readsAValueStoredWithoutChunking() {
+        byte[] value = randomBytes(500);
+        operations.set("key", 60, ByteBuffer.wrap(value)).block(TIMEOUT);
+
+        List<ByteBuffer> chunks = chunkedValues.get("key").collectList().block(TIMEOUT);
+        assertThat(chunks, hasSize(1));
+        assertThat(concat(chunks), equalTo(value));
+        assertThat(chunkedValues.delete("key").block(TIMEOUT), equalTo(true));
+        assertThat(server.size(), equalTo(0));
+    }
+
+    @Test
+    void readsAValueWhichLooksLikeAManifestAsIs() {
+        byte[] value = ByteBuffer.allocate(16).putInt(0x43484e4b).putLong(1L).putInt(3).array();
+        operations.set("key", 60, ByteBuffer.wrap(value)).block(TIMEOUT);
+
+        assertThat(concat(chunkedValues.get("key").collectList().block(TIMEOUT)), equalTo(value));
+    }
+
+    @Test
+    void deletesTheChunksStoredWhenAnotherFails() {
+        ReactiveMemcachedOperations failingSecondChunk = new DelegatingReactiveMemcachedOperations(operations) {
+            @Override
+            public Mono<Boolean> set(String key, int exp, ByteBuffer value) {
+                return key.endsWith(":1")
+                        ? Mono.error(new IllegalStateException("Queue full"))
+                        : super.set(key, exp, value);
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> new ChunkedValues(failingSecondChunk, 1000, 1)
+                .set("key", 60, ByteBuffer.wrap(randomBytes(2500))).block(TIMEOUT));
+
+        assertThat(server.size(), equalTo(0));
+    }
+
+    @Test
+    void rejectsKeysTooLongToDeriveChunkKeysFrom() {
+        String key = String.join("", Collections.nCopies(240, "k"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> chunkedValues.set(key, 60, ByteBuffer.wrap(randomBytes(2500))).block(TIMEOUT));
+
+        assertThat(server.size(), equalTo(0));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(List<ByteBuffer> chunks) {
+        ByteBuffer all = ByteBuffer.allocate(chunks.stream().mapToInt(ByteBuffer::remaining).sum());
+        chunks.forEach(all::put);
+        return all.array();
+    }
+}
@@ -0,0 +1,166 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.ops.OperationErrorType;
+import net.spy.memcached.ops.OperationException;
+import net.spy.memcached.transcoders.Transcoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CircuitBreakingMemcachedOperationsTest {
+
+    private static final InetSocketAddress FAILING = InetSocketAddress.createUnresolved("failing", 11211);
+    private static final InetSocketAddress HEALTHY = InetSocketAddress.createUnresolved("healthy", 11211);
+
+    @Mock
+    private ReactiveMemcachedOperations delegate;
+    private CircuitBreakingMemcachedOperations operations;
+
+    @BeforeEach
+    void setUp() {
+        operations = CircuitBreakingMemcachedOperations
+                .builder(delegate, key -> key.startsWith("failing") ? FAILING : HEALTHY)
+                .failureRate(0.5, 4, Duration.ofMinutes(1))
+                .openDuration(Duration.ofMillis(50))
+                .timeout(Duration.ofMillis(100))
+                .build();
+    }
+
+    @Test
+    void failsFastOnceANodeTrips() {
+        when(delegate.get("failing")).thenReturn(Mono.error(new ConnectException("Connection refused")));
+        when(delegate.get("healthy")).thenReturn(Mono.just("value"));
+
+        trip();
+
+        assertThat(operations.get("failing").block(), nullValue());
+        RuntimeException e = assertThrows(RuntimeException.class, () -> operations.set("failing", 0, "value").block());
+        assertThat(e, instanceOf(NodeUnavailableException.class));
+        assertThat(((NodeUnavailableException) e).node(), equalTo(FAILING));
+        assertThat(operations.get("healthy").block(), equalTo("value"));
+
+        verify(delegate, times(4)).get("failing");
+        assertThat(operations.openNodes(), contains(FAILING));
+    }
+
+    @Test
+    void closesOnceAProbeSucceeds() throws Exception {
+        when(delegate.get("failing"))
+                .thenReturn(Mono.error(new ConnectException("Connection refused")))
+                .thenReturn(Mono.error(new ConnectException("Connection refused")))
+                .thenReturn(Mono.error(new ConnectException("Connection refused")))
+                .thenReturn(Mono.error(new ConnectException("Connection refused")))
+                .thenReturn(Mono.just("value"));
+
+        trip();
+        Thread.sleep(60);
+
+        assertThat(operations.get("failing").block(), equalTo("value"));
+        assertThat(operations.openNodes(), empty());
+    }
+
+    @Test
+    void countsTimeoutsAsFailures() {
+        when(delegate.get("failing")).thenReturn(Mono.never());
+
+        for (int i = 0; i < 4; i++) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> operations.get("failing").block());
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+
+        assertThat(operations.openNodes(), contains(FAILING));
+    }
+
+    @Test
+    void bulkReadsSkipKeysOnOpenNodes() {
+        when(delegate.get("failing")).thenReturn(Mono.error(new ConnectException("Connection refused")));
+        when(delegate.getBulk(Collections.singletonList("healthy")))
+                .thenReturn(Mono.just(Collections.singletonMap("healthy", "value")));
+
+        trip();
+
+        assertThat(operations.getBulk(Arrays.asList("failing", "healthy")).block(),
+                equalTo(Collections.singletonMap("healthy", "value")));
+    }
+
+    @Test
+    void bulkReadsStopAtTheLastTranscoder() {
+        Transcoder<Object> tc = CacheAside.SERIALIZING;
+        when(delegate.getBulk(eq(Collections.singletonList("healthy")),
+                ArgumentMatchers.<Iterator<Transcoder<Object>>>any()))
+                .thenReturn(Mono.just(Collections.singletonMap("healthy", "value")));
+
+        Map<String, Object> found = operations.getBulk(Arrays.asList("healthy", "failing").iterator(),
+                Collections.singletonList(tc).iterator()).block();
+
+        assertThat(found, equalTo(Collections.singletonMap("healthy", "value")));
+    }
+
+    @Test
+    void bulkReadsProbeAnOpenNodeOnceItsOpenDurationHasPassed() throws Exception {
+        when(delegate.get("failing")).thenReturn(Mono.error(new ConnectException("Connection refused")));
+        when(delegate.getBulk(Collections.singletonList("healthy")))
+                .thenReturn(Mono.just(Collections.singletonMap("healthy", "value")));
+        when(delegate.getBulk(Collections.singletonList("failing")))
+                .thenReturn(Mono.just(Collections.singletonMap("failing", "recovered")));
+
+        trip();
+        Thread.sleep(60);
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("failing", "recovered");
+        expected.put("healthy", "value");
+        assertThat(operations.getBulk(Arrays.asList("failing", "healthy")).block(), equalTo(expected));
+        assertThat(operations.openNodes(), empty());
+        verify(delegate).getBulk(Collections.singletonList("failing"));
+    }
+
+    @Test
+    void errorsOtherThanTimeoutsAndConnectionFailuresDoNotTripANode() {
+        when(delegate.get("failing"))
+                .thenReturn(Mono.error(new OperationException(OperationErrorType.SERVER, "out of memory")));
+        when(delegate.delete("failing", 1L)).thenThrow(new UnsupportedOperationException("delete with cas"));
+
+        for (int i = 0; i < 4; i++) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> operations.get("failing").block());
+            assertThat(e.getCause(), instanceOf(OperationException.class));
+            assertThrows(UnsupportedOperationException.class, () -> operations.delete("failing", 1L).block());
+        }
+
+        assertThat(operations.openNodes(), empty());
+    }
+
+    private void trip() {
+        for (int i = 0; i < 4; i++) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> operations.get("failing").block());
+            assertThat(e.getCause(), instanceOf(ConnectException.class));
+        }
+    }
+}
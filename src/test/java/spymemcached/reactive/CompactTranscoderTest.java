@@ -0,0 +1,130 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompactTranscoderTest {
+
+    private final CompactTranscoder transcoder = CompactTranscoder.builder()
+            .register(1, User.class, new UserCodec())
+            .build();
+
+    @Test
+    void roundTripsBuiltInTypes() {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("name", "Zo\u00eb");
+        map.put(7, null);
+        map.put("scores", Arrays.asList(Long.MIN_VALUE, -1L, Long.MAX_VALUE));
+        List<Object> values = Arrays.asList("ascii", "", Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE, true, 1.5d,
+                -0.25f, (short) -3, (byte) 9, 'x', map);
+
+        for (Object value : values) {
+            assertThat(transcoder.decode(transcoder.encode(value)), equalTo(value));
+        }
+        byte[] bytes = {1, 2, 3};
+        assertThat((byte[]) transcoder.decode(transcoder.encode(bytes)), equalTo(bytes));
+    }
+
+    @Test
+    void encodesRegisteredClassesWithTheirCodec() {
+        User user = new User(42, "alice", Arrays.asList("admin", "ops"), 12.5);
+
+        CachedData encoded = transcoder.encode(Collections.singletonList(user));
+        CachedData serialized = new SerializingTranscoder().encode(Collections.singletonList(user));
+
+        assertThat(encoded.getFlags(), equalTo(CompactTranscoder.COMPACT));
+        assertThat(encoded.getData().length * 5, lessThan(serialized.getData().length));
+        assertThat(transcoder.decode(encoded), equalTo(Collections.singletonList(user)));
+    }
+
+    @Test
+    void rejectsUnregisteredClasses() {
+        assertThrows(IllegalArgumentException.class, () -> transcoder.encode(new Object()));
+        assertThrows(IllegalArgumentException.class, () -> CompactTranscoder.builder()
+                .register(1, User.class, new UserCodec())
+                .register(1, String.class, null));
+    }
+
+    @Test
+    void decodesValuesStoredWithSerialization() {
+        User user = new User(1, "bob", Collections.emptyList(), 0);
+
+        assertThat(transcoder.decode(new SerializingTranscoder().encode(user)), equalTo(user));
+    }
+
+    @Test
+    void typedViewRejectsValuesOfOtherTypes() {
+        Transcoder<User> users = transcoder.as(User.class);
+        User user = new User(1, "carol", Collections.singletonList("dev"), -2);
+
+        assertThat(users.decode(users.encode(user)), equalTo(user));
+        assertThrows(IllegalArgumentException.class, () -> users.decode(transcoder.encode("not a user")));
+    }
+
+    private static class User implements Serializable {
+        private final long id;
+        private final String name;
+        private final List<String> roles;
+        private final double balance;
+
+        User(long id, String name, List<String> roles, double balance) {
+            this.id = id;
+            this.name = name;
+            this.roles = roles;
+            this.balance = balance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof User)) {
+                return false;
+            }
+            User user = (User) o;
+            return id == user.id && name.equals(user.name) && roles.equals(user.roles) && balance == user.balance;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, roles, balance);
+        }
+    }
+
+    private static class UserCodec implements CompactCodec<User> {
+        @Override
+        public void write(User value, CompactOutput out) {
+            out.writeLong(value.id);
+            out.writeString(value.name);
+            out.writeInt(value.roles.size());
+            for (String role : value.roles) {
+                out.writeString(role);
+            }
+            out.writeDouble(value.balance);
+        }
+
+        @Override
+        public User read(CompactInput in) {
+            long id = in.readLong();
+            String name = in.readString();
+            String[] roles = new String[in.readInt()];
+            for (int i = 0; i < roles.length; i++) {
+                roles[i] = in.readString();
+            }
+            return new User(id, name, Arrays.asList(roles), in.readDouble());
+        }
+    }
+}
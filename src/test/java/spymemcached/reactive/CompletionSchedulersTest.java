@@ -0,0 +1,51 @@
+package spymemcached.reactive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompletionSchedulersTest {
+
+    private final Scheduler scheduler = CompletionSchedulers.boundedHandOff("completion", 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    void boundedHandOffRunsOnTheCallerOnceTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.schedule(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        scheduler.schedule(() -> {
+        });
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        scheduler.schedule(() -> thread.set(Thread.currentThread()));
+        release.countDown();
+
+        assertThat(thread.get(), equalTo(Thread.currentThread()));
+    }
+
+    @Test
+    void boundedHandOffRejectsOnceDisposed() {
+        scheduler.dispose();
+
+        assertThrows(RejectedExecutionException.class, () -> scheduler.schedule(() -> {
+        }));
+    }
+}
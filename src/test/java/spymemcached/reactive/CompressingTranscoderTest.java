@@ -0,0 +1,64 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompressingTranscoderTest {
+
+    private final CompressingTranscoder<Object> transcoder = CompressingTranscoder.serializing(1024);
+
+    @Test
+    void compressesValuesFromTheThreshold() {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+
+        CachedData encoded = transcoder.encode(value);
+
+        assertThat(encoded.getFlags() & CompressingTranscoder.COMPRESSED, equalTo(CompressingTranscoder.COMPRESSED));
+        assertThat(encoded.getData().length, lessThan(1000));
+        assertThat(transcoder.decode(encoded), equalTo(value));
+    }
+
+    @Test
+    void storesSmallAndIncompressibleValuesAsTheyAre() {
+        byte[] random = new byte[10_000];
+        new Random(42).nextBytes(random);
+
+        CachedData small = transcoder.encode("small");
+        CachedData incompressible = transcoder.encode(random);
+
+        assertThat(small.getFlags() & CompressingTranscoder.COMPRESSED, equalTo(0));
+        assertThat(incompressible.getFlags() & CompressingTranscoder.COMPRESSED, equalTo(0));
+        assertThat(transcoder.decode(incompressible), equalTo(random));
+    }
+
+    @Test
+    void decodesValuesStoredWithoutIt() {
+        byte[] large = new byte[100_000];
+
+        assertThat(transcoder.decode(new SerializingTranscoder().encode(large)), equalTo(large));
+    }
+
+    @Test
+    void rejectsCompressedValuesWhoseLengthDoesNotMatch() {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        CachedData encoded = transcoder.encode(new String(chars));
+        byte[] data = encoded.getData();
+        ByteBuffer.wrap(data).putInt(0, ByteBuffer.wrap(data).getInt(0) + 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> transcoder.decode(new CachedData(encoded.getFlags(), data, transcoder.getMaxSize())));
+    }
+}
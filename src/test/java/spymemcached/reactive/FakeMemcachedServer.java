@@ -0,0 +1,168 @@
+package spymemcached.reactive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Just enough of a memcached text protocol server to test {@link NioMemcachedOperations} against, one thread per
+ * connection and no expiry.
+ */
+class FakeMemcachedServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Item> items = new ConcurrentHashMap<>();
+    private final AtomicLong casIds = new AtomicLong();
+
+    FakeMemcachedServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "fake-memcached");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    InetSocketAddress address() {
+        return new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+    }
+
+    boolean contains(String key) {
+        return items.containsKey(key);
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    void removeIf(Predicate<String> key) {
+        items.keySet().removeIf(key);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> serve(socket), "fake-memcached-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket closing = socket;
+             InputStream in = new BufferedInputStream(closing.getInputStream());
+             OutputStream out = closing.getOutputStream()) {
+            String line;
+            while ((line = readLine(in)) != null) {
+                out.write(handle(line.split(" "), in));
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // the client went away
+        }
+    }
+
+    private byte[] handle(String[] command, InputStream in) throws IOException {
+        switch (command[0]) {
+            case "get":
+            case "gets":
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                for (int i = 1; i < command.length; i++) {
+                    Item item = items.get(command[i]);
+                    if (item != null) {
+                        String cas = command[0].equals("gets") ? " " + item.cas : "";
+                        String header = "VALUE " + command[i] + " " + Integer.toUnsignedString(item.flags) + " "
+                                + item.data.length + cas;
+                        response.write(reply(header));
+                        response.write(item.data);
+                        response.write(TextCommand.CRLF);
+                    }
+                }
+                response.write("END\r\n".getBytes(StandardCharsets.UTF_8));
+                return response.toByteArray();
+            case "set":
+            case "add":
+                byte[] data = new byte[Integer.parseInt(command[4])];
+                readFully(in, data);
+                readLine(in);
+                Item item = new Item(Integer.parseUnsignedInt(command[2]), data, casIds.incrementAndGet());
+                if (command[0].equals("add")) {
+                    return reply(items.putIfAbsent(command[1], item) == null ? "STORED" : "NOT_STORED");
+                }
+                items.put(command[1], item);
+                return reply("STORED");
+            case "delete":
+                return reply(items.remove(command[1]) != null ? "DELETED" : "NOT_FOUND");
+            case "incr":
+                Item counter = items.computeIfPresent(command[1], (key, current) -> new Item(current.flags,
+                        Long.toString(Long.parseLong(new String(current.data, StandardCharsets.US_ASCII))
+                                + Long.parseLong(command[2])).getBytes(StandardCharsets.US_ASCII),
+                        casIds.incrementAndGet()));
+                return reply(counter == null ? "NOT_FOUND" : new String(counter.data, StandardCharsets.US_ASCII));
+            case "flush_all":
+                items.clear();
+                return reply("OK");
+            default:
+                return reply("ERROR");
+        }
+    }
+
+    private static byte[] reply(String line) {
+        return (line + "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(InputStream in, byte[] data) throws IOException {
+        int read = 0;
+        while (read < data.length) {
+            int count = in.read(data, read, data.length - read);
+            if (count < 0) {
+                throw new IOException("Connection closed");
+            }
+            read += count;
+        }
+    }
+
+    private static class Item {
+        private final int flags;
+        private final byte[] data;
+        private final long cas;
+
+        Item(int flags, byte[] data, long cas) {
+            this.flags = flags;
+            this.data = data;
+            this.cas = cas;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package spymemcached.reactive;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+
+public class HotKeyTrackerTest {
+
+    @Test
+    void reportsTheHottestKeysOnceTheWindowCompletes() throws Exception {
+        List<List<HotKeyTracker.HotKey>> published = new ArrayList<>();
+        HotKeyTracker tracker = HotKeyTracker.builder()
+                .sampleRate(1)
+                .topK(2)
+                .window(Duration.ofMillis(200))
+                .onHotKeys(published::add)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            tracker.record("hottest");
+            if (i % 2 == 0) {
+                tracker.record("hot");
+            }
+            tracker.record("cold" + i);
+        }
+        assertThat(tracker.hotKeys(), empty());
+        Thread.sleep(250);
+
+        List<HotKeyTracker.HotKey> hotKeys = tracker.hotKeys();
+        assertThat(hotKeys, hasSize(2));
+        assertThat(hotKeys.get(0).key(), equalTo("hottest"));
+        assertThat(hotKeys.get(1).key(), equalTo("hot"));
+        assertThat(hotKeys.get(0).rate(), greaterThan(hotKeys.get(1).rate()));
+        assertThat(tracker.isHot("hot"), equalTo(true));
+        assertThat(tracker.isHot("cold1"), equalTo(false));
+        assertThat(published, equalTo(Collections.singletonList(hotKeys)));
+    }
+
+    @Test
+    void samplesKeys() throws Exception {
+        HotKeyTracker tracker = HotKeyTracker.builder()
+                .sampleRate(0.1)
+                .window(Duration.ofMillis(200))
+                .build();
+
+        for (int i = 0; i < 10_000; i++) {
+            tracker.record("hot");
+        }
+        Thread.sleep(250);
+
+        List<HotKeyTracker.HotKey> hotKeys = tracker.hotKeys();
+        assertThat(hotKeys, hasSize(1));
+        // 10,000 uses in a window of at least 250ms, scaled back up from the roughly 1,000 sampled
+        assertThat(hotKeys.get(0).rate() * 0.25, greaterThan(2_500.0));
+    }
+}
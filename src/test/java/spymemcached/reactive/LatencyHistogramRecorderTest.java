@@ -0,0 +1,48 @@
+package spymemcached.reactive;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class LatencyHistogramRecorderTest {
+
+    private final LatencyHistogramRecorder recorder = new LatencyHistogramRecorder();
+
+    @Test
+    void reportsPercentilesWithinTheBucketResolution() {
+        for (long latency = 1; latency <= 1000; latency++) {
+            recorder.record(OperationType.SET, 1, 0, latency * 1000, OperationOutcome.SUCCESS);
+        }
+
+        LatencySnapshot snapshot = recorder.snapshot(OperationType.SET);
+        assertThat(snapshot.count(), equalTo(1000L));
+        assertThat(snapshot.count(OperationOutcome.SUCCESS), equalTo(1000L));
+        assertThat(snapshot.p50(), allOf(greaterThanOrEqualTo(500_000L), lessThan(532_000L)));
+        assertThat(snapshot.p99(), allOf(greaterThanOrEqualTo(990_000L), lessThan(1_052_000L)));
+        assertThat(snapshot.p999(), allOf(greaterThanOrEqualTo(999_000L), lessThan(1_062_000L)));
+    }
+
+    @Test
+    void keepsOperationTypesApart() {
+        recorder.record(OperationType.GET_BULK, 10, 0, 100, OperationOutcome.ERROR);
+
+        assertThat(recorder.snapshot(OperationType.GET_BULK).count(OperationOutcome.ERROR), equalTo(1L));
+        assertThat(recorder.snapshot(OperationType.GET).count(), equalTo(0L));
+        assertThat(recorder.snapshot(OperationType.GET).p99(), equalTo(0L));
+    }
+
+    @Test
+    void bucketsEveryValueAtOrBelowItsHighestValue() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertThat(LatencyHistogram.highestValue(bucket), greaterThanOrEqualTo(value));
+            if (bucket > 0) {
+                assertThat(LatencyHistogram.highestValue(bucket - 1), lessThan(value));
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.transcoders.Transcoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NearCacheMemcachedOperationsTest {
+
+    @Mock
+    private ReactiveMemcachedOperations delegate;
+    private NearCacheMemcachedOperations nearCache;
+
+    @BeforeEach
+    void setUp() {
+        nearCache = NearCacheMemcachedOperations.builder(delegate).maximumSize(2).build();
+    }
+
+    @Test
+    void servesRepeatedReadsLocally() {
+        when(delegate.get("key")).thenReturn(Mono.just("value"));
+
+        assertThat(nearCache.get("key").block(), equalTo("value"));
+        assertThat(nearCache.get("key").block(), equalTo("value"));
+
+        verify(delegate, times(1)).get("key");
+        assertThat(nearCache.stats().hitCount(), equalTo(1L));
+        assertThat(nearCache.stats().missCount(), equalTo(1L));
+    }
+
+    @Test
+    void servesReadsWithAnEqualTranscoderLocally() {
+        Transcoder<CacheAside.Stamped<Object>> first = new CacheAside.StampedTranscoder<>(CacheAside.SERIALIZING);
+        Transcoder<CacheAside.Stamped<Object>> second = new CacheAside.StampedTranscoder<>(CacheAside.SERIALIZING);
+        CacheAside.Stamped<Object> stamped = first.decode(CacheAside.SERIALIZING.encode("value"));
+        when(delegate.get("key", first)).thenReturn(Mono.just(stamped));
+
+        assertThat(nearCache.get("key", first).block(), equalTo(stamped));
+        assertThat(nearCache.get("key", second).block(), equalTo(stamped));
+
+        verify(delegate, times(1)).get("key", first);
+    }
+
+    @Test
+    void doesNotServeValuesReadWithADifferentTranscoder() {
+        //noinspection unchecked
+        Transcoder<Object> tc = mock(Transcoder.class);
+        when(delegate.get("key")).thenReturn(Mono.just("value"));
+        when(delegate.get("key", tc)).thenReturn(Mono.just("other"));
+
+        assertThat(nearCache.get("key").block(), equalTo("value"));
+        assertThat(nearCache.get("key", tc).block(), equalTo("other"));
+    }
+
+    @Test
+    void onlyCachesTheKeysItIsToldTo() {
+        nearCache = NearCacheMemcachedOperations.builder(delegate).cacheOnly("hot"::equals).build();
+        when(delegate.get("hot")).thenReturn(Mono.just("value"));
+        when(delegate.get("cold")).thenReturn(Mono.just("value"));
+
+        for (int i = 0; i < 2; i++) {
+            nearCache.get("hot").block();
+            nearCache.get("cold").block();
+        }
+
+        verify(delegate, times(1)).get("hot");
+        verify(delegate, times(2)).get("cold");
+    }
+
+    @Test
+    void writesInvalidateTheLocalCopy() {
+        when(delegate.get("key")).thenReturn(Mono.just("value"));
+        when(delegate.set("key", 0, "updated")).thenReturn(Mono.just(true));
+
+        nearCache.get("key").block();
+        nearCache.set("key", 0, "updated").block();
+        nearCache.get("key").block();
+
+        verify(delegate, times(2)).get("key");
+    }
+
+    @Test
+    void readsWhichRaceAWriteAreNotCached() {
+        when(delegate.get("key")).thenReturn(Mono.defer(() -> {
+            nearCache.invalidate("key");
+            return Mono.just("stale");
+        }));
+
+        nearCache.get("key").block();
+        nearCache.get("key").block();
+
+        verify(delegate, times(2)).get("key");
+    }
+
+    @Test
+    void bulkReadsOnlyFetchKeysWhichAreNotHeldLocally() {
+        when(delegate.get("key1")).thenReturn(Mono.just("value1"));
+        when(delegate.getBulk(Collections.singletonList("key2")))
+                .thenReturn(Mono.just(Collections.singletonMap("key2", "value2")));
+
+        nearCache.get("key1").block();
+        Map<String, Object> values = nearCache.getBulk(Arrays.asList("key1", "key2")).block();
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("key1", "value1");
+        expected.put("key2", "value2");
+        assertThat(values, equalTo(expected));
+    }
+
+    @Test
+    void givesEachReaderItsOwnViewOfACachedBuffer() {
+        when(delegate.getBuffer("key")).thenReturn(Mono.just(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+
+        ByteBuffer first = nearCache.getBuffer("key").block();
+        first.get();
+        ByteBuffer second = nearCache.getBuffer("key").block();
+
+        assertThat(second.remaining(), equalTo(3));
+        verify(delegate, times(1)).getBuffer("key");
+    }
+
+    @Test
+    void countsEvictions() {
+        when(delegate.get("key1")).thenReturn(Mono.just("value1"));
+        when(delegate.get("key2")).thenReturn(Mono.just("value2"));
+        when(delegate.get("key3")).thenReturn(Mono.just("value3"));
+
+        nearCache.get("key1").block();
+        nearCache.get("key2").block();
+        nearCache.get("key3").block();
+        nearCache.cleanUp();
+
+        assertThat(nearCache.stats().evictionCount(), equalTo(1L));
+    }
+}
@@ -0,0 +1,157 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.ops.OperationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+
+public class NioMemcachedOperationsTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private FakeMemcachedServer first;
+    private FakeMemcachedServer second;
+    private NioMemcachedOperations operations;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        first = new FakeMemcachedServer();
+        second = new FakeMemcachedServer();
+        operations = NioMemcachedOperations.builder(first.address(), second.address())
+                .connectionsPerNode(2)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        operations.close();
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void readsBackWhatWasSet() {
+        assertThat(operations.set("key", 60, 42).block(TIMEOUT), equalTo(true));
+
+        assertThat(operations.get("key").block(TIMEOUT), equalTo(42));
+        assertThat(operations.gets("key").block(TIMEOUT).getValue(), equalTo(42));
+        assertThat(operations.get("missing").block(TIMEOUT), nullValue());
+    }
+
+    @Test
+    void pipelinesConcurrentOperations() {
+        List<Boolean> stored = Flux.range(0, 1000)
+                .flatMap(i -> operations.set("key" + i, 60, i), 1000)
+                .collectList()
+                .block(TIMEOUT);
+        assertThat(stored, hasSize(1000));
+        assertThat(stored, everyItem(equalTo(true)));
+
+        List<Object> values = Flux.range(0, 1000)
+                .flatMapSequential(i -> operations.get("key" + i), 1000)
+                .collectList()
+                .block(TIMEOUT);
+        assertThat(values.get(999), equalTo(999));
+    }
+
+    @Test
+    void getsBulkFromEveryServer() {
+        Map<String, Object> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            operations.set("key" + i, 60, "value" + i).block(TIMEOUT);
+            expected.put("key" + i, "value" + i);
+        }
+        assertThat(first.contains("key0") || first.contains("key1"), equalTo(true));
+        assertThat(second.contains("key0") || second.contains("key1"), equalTo(true));
+
+        assertThat(operations.getBulk(expected.keySet()).block(TIMEOUT), equalTo(expected));
+        assertThat(operations.streamBulk(Arrays.asList("key0", "missing")).collectList().block(TIMEOUT),
+                hasSize(1));
+    }
+
+    @Test
+    void bulkGetsWithADeadlineFromEveryServer() {
+        Map<String, Object> expected = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            operations.set("key" + i, 60, "value" + i).block(TIMEOUT);
+            expected.put("key" + i, "value" + i);
+            keys.add("key" + i);
+        }
+        keys.add("missing");
+
+        BulkGetResult<Object> result = operations.getBulk(keys, Duration.ofSeconds(1)).block(TIMEOUT);
+
+        assertThat(result.values(), equalTo(expected));
+        assertThat(result.missed(), contains("missing"));
+        assertThat(result.isComplete(), equalTo(true));
+    }
+
+    @Test
+    void bulkGetsStopAtTheLastTranscoder() {
+        operations.set("key0", 60, "value0").block(TIMEOUT);
+        operations.set("key1", 60, "value1").block(TIMEOUT);
+
+        Map<String, Object> found = operations.getBulk(Arrays.asList("key0", "key1"),
+                Collections.singletonList(CacheAside.SERIALIZING).iterator()).block(TIMEOUT);
+
+        assertThat(found, equalTo(Collections.singletonMap("key0", "value0")));
+    }
+
+    @Test
+    void readsValuesLargerThanTheReadBuffer() {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+
+        operations.set("large", 60, value).block(TIMEOUT);
+
+        assertThat(operations.get("large").block(TIMEOUT), equalTo(value));
+    }
+
+    @Test
+    void writesBuffersAsTheyAre() {
+        ByteBuffer value = ByteBuffer.allocateDirect(3).put(new byte[]{1, 2, 3});
+        value.flip();
+
+        operations.set("buffer", 60, value).block(TIMEOUT);
+
+        assertThat(operations.getBuffer("buffer").block(TIMEOUT), equalTo(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+        assertThat(operations.get("buffer").block(TIMEOUT), equalTo(new byte[]{1, 2, 3}));
+        assertThat(value.position(), equalTo(0));
+    }
+
+    @Test
+    void createsMissingCountersWithTheDefault() {
+        assertThat(operations.incr("counter", 1).block(TIMEOUT), equalTo(-1L));
+        assertThat(operations.incr("counter", 1, 10).block(TIMEOUT), equalTo(10L));
+        assertThat(operations.incr("counter", 1, 10).block(TIMEOUT), equalTo(11L));
+    }
+
+    @Test
+    void signalsErrorRepliesWithoutDroppingTheConnection() {
+        // the stand-in server does not implement touch
+        Throwable error = operations.touch("key", 60).materialize().block(TIMEOUT).getThrowable();
+
+        assertThat(error, instanceOf(OperationException.class));
+        assertThat(operations.delete("key").block(TIMEOUT), equalTo(false));
+    }
+}
@@ -0,0 +1,66 @@
+package spymemcached.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PooledMemcachedOperationsTest {
+
+    @Mock
+    private ReactiveMemcachedOperations first;
+    @Mock
+    private ReactiveMemcachedOperations second;
+
+    @Test
+    void keyAffinitySendsEveryOperationOnAKeyThroughOneMember() {
+        lenient().when(first.get("key")).thenReturn(Mono.just("value"));
+        lenient().when(second.get("key")).thenReturn(Mono.just("value"));
+        PooledMemcachedOperations pool = new PooledMemcachedOperations(Arrays.asList(first, second),
+                PooledMemcachedOperations.Selection.KEY_AFFINITY);
+
+        for (int i = 0; i < 10; i++) {
+            pool.get("key").block();
+        }
+
+        int firstCalls = mockingDetails(first).getInvocations().size();
+        int secondCalls = mockingDetails(second).getInvocations().size();
+        assertThat(firstCalls == 10 && secondCalls == 0 || firstCalls == 0 && secondCalls == 10, equalTo(true));
+    }
+
+    @Test
+    void leastOutstandingAvoidsABusyMember() {
+        MonoProcessor<Object> pending = MonoProcessor.create();
+        when(first.get("slow")).thenReturn(pending);
+        lenient().when(second.get("slow")).thenReturn(Mono.just("value"));
+        when(second.get("fast")).thenReturn(Mono.just("value"));
+        PooledMemcachedOperations pool = new PooledMemcachedOperations(Arrays.asList(first, second),
+                PooledMemcachedOperations.Selection.LEAST_OUTSTANDING);
+
+        Disposable slow = null;
+        while (slow == null) {
+            Disposable candidate = pool.get("slow").subscribe();
+            if (pool.outstanding()[0] == 1) {
+                slow = candidate;
+            }
+        }
+
+        assertThat(pool.get("fast").block(), equalTo("value"));
+        assertThat(pool.outstanding(), equalTo(new int[]{1, 0}));
+
+        slow.dispose();
+        assertThat(pool.outstanding(), equalTo(new int[]{0, 0}));
+    }
+}
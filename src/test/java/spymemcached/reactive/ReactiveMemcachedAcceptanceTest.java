@@ -50,4 +50,18 @@ public class ReactiveMemcachedAcceptanceTest {
         assertThat(result, equalTo(1));
     }
 
+    @Test
+    void nioSanityTest() {
+        InetSocketAddress address = new InetSocketAddress(
+                memcachedContainer.getContainerIpAddress(),
+                memcachedContainer.getMappedPort(11211));
+        try (NioMemcachedOperations operations = NioMemcachedOperations.builder(address).build()) {
+            Mono<Object> get = operations.get("nio-key");
+            Mono<Boolean> set = operations.set("nio-key", 60, 1);
+            Object result = set.then(operations.getAndTouch("nio-key", 120)).then(get).block();
+            assertThat(result, equalTo(1));
+            assertThat(memcachedClient.get("nio-key"), equalTo(1));
+        }
+    }
+
 }
@@ -0,0 +1,202 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Covers the composite operations which {@link ReactiveMemcachedOperations} provides on top of its primitives.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ReactiveMemcachedOperationsTest {
+
+    @Mock
+    private ReactiveMemcachedOperations primitives;
+    private ReactiveMemcachedOperations operations;
+
+    @BeforeEach
+    void setUp() {
+        operations = new DelegatingReactiveMemcachedOperations(primitives) {
+        };
+    }
+
+    @Test
+    void setAllBoundsTheNumberOfSetsInFlight() {
+        List<MonoProcessor<Boolean>> inFlight = new ArrayList<>();
+        when(primitives.set(anyString(), anyInt(), Mockito.<Object>any())).thenAnswer(invocation -> {
+            MonoProcessor<Boolean> set = MonoProcessor.create();
+            return Mono.defer(() -> {
+                inFlight.add(set);
+                return set;
+            });
+        });
+
+        List<SetResult> results = new ArrayList<>();
+        operations.setAll(entries(5), 60, 2).subscribe(results::add);
+        assertThat(inFlight, hasSize(2));
+
+        inFlight.get(0).onNext(true);
+        assertThat(inFlight, hasSize(3));
+        assertThat(results, hasSize(1));
+        assertThat(results.get(0).key(), equalTo("key0"));
+        assertThat(results.get(0).isStored(), equalTo(true));
+    }
+
+    @Test
+    void setAllRetriesSetsRejectedByAFullQueue() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(primitives.set(eq("key0"), eq(60), Mockito.<Object>any())).thenReturn(Mono.defer(() ->
+                attempts.incrementAndGet() == 1 ? Mono.error(new IllegalStateException("Queue full")) : Mono.just(true)));
+
+        List<SetResult> results = operations.setAll(entries(1), 60, 1).collectList().block();
+
+        assertThat(attempts.get(), equalTo(2));
+        assertThat(results.get(0).isStored(), equalTo(true));
+    }
+
+    @Test
+    void setAllReportsFailuresWithoutTerminating() {
+        when(primitives.set(eq("key0"), eq(60), Mockito.<Object>any()))
+                .thenReturn(Mono.error(new IllegalArgumentException("Key too long")));
+        when(primitives.set(eq("key1"), eq(60), Mockito.<Object>any())).thenReturn(Mono.just(false));
+        when(primitives.set(eq("key2"), eq(60), Mockito.<Object>any())).thenReturn(Mono.just(true));
+
+        List<SetResult> results = operations.setAll(entries(3), 60, 1).collectList().block();
+        assertThat(results.get(0).error(), instanceOf(IllegalArgumentException.class));
+
+        SetSummary summary = SetSummary.summarize(operations.setAll(entries(3), 60, 1)).block();
+        assertThat(summary.stored(), equalTo(1L));
+        assertThat(summary.notStored(), equalTo(1L));
+        assertThat(summary.failed(), equalTo(1L));
+    }
+
+    @Test
+    void getManyWindowsKeysIntoBoundedBulkGets() {
+        List<Collection<String>> batches = new ArrayList<>();
+        List<MonoProcessor<Map<String, Object>>> inFlight = new ArrayList<>();
+        when(primitives.getBulk(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> batch = invocation.getArgument(0);
+            MonoProcessor<Map<String, Object>> get = MonoProcessor.create();
+            return Mono.defer(() -> {
+                batches.add(batch);
+                inFlight.add(get);
+                return get;
+            });
+        });
+
+        List<Map.Entry<String, Object>> results = new ArrayList<>();
+        operations.getMany(Flux.range(0, 5).map(i -> "key" + i), 2, 2).subscribe(results::add);
+        assertThat(batches, contains(Arrays.asList("key0", "key1"), Arrays.asList("key2", "key3")));
+
+        inFlight.get(0).onNext(Collections.singletonMap("key0", "value0"));
+        assertThat(results, contains(new SimpleEntry<>("key0", "value0")));
+        assertThat(batches, hasSize(3));
+        assertThat(batches.get(2), contains("key4"));
+    }
+
+    @Test
+    void casUpdateRetriesWhenAnotherClientWinsTheRace() {
+        when(primitives.gets("key"))
+                .thenReturn(Mono.just(new CASValue<>(1, 10)))
+                .thenReturn(Mono.just(new CASValue<>(2, 11)));
+        when(primitives.cas("key", 1, 60, 11)).thenReturn(Mono.just(CASResponse.EXISTS));
+        when(primitives.cas("key", 2, 60, 12)).thenReturn(Mono.just(CASResponse.OK));
+        List<Integer> retries = new ArrayList<>();
+        CasRetry retry = CasRetry.builder()
+                .contentionListener((key, count, updated) -> retries.add(count))
+                .build();
+
+        assertThat(operations.casUpdate("key", 60, (Integer value) -> value + 1, retry).block(), equalTo(12));
+        assertThat(retries, contains(1));
+    }
+
+    @Test
+    void casUpdateGivesUpOnceTheRetryBudgetIsSpent() {
+        when(primitives.gets("key")).thenReturn(Mono.just(new CASValue<>(1, 10)));
+        when(primitives.cas("key", 1, 60, 11)).thenReturn(Mono.just(CASResponse.EXISTS));
+        AtomicInteger gaveUp = new AtomicInteger();
+        CasRetry retry = CasRetry.builder()
+                .maxRetries(2)
+                .contentionListener((key, count, updated) -> gaveUp.set(updated ? -1 : count))
+                .build();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> operations.casUpdate("key", 60, (Integer value) -> value + 1, retry).block());
+
+        assertThat(e.getMessage(), containsString("2 retries"));
+        assertThat(gaveUp.get(), equalTo(2));
+    }
+
+    @Test
+    void casUpdateReportsRetriesEndedByTheValueBeingDeleted() {
+        when(primitives.gets("key"))
+                .thenReturn(Mono.just(new CASValue<>(1, 10)))
+                .thenReturn(Mono.empty());
+        when(primitives.cas("key", 1, 60, 11)).thenReturn(Mono.just(CASResponse.NOT_FOUND));
+        List<Integer> retries = new ArrayList<>();
+        CasRetry retry = CasRetry.builder()
+                .contentionListener((key, count, updated) -> retries.add(updated ? -1 : count))
+                .build();
+
+        assertThat(operations.casUpdate("key", 60, (Integer value) -> value + 1, retry).block(), nullValue());
+        assertThat(retries, contains(1));
+        assertThat(retry.retries(), equalTo(1L));
+    }
+
+    @Test
+    void casRetryCountsRetriesAndExhaustedUpdates() {
+        when(primitives.gets("key")).thenReturn(Mono.just(new CASValue<>(1, 10)));
+        when(primitives.cas("key", 1, 60, 11)).thenReturn(Mono.just(CASResponse.EXISTS));
+        CasRetry retry = CasRetry.builder().maxRetries(2).build();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IllegalStateException.class,
+                    () -> operations.casUpdate("key", 60, (Integer value) -> value + 1, retry).block());
+        }
+
+        assertThat(retry.retries(), equalTo(4L));
+        assertThat(retry.exhaustedUpdates(), equalTo(2L));
+    }
+
+    @Test
+    void casUpdateCompletesEmptyWhenThereIsNoValue() {
+        when(primitives.gets("key")).thenReturn(Mono.empty());
+
+        assertThat(operations.casUpdate("key", 60, (Integer value) -> value + 1).block(), nullValue());
+    }
+
+    private static Flux<Map.Entry<String, Object>> entries(int count) {
+        return Flux.range(0, count).map(i -> new SimpleEntry<>("key" + i, "value" + i));
+    }
+}
@@ -1,12 +1,17 @@
 package spymemcached.reactive;
 
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.MemcachedClientIF;
+import net.spy.memcached.MemcachedNode;
+import net.spy.memcached.NodeLocator;
 import net.spy.memcached.internal.AbstractListenableFuture;
 import net.spy.memcached.internal.BulkFuture;
 import net.spy.memcached.internal.BulkGetCompletionListener;
 import net.spy.memcached.internal.GenericCompletionListener;
+import net.spy.memcached.internal.GetFuture;
 import org.hamcrest.Matcher;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestTemplate;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.Extension;
@@ -22,25 +27,53 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.invocation.Invocation;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -80,6 +113,330 @@ public class ReactiveMemcachedTemplateTest {
         assertThat(reference.get(), equalTo(item));
     }
 
+    @Test
+    void streamBulkEmitsEntriesAsEachNodeResponds() throws Exception {
+        NodeLocator locator = mock(NodeLocator.class);
+        when(memcachedClient.getNodeLocator()).thenReturn(locator);
+        stubNode(locator, "node1", "key1");
+        stubNode(locator, "node2", "key2");
+        BulkFuture<Map<String, Object>> future1 = stubBulkFuture(Collections.singletonList("key1"));
+        BulkFuture<Map<String, Object>> future2 = stubBulkFuture(Collections.singletonList("key2"));
+
+        List<Map.Entry<String, Object>> entries = new ArrayList<>();
+        template.streamBulk(Arrays.asList("key1", "key2")).subscribe(entries::add);
+
+        completeFuture(future2, Collections.singletonMap("key2", "value2"));
+        assertThat(entries, contains(new SimpleEntry<>("key2", "value2")));
+
+        completeFuture(future1, Collections.singletonMap("key1", "value1"));
+        assertThat(entries, contains(new SimpleEntry<>("key2", "value2"), new SimpleEntry<>("key1", "value1")));
+    }
+
+    @Test
+    void bulkGetWithADeadlineReportsTheKeysOfNodesWhichDidNotRespond() throws Exception {
+        NodeLocator locator = mock(NodeLocator.class);
+        when(memcachedClient.getNodeLocator()).thenReturn(locator);
+        stubNode(locator, "node1", "key1");
+        stubNode(locator, "node1", "key3");
+        stubNode(locator, "node2", "key2");
+        BulkFuture<Map<String, Object>> future1 = stubBulkFuture(Arrays.asList("key1", "key3"));
+        stubBulkFuture(Collections.singletonList("key2"));
+
+        MonoProcessor<BulkGetResult<Object>> result = template
+                .getBulk(Arrays.asList("key1", "key2", "key3"), Duration.ofMillis(50))
+                .toProcessor();
+        completeFuture(future1, Collections.singletonMap("key1", "value1"));
+
+        BulkGetResult<Object> bulkGetResult = result.block(Duration.ofSeconds(5));
+        assertThat(bulkGetResult.values(), equalTo(Collections.singletonMap("key1", "value1")));
+        assertThat(bulkGetResult.missed(), contains("key3"));
+        assertThat(bulkGetResult.failures().keySet(), contains("key2"));
+        assertThat(bulkGetResult.failures().get("key2"), instanceOf(TimeoutException.class));
+    }
+
+    @Test
+    void operationsAreNotIssuedOnceTheDeadlineHasPassed() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> template.get("key").subscriberContext(Deadline.within(Duration.ZERO)).block());
+
+        assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        verify(memcachedClient, never()).asyncGet("key");
+    }
+
+    @Test
+    void outstandingOperationsAreCancelledWhenTheDeadlinePasses() {
+        GetFuture<Object> future = stubGetFuture("key");
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> template.get("key").subscriberContext(Deadline.within(Duration.ofMillis(50))).block());
+
+        assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        verify(future).cancel(true);
+    }
+
+    @Test
+    void theDeadlineOfACoalescedGetOnlyAppliesToItsSubscriber() throws Exception {
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).coalesceGets(true).build();
+        GetFuture<Object> future = stubGetFuture("key");
+
+        MonoProcessor<Object> patient = template.get("key").toProcessor();
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> template.get("key").subscriberContext(Deadline.within(Duration.ofMillis(50))).block());
+        assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        verify(future, never()).cancel(anyBoolean());
+
+        completeFuture(future, "value");
+        assertThat(patient.block(), equalTo("value"));
+    }
+
+    @Test
+    void tracksTheKeysOfGetsAndSetsAsTheyAreIssued() {
+        AtomicLong now = new AtomicLong();
+        HotKeyTracker tracker = HotKeyTracker.builder()
+                .sampleRate(1)
+                .window(Duration.ofSeconds(1))
+                .nanoTime(now::get)
+                .build();
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).hotKeyTracker(tracker).build();
+
+        template.get("hot").subscribe();
+        template.set("hot", 0, "value").subscribe();
+        template.getBulk(Arrays.asList("hot", "cold")).subscribe();
+        template.get("unsubscribed");
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        assertThat(tracker.hotKeys().get(0).key(), equalTo("hot"));
+        assertThat(tracker.isHot("cold"), equalTo(true));
+        assertThat(tracker.isHot("unsubscribed"), equalTo(false));
+    }
+
+    @Test
+    void coalescedGetsShareASingleLookup() throws Exception {
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).coalesceGets(true).build();
+        GetFuture<Object> future = stubGetFuture("key");
+
+        List<Object> results = new ArrayList<>();
+        template.get("key").subscribe(results::add);
+        template.get("key").subscribe(results::add);
+        verify(memcachedClient, times(1)).asyncGet("key");
+
+        completeFuture(future, "value");
+        assertThat(results, contains("value", "value"));
+
+        template.get("key").subscribe(results::add);
+        verify(memcachedClient, times(2)).asyncGet("key");
+    }
+
+    @Test
+    void coalescedGetIsCancelledOnceAllSubscribersCancel() {
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).coalesceGets(true).build();
+        GetFuture<Object> future = stubGetFuture("key");
+
+        Disposable first = template.get("key").subscribe();
+        Disposable second = template.get("key").subscribe();
+
+        first.dispose();
+        verify(future, never()).cancel(anyBoolean());
+        second.dispose();
+        verify(future).cancel(true);
+    }
+
+    @Test
+    void batchedGetsAreIssuedAsOneBulkGetOnceTheBatchIsFull() throws Exception {
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).batchGets(Duration.ofMinutes(1), 2).build();
+        BulkFuture<Map<String, Object>> future = stubBulkFuture(new HashSet<>(Arrays.asList("key1", "key2")));
+
+        List<Object> results = new ArrayList<>();
+        template.get("key1").subscribe(results::add);
+        verifyZeroInteractions(memcachedClient);
+        template.get("key2").subscribe(results::add);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("key1", "value1");
+        values.put("key2", "value2");
+        completeFuture(future, values);
+        assertThat(results, contains("value1", "value2"));
+    }
+
+    @Test
+    void anInvalidKeyFailsOnlyItsOwnBatchedGet() throws Exception {
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).batchGets(Duration.ofMinutes(1), 2).build();
+        BulkFuture<Map<String, Object>> future = stubBulkFuture(new HashSet<>(Arrays.asList("key1", "key2")));
+
+        List<Object> results = new ArrayList<>();
+        template.get("key1").subscribe(results::add);
+        assertThrows(IllegalArgumentException.class, () -> template.get("not a key").block());
+        template.get("key2").subscribe(results::add);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("key1", "value1");
+        values.put("key2", "value2");
+        completeFuture(future, values);
+        assertThat(results, contains("value1", "value2"));
+    }
+
+    @Test
+    void cancellingTheOnlyBatchedGetEndsTheWindow() {
+        Scheduler scheduler = mock(Scheduler.class);
+        Disposable window = mock(Disposable.class);
+        when(scheduler.schedule(any(), anyLong(), any(TimeUnit.class))).thenReturn(window);
+        template = ReactiveMemcachedTemplate.builder(memcachedClient)
+                .batchGets(Duration.ofMinutes(1), 100)
+                .batchScheduler(scheduler)
+                .build();
+
+        template.get("key").subscribe().dispose();
+
+        verify(window).dispose();
+        verifyZeroInteractions(memcachedClient);
+    }
+
+    @Test
+    void batchedGetsAreIssuedStraightAwayWhenTheSchedulerRejectsTheWindow() throws Exception {
+        Scheduler scheduler = mock(Scheduler.class);
+        when(scheduler.schedule(any(), anyLong(), any(TimeUnit.class)))
+                .thenThrow(new RejectedExecutionException("Scheduler unavailable"));
+        template = ReactiveMemcachedTemplate.builder(memcachedClient)
+                .batchGets(Duration.ofMinutes(1), 100)
+                .batchScheduler(scheduler)
+                .build();
+        BulkFuture<Map<String, Object>> future = stubBulkFuture(Collections.singleton("key"));
+
+        AtomicReference<Object> result = new AtomicReference<>();
+        template.get("key").subscribe(result::set);
+        verify(memcachedClient).asyncGetBulk(Collections.singleton("key"));
+
+        completeFuture(future, Collections.singletonMap("key", "value"));
+        assertThat(result.get(), equalTo("value"));
+    }
+
+    @Test
+    void batchedGetsAreIssuedOnceTheWindowElapses() throws Exception {
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).batchGets(Duration.ofMillis(10), 100).build();
+        BulkFuture<Map<String, Object>> future = stubBulkFuture(Collections.singleton("key"));
+
+        AtomicReference<Object> result = new AtomicReference<>();
+        template.get("key").subscribe(result::set);
+        verify(memcachedClient, timeout(1000)).asyncGetBulk(Collections.singleton("key"));
+
+        completeFuture(future, Collections.emptyMap());
+        assertThat(result.get(), nullValue());
+    }
+
+    @Test
+    void recordsTheOutcomeOfEachOperation() throws Exception {
+        LatencyHistogramRecorder recorder = new LatencyHistogramRecorder();
+        template = ReactiveMemcachedTemplate.builder(memcachedClient).operationRecorder(recorder).build();
+        GetFuture<Object> hit = stubGetFuture("hit");
+        GetFuture<Object> miss = stubGetFuture("miss");
+        GetFuture<Object> cancelled = stubGetFuture("cancelled");
+
+        template.get("hit").subscribe();
+        template.get("miss").subscribe();
+        template.get("cancelled").subscribe().dispose();
+        completeFuture(hit, "value");
+        completeFuture(miss, null);
+
+        LatencySnapshot snapshot = recorder.snapshot(OperationType.GET);
+        assertThat(snapshot.count(), equalTo(3L));
+        assertThat(snapshot.count(OperationOutcome.SUCCESS), equalTo(1L));
+        assertThat(snapshot.count(OperationOutcome.MISS), equalTo(1L));
+        assertThat(snapshot.count(OperationOutcome.CANCEL), equalTo(1L));
+        verify(cancelled).cancel(true);
+    }
+
+    @Test
+    void signalsOnceWhenTheListenerIsNotifiedAgain() throws Exception {
+        GetFuture<Object> future = stubGetFuture("key");
+
+        List<Object> results = new ArrayList<>();
+        template.get("key").subscribe(results::add);
+        completeFuture(future, "value");
+        //noinspection unchecked
+        verifyListenerAdded(future).onComplete(null);
+
+        assertThat(results, contains("value"));
+    }
+
+    @Test
+    void signalsTheCauseOfAFailedOperation() throws Exception {
+        GetFuture<Object> future = stubGetFuture("key");
+        IllegalStateException cause = new IllegalStateException("Timed out");
+
+        List<Throwable> errors = new ArrayList<>();
+        template.get("key").subscribe(null, errors::add);
+        when(future.get()).thenThrow(new ExecutionException(cause));
+        when(future.isDone()).thenReturn(true);
+        //noinspection unchecked
+        verifyListenerAdded(future).onComplete(null);
+
+        assertThat(errors, contains(cause));
+    }
+
+    @Test
+    void signalsCompletionOnTheCompletionScheduler() throws Exception {
+        Scheduler completionScheduler = Schedulers.newSingle("completion");
+        try {
+            template = ReactiveMemcachedTemplate.builder(memcachedClient).completionScheduler(completionScheduler).build();
+            GetFuture<Object> future = stubGetFuture("key");
+
+            MonoProcessor<String> thread = MonoProcessor.create();
+            template.get("key").subscribe(value -> thread.onNext(Thread.currentThread().getName()));
+            completeFuture(future, "value");
+
+            assertThat(thread.block(Duration.ofSeconds(5)), startsWith("completion"));
+        } finally {
+            completionScheduler.dispose();
+        }
+    }
+
+    @Test
+    void signalsAnExceededDeadlineOnTheCompletionScheduler() {
+        Scheduler completionScheduler = Schedulers.newSingle("completion");
+        try {
+            template = ReactiveMemcachedTemplate.builder(memcachedClient).completionScheduler(completionScheduler).build();
+            stubGetFuture("key");
+
+            MonoProcessor<String> thread = MonoProcessor.create();
+            template.get("key")
+                    .subscriberContext(Deadline.within(Duration.ofMillis(10)))
+                    .subscribe(null, error -> thread.onNext(Thread.currentThread().getName()));
+
+            assertThat(thread.block(Duration.ofSeconds(5)), startsWith("completion"));
+        } finally {
+            completionScheduler.dispose();
+        }
+    }
+
+    private GetFuture<Object> stubGetFuture(String key) {
+        //noinspection unchecked
+        GetFuture<Object> future = mock(GetFuture.class);
+        when(memcachedClient.asyncGet(key)).thenReturn(future);
+        return future;
+    }
+
+    private void completeFuture(Future<?> future, Object result) throws Exception {
+        GenericCompletionListener listener = verifyListenerAdded(future);
+        //noinspection unchecked
+        when(((Future<Object>) future).get()).thenReturn(result);
+        when(future.isDone()).thenReturn(true);
+        //noinspection unchecked
+        listener.onComplete(null);
+    }
+
+    private void stubNode(NodeLocator locator, String host, String key) {
+        MemcachedNode node = mock(MemcachedNode.class);
+        when(node.getSocketAddress()).thenReturn(InetSocketAddress.createUnresolved(host, 11211));
+        when(locator.getPrimary(key)).thenReturn(node);
+    }
+
+    private BulkFuture<Map<String, Object>> stubBulkFuture(Collection<String> keys) {
+        //noinspection unchecked
+        BulkFuture<Map<String, Object>> future = mock(BulkFuture.class);
+        when(memcachedClient.asyncGetBulk(keys)).thenReturn(future);
+        return future;
+    }
+
     private Object[] stubValuesForMethod(Method method) {
         return Arrays.stream(method.getParameters())
                 .map(Parameter::getType)
@@ -112,7 +469,7 @@ public class ReactiveMemcachedTemplateTest {
         return (Future) invocation.getMethod().invoke(memcachedClient, invocation.getRawArguments());
     }
 
-    private Matcher<String> matchesCorrespondingMethodName(String methodName) {
+    private static Matcher<String> matchesCorrespondingMethodName(String methodName) {
         return anyOf(
                 // Either the names match
                 equalTo(methodName),
@@ -149,8 +506,19 @@ public class ReactiveMemcachedTemplateTest {
         @Override
         public Stream<TestTemplateInvocationContext> provideTestTemplateInvocationContexts(ExtensionContext extensionContext) {
             return Arrays.stream(ReactiveMemcachedOperations.class.getDeclaredMethods())
+                    .filter(TestTemplateInvocationContextProviderImpl::hasCorrespondingMethod)
                     .map(TestTemplateInvocationContextImpl::new);
         }
+
+        /**
+         * Only the operations which map directly onto a single {@link MemcachedClientIF} method are covered here.
+         */
+        private static boolean hasCorrespondingMethod(Method method) {
+            Matcher<String> nameMatcher = matchesCorrespondingMethodName(method.getName());
+            return Arrays.stream(MemcachedClientIF.class.getMethods())
+                    .anyMatch(clientMethod -> nameMatcher.matches(clientMethod.getName()) &&
+                            Arrays.equals(clientMethod.getParameterTypes(), method.getParameterTypes()));
+        }
     }
 
     static class TestTemplateInvocationContextImpl implements TestTemplateInvocationContext {
@@ -0,0 +1,69 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.ops.OperationException;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.MonoProcessor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TextCommandsTest {
+
+    private final SerializingTranscoder transcoder = new SerializingTranscoder();
+
+    @Test
+    void decodesAResponseSplitAcrossReads() throws Exception {
+        MonoProcessor<Map<String, Object>> result = MonoProcessor.create();
+        TextCommands.BulkGet<Object> command = new TextCommands.BulkGet<>(result, OperationRecorder.NOOP,
+                Arrays.asList("a", "b"), key -> transcoder);
+        result.onSubscribe(command);
+        List<ByteBuffer> request = new ArrayList<>();
+        command.encode(request);
+        assertThat(StandardCharsets.UTF_8.decode(request.get(0)).toString(), equalTo("get a b\r\n"));
+
+        ByteBuffer in = ByteBuffer.allocate(64);
+        in.put(bytes("VALUE a 0 3\r\nfo")).flip();
+        assertThat(command.decode(in), equalTo(false));
+        in.compact().put(bytes("o\r\nVALUE b 0 3\r\nbar\r\nEN")).flip();
+        assertThat(command.decode(in), equalTo(false));
+        in.compact().put(bytes("D\r\n")).flip();
+        assertThat(command.decode(in), equalTo(true));
+
+        assertThat(result.peek().get("a"), equalTo("foo"));
+        assertThat(result.peek().get("b"), equalTo("bar"));
+    }
+
+    @Test
+    void failsTheCommandOnAnErrorReply() throws Exception {
+        MonoProcessor<Boolean> result = MonoProcessor.create();
+        TextCommands.Delete command = new TextCommands.Delete(result, OperationRecorder.NOOP, "key");
+        result.onSubscribe(command);
+
+        assertThat(command.decode(ByteBuffer.wrap(bytes("SERVER_ERROR out of memory\r\n"))), equalTo(true));
+
+        assertThat(result.getError(), instanceOf(OperationException.class));
+    }
+
+    @Test
+    void rejectsAnUnexpectedReply() {
+        MonoProcessor<Boolean> result = MonoProcessor.create();
+        TextCommands.Delete command = new TextCommands.Delete(result, OperationRecorder.NOOP, "key");
+        result.onSubscribe(command);
+
+        assertThrows(OperationException.class, () -> command.decode(ByteBuffer.wrap(bytes("STORED\r\n"))));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,208 @@
+package spymemcached.reactive;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindMemcachedOperationsTest {
+
+    private static final SerializingTranscoder SERIALIZING = new SerializingTranscoder();
+
+    @Mock
+    private ReactiveMemcachedOperations delegate;
+    private WriteBehindMemcachedOperations writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        writeBehind = WriteBehindMemcachedOperations.builder(delegate)
+                .flushInterval(Duration.ofHours(1))
+                .maxPendingKeys(2)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBehind.close();
+    }
+
+    @Test
+    void writesOnlyTheLastValueOfEachKey() {
+        when(delegate.set(eq("key"), eq(60), encoded("third"), any())).thenReturn(Mono.just(true));
+
+        assertThat(writeBehind.set("key", 60, "first").block(), equalTo(true));
+        writeBehind.set("key", 60, "second").block();
+        writeBehind.set("key", 60, "third").block();
+        verifyNoMoreInteractions(delegate);
+
+        writeBehind.flushPending().block();
+
+        verify(delegate).set(eq("key"), eq(60), encoded("third"), any());
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void combinesReplaceAndTouchWithAnEarlierSet() {
+        when(delegate.set(eq("key"), eq(120), encoded("replaced"), any())).thenReturn(Mono.just(true));
+
+        writeBehind.set("key", 60, "value").block();
+        writeBehind.replace("key", 30, "replaced").block();
+        writeBehind.touch("key", 120).block();
+        writeBehind.flushPending().block();
+
+        verify(delegate).set(eq("key"), eq(120), encoded("replaced"), any());
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void writesBufferedValuesBeforeReadingTheKey() {
+        when(delegate.set(eq("key"), eq(60), encoded("value"), any())).thenReturn(Mono.just(true));
+        when(delegate.get("key")).thenReturn(Mono.just("value"));
+
+        writeBehind.set("key", 60, "value").block();
+
+        assertThat(writeBehind.get("key").block(), equalTo("value"));
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).set(eq("key"), eq(60), encoded("value"), any());
+        inOrder.verify(delegate).get("key");
+    }
+
+    @Test
+    void writesThroughOnceTheBufferIsFull() {
+        when(delegate.set(eq("third"), eq(60), encoded("value"), any())).thenReturn(Mono.just(false));
+        when(delegate.set(eq("first"), eq(60), encoded("value"), any())).thenReturn(Mono.just(true));
+        when(delegate.set(eq("second"), eq(60), encoded("value"), any())).thenReturn(Mono.just(true));
+
+        writeBehind.set("first", 60, "value").block();
+        writeBehind.set("second", 60, "value").block();
+
+        assertThat(writeBehind.set("third", 60, "value").block(), equalTo(false));
+    }
+
+    @Test
+    void writesTheSameKeyInOrderWhenAnEarlierWriteIsSlow() {
+        MonoProcessor<Boolean> first = MonoProcessor.create();
+        when(delegate.set(eq("key"), eq(60), encoded("first"), any())).thenReturn(first);
+        when(delegate.set(eq("key"), eq(60), encoded("second"), any())).thenReturn(Mono.just(true));
+        when(delegate.get("key")).thenReturn(Mono.just("second"));
+
+        writeBehind.set("key", 60, "first").block();
+        writeBehind.flushPending().subscribe();
+        writeBehind.set("key", 60, "second").block();
+        MonoProcessor<Object> read = writeBehind.get("key").toProcessor();
+
+        verify(delegate, never()).set(eq("key"), eq(60), encoded("second"), any());
+        assertThat(read.isTerminated(), equalTo(false));
+
+        first.onNext(true);
+
+        assertThat(read.block(), equalTo("second"));
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).set(eq("key"), eq(60), encoded("first"), any());
+        inOrder.verify(delegate).set(eq("key"), eq(60), encoded("second"), any());
+        inOrder.verify(delegate).get("key");
+    }
+
+    @Test
+    void flushingWaitsForWritesAlreadyInFlight() {
+        MonoProcessor<Boolean> first = MonoProcessor.create();
+        when(delegate.set(eq("key"), eq(60), encoded("first"), any())).thenReturn(first);
+        when(delegate.get("key")).thenReturn(Mono.empty());
+
+        writeBehind.set("key", 60, "first").block();
+        MonoProcessor<Void> inFlight = writeBehind.get("key").then().toProcessor();
+        MonoProcessor<Void> flushed = writeBehind.flushPending().toProcessor();
+
+        assertThat(flushed.isTerminated(), equalTo(false));
+
+        first.onNext(true);
+
+        flushed.block(Duration.ofSeconds(1));
+        inFlight.block(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void countsFailedWrites() {
+        when(delegate.set(eq("key"), eq(60), encoded("value"), any()))
+                .thenReturn(Mono.error(new IllegalStateException("Queue full")));
+
+        writeBehind.set("key", 60, "value").block();
+        writeBehind.flushPending().block();
+
+        assertThat(writeBehind.failedWrites(), equalTo(1L));
+    }
+
+    @Test
+    void buffersValuesAsTheyWereWhenWritten() {
+        when(delegate.set(eq("key"), eq(60), encoded(Arrays.asList("value")), any())).thenReturn(Mono.just(true));
+
+        List<String> value = new ArrayList<>(Arrays.asList("value"));
+        writeBehind.set("key", 60, value).block();
+        value.add("changed");
+        writeBehind.flushPending().block();
+
+        verify(delegate).set(eq("key"), eq(60), encoded(Arrays.asList("value")), any());
+    }
+
+    @Test
+    void writesThroughOnceClosed() {
+        when(delegate.set(eq("key"), eq(60), encoded("value"), any())).thenReturn(Mono.just(false));
+
+        writeBehind.close();
+
+        assertThat(writeBehind.set("key", 60, "value").block(), equalTo(false));
+    }
+
+    @Test
+    void closingDoesNotWaitLongerThanTheCloseTimeout() {
+        when(delegate.set(eq("key"), eq(60), encoded("value"), any())).thenReturn(Mono.never());
+        writeBehind.close();
+        writeBehind = WriteBehindMemcachedOperations.builder(delegate)
+                .flushInterval(Duration.ofHours(1))
+                .closeTimeout(Duration.ofMillis(50))
+                .build();
+
+        writeBehind.set("key", 60, "value").block();
+        writeBehind.close();
+
+        assertThat(writeBehind.pendingKeys(), equalTo(1));
+    }
+
+    @Test
+    void closingWritesWhatIsBuffered() {
+        when(delegate.touch("key", 60)).thenReturn(Mono.just(true));
+
+        writeBehind.touch("key", 60).block();
+        writeBehind.close();
+
+        verify(delegate).touch("key", 60);
+    }
+
+    private static CachedData encoded(Object value) {
+        return argThat(data -> data != null && value.equals(SERIALIZING.decode(data)));
+    }
+}